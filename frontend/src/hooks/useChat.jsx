@@ -1,6 +1,7 @@
-import { useState, useEffect, useCallback } from 'react';
+import { useState, useEffect, useCallback, useRef } from 'react';
 import { conversationAPI, messageAPI } from '../services/api';
 import websocketService from '../services/websocket';
+import { useAuth } from './useAuth.jsx';
 
 export const useChat = () => {
   const [conversations, setConversations] = useState([]);
@@ -8,6 +9,9 @@ export const useChat = () => {
   const [messages, setMessages] = useState([]);
   const [typingUsers, setTypingUsers] = useState(new Set());
   const [loading, setLoading] = useState(false);
+  const { user } = useAuth();
+  const userRef = useRef(user);
+  userRef.current = user;
 
   useEffect(() => {
     loadConversations();
@@ -162,6 +166,11 @@ export const useChat = () => {
   };
 
   const handleNewMessage = (message) => {
+    // Acknowledge receipt with the send timestamp, the server times delivery from it
+    if (message.id && message.sender?.id !== userRef.current?.id) {
+      websocketService.sendDeliveryAck(message.id, message.sentAt);
+    }
+
     setMessages(prev => {
       // Avoid duplicates by checking if message already exists
       if (prev.some(m => m.id === message.id)) {
@@ -68,7 +68,7 @@ export const conversationAPI = {
 
 export const messageAPI = {
   sendMessage: (data) => api.post('/messages', data),
-  updateStatus: (messageId, status) => api.post('/messages/status', { messageId, status }),
+  updateStatus: (messageId, status, sentAt) => api.post('/messages/status', { messageId, status, sentAt }),
   clearChat: (conversationId) => api.post(`/messages/clear/${conversationId}`),
 };
 
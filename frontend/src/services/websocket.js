@@ -137,6 +137,20 @@ class WebSocketService {
     }
   }
 
+  sendDeliveryAck(messageId, sentAt) {
+    if (this.stompClient && this.connected && this.stompClient.connected) {
+      try {
+        this.stompClient.send(
+          `/app/messages/${messageId}/delivered`,
+          {},
+          JSON.stringify({ sentAt })
+        );
+      } catch (error) {
+        console.error('Failed to acknowledge delivery:', error);
+      }
+    }
+  }
+
   sendTypingIndicator(conversationId, typing) {
     if (this.stompClient && this.connected && this.stompClient.connected) {
       try {
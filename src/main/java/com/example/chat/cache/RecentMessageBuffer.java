@@ -0,0 +1,365 @@
+package com.example.chat.cache;
+
+import com.example.chat.dto.MessageDto;
+import com.example.chat.model.Message;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class RecentMessageBuffer implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentMessageBuffer.class);
+
+    private static final String OP_STATUS = "status";
+    private static final String OP_READ = "read";
+    private static final String OP_EVICT = "evict";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.recent-messages.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.recent-messages.capacity:50}")
+    private int capacity;
+
+    @Value("${app.recent-messages.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${app.recent-messages.channel:recent.messages}")
+    private String channel;
+
+    // A message lost on the way to this node leaves a hole nothing else detects, rings are rebuilt from the
+    // database at least this often
+    @Value("${app.recent-messages.reseed-interval:60000}")
+    private long reseedInterval;
+
+    private Cache<Long, Ring> rings;
+    // Appends skipped for lack of a ring while a seed of the conversation is in progress
+    private Cache<Long, AtomicLong> pendingSeeds;
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        // Weighted by the estimated heap size of each ring, least recently used conversations go first
+        long reseedNanos = TimeUnit.MILLISECONDS.toNanos(reseedInterval);
+        rings = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long conversationId, Ring ring) -> ring.bytes)
+                .expireAfter(new Expiry<Long, Ring>() {
+                    @Override
+                    public long expireAfterCreate(Long conversationId, Ring ring, long currentTime) {
+                        return Math.max(0, ring.seededAt + reseedNanos - currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long conversationId, Ring ring, long currentTime, long currentDuration) {
+                        return Math.max(0, ring.seededAt + reseedNanos - currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long conversationId, Ring ring, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        pendingSeeds = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .build();
+
+        hits = Counter.builder("recent.messages.reads")
+                .tag("result", "hit")
+                .description("Message reads served from the recent message buffer")
+                .register(meterRegistry);
+        misses = Counter.builder("recent.messages.reads")
+                .tag("result", "miss")
+                .description("Message reads that fell back to the database")
+                .register(meterRegistry);
+        Gauge.builder("recent.messages.conversations", rings, Cache::estimatedSize)
+                .description("Conversations held in the recent message buffer")
+                .register(meterRegistry);
+        Gauge.builder("recent.messages.bytes", rings,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .description("Estimated heap used by the recent message buffer")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        redisContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+
+    public Page<MessageDto> firstPage(Long conversationId, Pageable pageable) {
+        if (!enabled || pageable.getPageNumber() != 0 || pageable.getPageSize() > capacity) {
+            return null;
+        }
+
+        Ring ring = rings.getIfPresent(conversationId);
+        Page<MessageDto> page = ring != null ? ring.newestFirst(pageable) : null;
+        (page != null ? hits : misses).increment();
+        return page;
+    }
+
+    public List<MessageDto> messagesAfter(Long conversationId, Long afterMessageId) {
+        if (!enabled) {
+            return null;
+        }
+
+        Ring ring = rings.getIfPresent(conversationId);
+        List<MessageDto> messages = ring != null ? ring.after(afterMessageId) : null;
+        (messages != null ? hits : misses).increment();
+        return messages;
+    }
+
+    // Called before the first page is read from the database, the token is handed back to seed
+    public long beginSeed(Long conversationId) {
+        return enabled ? pendingSeeds.get(conversationId, id -> new AtomicLong()).get() : 0L;
+    }
+
+    // Seeds a ring from the first page read from the database, newer buffered messages are kept. A message
+    // committed after the read whose append found no ring would be missing, the ring is not built then.
+    public void seed(Long conversationId, Page<MessageDto> firstPage, long seedToken) {
+        if (!enabled) {
+            return;
+        }
+
+        List<MessageDto> ascending = new ArrayList<>(firstPage.getContent());
+        Collections.reverse(ascending);
+        long newestSeeded = ascending.isEmpty() ? 0L : ascending.get(ascending.size() - 1).getId();
+        rings.asMap().compute(conversationId, (id, existing) -> {
+            if (existing == null) {
+                AtomicLong skipped = pendingSeeds.getIfPresent(conversationId);
+                if (skipped == null || skipped.get() != seedToken) {
+                    return null;
+                }
+            }
+            Ring ring = new Ring(capacity, firstPage.getTotalElements());
+            ascending.forEach(ring::append);
+            if (existing != null) {
+                // Messages buffered after the database snapshot was read
+                existing.snapshot().stream()
+                        .filter(message -> message.getId() > newestSeeded)
+                        .forEach(message -> {
+                            if (ring.append(message)) {
+                                ring.total++;
+                            }
+                        });
+            }
+            return ring;
+        });
+    }
+
+    public void append(Long conversationId, MessageDto message) {
+        if (!enabled || message.isDeleted()) {
+            return;
+        }
+
+        // Only conversations that were seeded by a read are buffered, computed under the same lock as seed
+        rings.asMap().compute(conversationId, (id, ring) -> {
+            if (ring == null) {
+                AtomicLong skipped = pendingSeeds.getIfPresent(conversationId);
+                if (skipped != null) {
+                    skipped.incrementAndGet();
+                }
+                return null;
+            }
+            if (ring.append(message)) {
+                ring.total++;
+            }
+            return ring;
+        });
+    }
+
+    public void updateStatus(Long conversationId, Long messageId, Message.Status status) {
+        applyStatus(conversationId, messageId, status);
+        publish(OP_STATUS + "\n" + conversationId + "\n" + messageId + "\n" + status.name());
+    }
+
+    public void markRead(Long conversationId, Long readerId) {
+        applyRead(conversationId, readerId);
+        publish(OP_READ + "\n" + conversationId + "\n" + readerId);
+    }
+
+    public void evict(Long conversationId) {
+        invalidate(conversationId);
+        publish(OP_EVICT + "\n" + conversationId);
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n");
+        try {
+            Long conversationId = Long.valueOf(parts[1]);
+            switch (parts[0]) {
+                case OP_STATUS -> applyStatus(conversationId, Long.valueOf(parts[2]), Message.Status.valueOf(parts[3]));
+                case OP_READ -> applyRead(conversationId, Long.valueOf(parts[2]));
+                case OP_EVICT -> invalidate(conversationId);
+                default -> logger.warn("Unknown recent message buffer operation: {}", parts[0]);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Error applying recent message buffer update", e);
+        }
+    }
+
+    // A seed that read the database before the eviction must not bring the old messages back
+    private void invalidate(Long conversationId) {
+        rings.asMap().compute(conversationId, (id, ring) -> {
+            AtomicLong pending = pendingSeeds.getIfPresent(conversationId);
+            if (pending != null) {
+                pending.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+    private void applyStatus(Long conversationId, Long messageId, Message.Status status) {
+        rings.asMap().computeIfPresent(conversationId, (id, ring) -> {
+            ring.setStatus(messageId, status);
+            return ring;
+        });
+    }
+
+    private void applyRead(Long conversationId, Long readerId) {
+        rings.asMap().computeIfPresent(conversationId, (id, ring) -> {
+            ring.markRead(readerId);
+            return ring;
+        });
+    }
+
+    private void publish(String operation) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, operation);
+        } catch (Exception e) {
+            logger.warn("Error publishing recent message buffer update", e);
+        }
+    }
+
+    // Latest messages of one conversation in ascending id order, always a contiguous suffix of its history
+    static class Ring {
+        private final int capacity;
+        private final long seededAt = System.nanoTime();
+        private final List<MessageDto> messages = new ArrayList<>();
+        private long total;
+        private int bytes;
+
+        Ring(int capacity, long total) {
+            this.capacity = capacity;
+            this.total = total;
+        }
+
+        synchronized boolean append(MessageDto message) {
+            int index = messages.size();
+            while (index > 0 && messages.get(index - 1).getId() >= message.getId()) {
+                if (messages.get(index - 1).getId().equals(message.getId())) {
+                    return false;
+                }
+                index--;
+            }
+            if (index == 0 && messages.size() >= capacity) {
+                return false;
+            }
+
+            messages.add(index, message);
+            bytes += estimateSize(message);
+            if (messages.size() > capacity) {
+                bytes -= estimateSize(messages.remove(0));
+            }
+            return true;
+        }
+
+        synchronized Page<MessageDto> newestFirst(Pageable pageable) {
+            // Without the whole history in the ring a short page could hide older messages
+            if (messages.size() < pageable.getPageSize() && messages.size() < total) {
+                return null;
+            }
+
+            List<MessageDto> page = new ArrayList<>(pageable.getPageSize());
+            for (int i = messages.size() - 1; i >= 0 && page.size() < pageable.getPageSize(); i--) {
+                page.add(messages.get(i));
+            }
+            return new PageImpl<>(page, pageable, total);
+        }
+
+        synchronized List<MessageDto> after(Long afterMessageId) {
+            if (messages.isEmpty() || (messages.get(0).getId() > afterMessageId && messages.size() < total)) {
+                return null;
+            }
+
+            List<MessageDto> newer = new ArrayList<>();
+            for (MessageDto message : messages) {
+                if (message.getId() > afterMessageId) {
+                    newer.add(message);
+                }
+            }
+            return newer;
+        }
+
+        synchronized List<MessageDto> snapshot() {
+            return new ArrayList<>(messages);
+        }
+
+        synchronized void setStatus(Long messageId, Message.Status status) {
+            for (MessageDto message : messages) {
+                if (message.getId().equals(messageId)) {
+                    message.setStatus(status);
+                }
+            }
+        }
+
+        synchronized void markRead(Long readerId) {
+            for (MessageDto message : messages) {
+                if (message.getSender() != null && !readerId.equals(message.getSender().getId())) {
+                    message.setStatus(Message.Status.READ);
+                }
+            }
+        }
+
+        private static int estimateSize(MessageDto message) {
+            // Object headers and fixed fields, plus two bytes per character of the variable strings
+            int size = 240;
+            size += length(message.getContent()) * 2;
+            size += length(message.getAttachmentUrl()) * 2;
+            size += length(message.getMimeType()) * 2;
+            size += (length(message.getThumbnailUrl()) + length(message.getPlaceholderUrl())) * 2;
+            if (message.getSender() != null) {
+                size += (length(message.getSender().getUsername()) + length(message.getSender().getEmail())) * 2;
+            }
+            return size;
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.chat.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
+    private static final String REDIS_KEY_PREFIX = "cache:";
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration redisTtl;
+    private final TwoLevelCacheManager cacheManager;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                         RedisTemplate<String, Object> redisTemplate,
+                         Duration redisTtl,
+                         TwoLevelCacheManager cacheManager,
+                         MeterRegistry meterRegistry) {
+        super(false);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisTemplate = redisTemplate;
+        this.redisTtl = redisTtl;
+        this.cacheManager = cacheManager;
+        this.redisHits = Counter.builder("cache.redis.gets")
+                .tag("cache", name)
+                .tag("result", "hit")
+                .description("Second-level cache lookups served by Redis")
+                .register(meterRegistry);
+        this.redisMisses = Counter.builder("cache.redis.gets")
+                .tag("cache", name)
+                .tag("result", "miss")
+                .description("Second-level cache lookups not found in Redis")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = key.toString();
+        Object value = localCache.getIfPresent(cacheKey);
+        if (value == null) {
+            value = getFromRedis(cacheKey);
+            if (value != null) {
+                localCache.put(cacheKey, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // Values loaded on a miss are not broadcast, other nodes load their own copy
+        return (T) localCache.get(key.toString(), cacheKey -> {
+            Object value = getFromRedis(cacheKey);
+            if (value != null) {
+                return value;
+            }
+
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (value != null) {
+                putToRedis(cacheKey, value);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String cacheKey = key.toString();
+        Object storeValue = toStoreValue(value);
+        localCache.put(cacheKey, storeValue);
+        putToRedis(cacheKey, storeValue);
+        cacheManager.publishInvalidation(name, cacheKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = key.toString();
+        localCache.invalidate(cacheKey);
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.delete(redisKey(cacheKey));
+            } catch (Exception e) {
+                logger.warn("Error evicting {} from Redis cache {}", cacheKey, name, e);
+            }
+        }
+        cacheManager.publishInvalidation(name, cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        localCache.invalidateAll();
+        if (redisTemplate != null) {
+            try {
+                List<String> keys = redisTemplate.execute((RedisCallback<List<String>>) connection -> {
+                    List<String> found = new ArrayList<>();
+                    ScanOptions options = ScanOptions.scanOptions().match(REDIS_KEY_PREFIX + name + ":*").count(500).build();
+                    try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                        cursor.forEachRemaining(k -> found.add(new String(k, StandardCharsets.UTF_8)));
+                    }
+                    return found;
+                });
+                if (keys != null && !keys.isEmpty()) {
+                    redisTemplate.delete(keys);
+                }
+            } catch (Exception e) {
+                logger.warn("Error clearing Redis cache {}", name, e);
+            }
+        }
+        cacheManager.publishInvalidation(name, null);
+    }
+
+    void evictLocal(String key) {
+        localCache.invalidate(key);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    private Object getFromRedis(String key) {
+        if (redisTemplate == null) {
+            return null;
+        }
+        try {
+            Object value = redisTemplate.opsForValue().get(redisKey(key));
+            (value != null ? redisHits : redisMisses).increment();
+            return value;
+        } catch (Exception e) {
+            logger.warn("Error reading {} from Redis cache {}", key, name, e);
+            return null;
+        }
+    }
+
+    private void putToRedis(String key, Object value) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey(key), value, redisTtl);
+        } catch (Exception e) {
+            logger.warn("Error writing {} to Redis cache {}", key, name, e);
+        }
+    }
+
+    private String redisKey(String key) {
+        return REDIS_KEY_PREFIX + name + ":" + key;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.chat.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+    private static final String CLEAR_ALL = "*";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, String> regionSpecs;
+    private final String defaultSpec;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration redisTtl;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String invalidationChannel;
+    private final MeterRegistry meterRegistry;
+
+    public TwoLevelCacheManager(Map<String, String> regionSpecs,
+                                String defaultSpec,
+                                RedisTemplate<String, Object> redisTemplate,
+                                Duration redisTtl,
+                                StringRedisTemplate stringRedisTemplate,
+                                String invalidationChannel,
+                                MeterRegistry meterRegistry) {
+        this.regionSpecs = regionSpecs;
+        this.defaultSpec = defaultSpec;
+        this.redisTemplate = redisTemplate;
+        this.redisTtl = redisTtl;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.invalidationChannel = invalidationChannel;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return regionSpecs.entrySet().stream()
+                .map(region -> createCache(region.getKey(), region.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        logger.warn("Cache region {} is not configured, using default spec: {}", name, defaultSpec);
+        return createCache(name, defaultSpec);
+    }
+
+    private TwoLevelCache createCache(String name, String spec) {
+        com.github.benmanes.caffeine.cache.Cache<String, Object> localCache = Caffeine.from(spec)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, name);
+        return new TwoLevelCache(name, localCache, redisTemplate, redisTtl, this, meterRegistry);
+    }
+
+    void publishInvalidation(String cacheName, String key) {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(invalidationChannel,
+                    nodeId + "\n" + cacheName + "\n" + (key != null ? key : CLEAR_ALL));
+        } catch (Exception e) {
+            logger.warn("Error publishing cache invalidation for {}:{}", cacheName, key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        Cache cache = lookupCache(parts[1]);
+        if (cache instanceof TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            if (CLEAR_ALL.equals(parts[2])) {
+                twoLevelCache.clearLocal();
+            } else {
+                twoLevelCache.evictLocal(parts[2]);
+            }
+            logger.debug("Invalidated {}:{} on request of node {}", parts[1], parts[2], parts[0]);
+        }
+    }
+}
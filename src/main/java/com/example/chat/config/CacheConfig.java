@@ -1,19 +1,95 @@
 package com.example.chat.config;
 
-import org.springframework.cache.CacheManager;
+import com.example.chat.cache.TwoLevelCacheManager;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    // Default local tier specs per region, overridable with app.cache.regions.<name>
+    private static final Map<String, String> DEFAULT_REGION_SPECS = Map.of(
+        "users", "maximumSize=10000,expireAfterWrite=10m",
+        "usersByUsername", "maximumSize=10000,expireAfterWrite=10m",
+        "conversations", "maximumSize=10000,expireAfterWrite=10m",
+        "conversationMembers", "maximumSize=50000,expireAfterWrite=10m",
+        "messages", "maximumSize=5000,expireAfterWrite=5m",
+        "presence", "maximumSize=10000,expireAfterWrite=30s",
+        "onlineUsers", "maximumSize=10000,expireAfterWrite=30s"
+    );
+
+    @Value("${app.cache.default-spec:maximumSize=1000,expireAfterWrite=5m}")
+    private String defaultSpec;
+
+    @Value("${app.cache.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${app.cache.redis.ttl:30m}")
+    private Duration redisTtl;
+
+    @Value("${app.cache.invalidation-channel:cache.invalidation}")
+    private String invalidationChannel;
+
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager(
-            "users", "conversations", "messages", "presence", "onlineUsers"
+    public TwoLevelCacheManager cacheManager(Environment environment,
+                                             RedisConnectionFactory connectionFactory,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             RedisMessageListenerContainer redisContainer,
+                                             MeterRegistry meterRegistry) {
+        Map<String, String> regionSpecs = new LinkedHashMap<>();
+        DEFAULT_REGION_SPECS.forEach((name, spec) ->
+                regionSpecs.put(name, environment.getProperty("app.cache.regions." + name, spec)));
+
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+                regionSpecs,
+                defaultSpec,
+                redisEnabled ? cacheRedisTemplate(connectionFactory) : null,
+                redisTtl,
+                stringRedisTemplate,
+                invalidationChannel,
+                meterRegistry
         );
+        // Evictions wait for the commit, a reader in between would cache the old row again
+        cacheManager.setTransactionAware(true);
+
+        // Evict local entries changed on other nodes
+        redisContainer.addMessageListener(cacheManager, new ChannelTopic(invalidationChannel));
+        return cacheManager;
+    }
+
+    private RedisTemplate<String, Object> cacheRedisTemplate(RedisConnectionFactory connectionFactory) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new GenericJackson2JsonRedisSerializer(objectMapper));
+        template.afterPropertiesSet();
+        return template;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.example.chat.config;
 
+import com.example.chat.websocket.WebSocketSessionRegistry;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -14,7 +15,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Configuration
 public class MonitoringConfig {
 
-    private final AtomicInteger activeConnections = new AtomicInteger(0);
     private final AtomicInteger totalMessages = new AtomicInteger(0);
 
     @Autowired
@@ -44,17 +44,25 @@ public class MonitoringConfig {
     @Bean
     public Timer messageDeliveryTimer(MeterRegistry meterRegistry) {
         return Timer.builder("chat.message.delivery.time")
-                .description("Time taken to deliver messages")
+                .description("Time from sending a message until a recipient acknowledged its delivery")
+                .publishPercentileHistogram()
                 .register(meterRegistry);
     }
 
     @Bean
-    public Gauge activeConnectionsGauge(MeterRegistry meterRegistry) {
-        return Gauge.builder("chat.connections.active", activeConnections, AtomicInteger::get)
+    public Gauge activeConnectionsGauge(MeterRegistry meterRegistry, WebSocketSessionRegistry sessionRegistry) {
+        return Gauge.builder("chat.connections.active", sessionRegistry, WebSocketSessionRegistry::getSessionCount)
                 .description("Number of active WebSocket connections")
                 .register(meterRegistry);
     }
 
+    @Bean
+    public Gauge activeSubscriptionsGauge(MeterRegistry meterRegistry, WebSocketSessionRegistry sessionRegistry) {
+        return Gauge.builder("chat.subscriptions.active", sessionRegistry, WebSocketSessionRegistry::getSubscriptionCount)
+                .description("Number of active STOMP subscriptions")
+                .register(meterRegistry);
+    }
+
     @Bean
     public Gauge onlineUsersGauge(MeterRegistry meterRegistry) {
         return Gauge.builder("chat.users.online", this, MonitoringConfig::getOnlineUsersCount)
@@ -62,14 +70,6 @@ public class MonitoringConfig {
                 .register(meterRegistry);
     }
 
-    public void incrementActiveConnections() {
-        activeConnections.incrementAndGet();
-    }
-
-    public void decrementActiveConnections() {
-        activeConnections.decrementAndGet();
-    }
-
     private double getOnlineUsersCount() {
         try {
             Long count = redisTemplate.opsForSet().size("online_users");
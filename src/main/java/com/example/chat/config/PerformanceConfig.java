@@ -1,5 +1,6 @@
 package com.example.chat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
@@ -36,6 +37,34 @@ public class PerformanceConfig implements AsyncConfigurer {
         return executor;
     }
 
+    // Channel fan-out partitions, a full queue pushes back on the Redis listener thread
+    @Bean(name = "fanoutExecutor")
+    public ThreadPoolTaskExecutor fanoutExecutor(@Value("${app.channels.fanout.workers:4}") int workers,
+                                                 @Value("${app.channels.fanout.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Fanout-");
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Preview generation, uploads never wait on it: a full queue rejects and the original is served instead
+    @Bean(name = "thumbnailExecutor")
+    public ThreadPoolTaskExecutor thumbnailExecutor(@Value("${app.thumbnails.workers:2}") int workers,
+                                                    @Value("${app.thumbnails.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Thumbnail-");
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
     @Override
     public Executor getAsyncExecutor() {
         return messageExecutor();
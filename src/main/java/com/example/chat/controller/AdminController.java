@@ -0,0 +1,74 @@
+package com.example.chat.controller;
+
+import com.example.chat.service.AnalyticsService;
+import com.example.chat.service.MessageImportService;
+import com.example.chat.service.PresenceRegistry;
+import com.example.chat.websocket.WebSocketSessionRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    @Autowired
+    private MessageImportService messageImportService;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private WebSocketSessionRegistry sessionRegistry;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    // Rollups of the last hour unless a range is given
+    @GetMapping("/analytics")
+    public ResponseEntity<Map<String, Object>> getAnalytics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long conversationId) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(1);
+        return ResponseEntity.ok(analyticsService.getAnalytics(start, end, conversationId));
+    }
+
+    // WebSocket sessions of the node serving the request, heaviest sessions first
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> getSessions(@RequestParam(defaultValue = "10") int limit) {
+        Map<String, Object> snapshot = sessionRegistry.snapshot(Math.max(1, Math.min(limit, 100)));
+        snapshot.put("node", presenceRegistry.getNodeId());
+        return ResponseEntity.ok(snapshot);
+    }
+
+    // Streams an NDJSON body of message records, pass importId to resume a failed import with the same file
+    @PostMapping(value = "/imports/messages", consumes = {"application/x-ndjson", "application/octet-stream", "text/plain"})
+    public ResponseEntity<Map<String, Object>> importMessages(@RequestParam(required = false) String importId,
+                                                              @RequestParam(required = false) String source,
+                                                              HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.ok(messageImportService.importMessages(request.getInputStream(), importId, source));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/imports/{id}")
+    public ResponseEntity<Map<String, Object>> getImport(@PathVariable String id) {
+        try {
+            return ResponseEntity.ok(messageImportService.findImport(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -3,14 +3,19 @@ package com.example.chat.controller;
 import com.example.chat.dto.ConversationDto;
 import com.example.chat.dto.MessageDto;
 import com.example.chat.model.User;
+import com.example.chat.service.ChannelFanoutService;
+import com.example.chat.service.ConversationMembershipService;
 import com.example.chat.service.ConversationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +26,12 @@ public class ConversationController {
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private ConversationMembershipService membershipService;
+
+    @Autowired
+    private ChannelFanoutService channelFanoutService;
+
     @GetMapping
     public ResponseEntity<List<ConversationDto>> getUserConversations(Authentication auth) {
         User user = (User) auth.getPrincipal();
@@ -51,18 +62,67 @@ public class ConversationController {
             @RequestBody Map<String, Object> request, Authentication auth) {
         User user = (User) auth.getPrincipal();
         String name = (String) request.get("name");
-        @SuppressWarnings("unchecked")
-        List<Long> memberIds = (List<Long>) request.get("memberIds");
+        List<Long> memberIds = userIds(request.get("memberIds"));
         
         ConversationDto conversation = conversationService.createGroupConversation(name, user.getId(), memberIds);
         return ResponseEntity.ok(conversation);
     }
 
+    // Returns a summary instead of the member list, for groups with thousands of members
+    @PostMapping("/group/bulk")
+    public ResponseEntity<ConversationMembershipService.GroupCreated> createGroupBulk(
+            @RequestBody Map<String, Object> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        String name = (String) request.get("name");
+
+        return ResponseEntity.ok(membershipService.createGroup(name, user.getId(), userIds(request.get("memberIds"))));
+    }
+
+    @PostMapping("/channel")
+    public ResponseEntity<ConversationDto> createChannel(
+            @RequestBody Map<String, String> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        return ResponseEntity.ok(conversationService.createChannel(request.get("name"), user.getId()));
+    }
+
+    @PostMapping("/{id}/subscription")
+    public ResponseEntity<Void> subscribe(@PathVariable Long id, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        conversationService.subscribe(id, user.getId());
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("/{id}/subscription")
+    public ResponseEntity<Void> unsubscribe(@PathVariable Long id, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        conversationService.unsubscribe(id, user.getId());
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/{id}/delivery")
+    public ResponseEntity<Map<String, Object>> getDeliveryProgress(@PathVariable Long id, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        if (!conversationService.isAdmin(id, user.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(channelFanoutService.getProgress(id));
+    }
+
     @GetMapping("/{id}/messages")
     public ResponseEntity<Page<MessageDto>> getConversationMessages(
-            @PathVariable Long id, Pageable pageable, Authentication auth) {
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            Pageable pageable, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        Page<MessageDto> messages = conversationService.getConversationMessages(id, user.getId(), before, pageable);
+        return ResponseEntity.ok(messages);
+    }
+
+    @GetMapping("/{id}/messages/new")
+    public ResponseEntity<List<MessageDto>> getNewMessages(
+            @PathVariable Long id, @RequestParam Long after, Authentication auth) {
         User user = (User) auth.getPrincipal();
-        Page<MessageDto> messages = conversationService.getConversationMessages(id, user.getId(), pageable);
+        List<MessageDto> messages = conversationService.getNewMessages(id, user.getId(), after);
         return ResponseEntity.ok(messages);
     }
 
@@ -76,6 +136,20 @@ public class ConversationController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/{id}/members/bulk")
+    public ResponseEntity<ConversationMembershipService.MembersAdded> addMembers(
+            @PathVariable Long id, @RequestBody Map<String, Object> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        return ResponseEntity.ok(membershipService.addMembers(id, user.getId(), userIds(request.get("userIds"))));
+    }
+
+    @PostMapping("/{id}/members/remove")
+    public ResponseEntity<ConversationMembershipService.MembersRemoved> removeMembers(
+            @PathVariable Long id, @RequestBody Map<String, Object> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        return ResponseEntity.ok(membershipService.removeMembers(id, user.getId(), userIds(request.get("userIds"))));
+    }
+
     @PostMapping("/{id}/read")
     public ResponseEntity<Void> markAsRead(
             @PathVariable Long id, @RequestBody Map<String, Long> request, Authentication auth) {
@@ -85,4 +159,14 @@ public class ConversationController {
         conversationService.markAsRead(id, user.getId(), messageId);
         return ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+
+    // JSON numbers arrive as Integer or Long depending on their size
+    private List<Long> userIds(Object ids) {
+        if (!(ids instanceof List<?> list)) {
+            return List.of();
+        }
+        return list.stream()
+                .map(id -> id instanceof Number number ? number.longValue() : null)
+                .toList();
+    }
+}
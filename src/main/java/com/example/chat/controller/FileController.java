@@ -1,16 +1,37 @@
 package com.example.chat.controller;
 
+import com.example.chat.dto.StoredFile;
+import com.example.chat.model.FileMetadata;
 import com.example.chat.model.User;
+import com.example.chat.repository.ConversationMemberRepository;
+import com.example.chat.service.DirectUploadService;
 import com.example.chat.service.FileService;
+import com.example.chat.service.ObjectStorage;
+import com.example.chat.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/files")
@@ -18,19 +39,38 @@ public class FileController {
 
     private static final Logger logger = LoggerFactory.getLogger(FileController.class);
 
+    private static final String PREVIEW_CONTENT_TYPE = "image/jpeg";
+
+    // Request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private ConversationMemberRepository memberRepository;
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private DirectUploadService directUploadService;
+
     @PostMapping
     public ResponseEntity<Map<String, String>> uploadFile(
             @RequestParam("file") MultipartFile file, 
             Authentication auth) {
+        User user = (User) auth.getPrincipal();
         try {
-            User user = (User) auth.getPrincipal();
-            String fileUrl = fileService.uploadFile(file, user.getId());
+            StoredFile stored = fileService.uploadFile(file, user.getId());
             
             return ResponseEntity.ok(Map.of(
-                "url", fileUrl,
+                "id", String.valueOf(stored.getId()),
+                "url", stored.getUrl(),
+                "sha256", stored.getSha256(),
                 "filename", file.getOriginalFilename(),
                 "contentType", file.getContentType(),
                 "size", String.valueOf(file.getSize())
@@ -41,4 +81,270 @@ public class FileController {
                     .body(Map.of("error", e.getMessage() != null ? e.getMessage() : "File upload failed"));
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/by-hash")
+    public ResponseEntity<Map<String, String>> uploadByHash(@RequestBody Map<String, String> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            StoredFile stored = fileService.uploadByHash(request.get("sha256"), request.get("filename"),
+                    request.get("contentType"), user.getId());
+            if (stored == null) {
+                // Unknown or not readable by the user, the two are not told apart; the client uploads the bytes instead
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown content"));
+            }
+
+            return ResponseEntity.ok(Map.of(
+                "id", String.valueOf(stored.getId()),
+                "url", stored.getUrl(),
+                "sha256", stored.getSha256(),
+                "filename", request.get("filename"),
+                "contentType", stored.getContentType(),
+                "size", String.valueOf(stored.getSize())
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> initiateUpload(@RequestBody Map<String, Object> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            return ResponseEntity.ok(resumableUploadService.initiate(user.getId(), (String) request.get("filename"),
+                    (String) request.get("contentType"), Long.parseLong(String.valueOf(request.get("size")))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Upload initiation failed for user {}: {}", user.getId(), e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload could not be started"));
+        }
+    }
+
+    // The chunk is the raw request body, it is streamed to storage without being buffered
+    @PutMapping("/uploads/{uploadId}/chunks/{chunk}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(@PathVariable String uploadId,
+                                                           @PathVariable int chunk,
+                                                           @RequestParam long offset,
+                                                           HttpServletRequest request,
+                                                           Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            return ResponseEntity.ok(resumableUploadService.uploadChunk(user.getId(), uploadId, chunk, offset,
+                    request.getContentLengthLong(), request.getInputStream()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Chunk {} of upload {} failed: {}", chunk, uploadId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Chunk upload failed"));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUpload(@PathVariable String uploadId, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            return ResponseEntity.ok(resumableUploadService.getStatus(user.getId(), uploadId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<Map<String, String>> completeUpload(@PathVariable String uploadId, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            StoredFile stored = resumableUploadService.complete(user.getId(), uploadId);
+
+            return ResponseEntity.ok(Map.of(
+                "id", String.valueOf(stored.getId()),
+                "url", stored.getUrl(),
+                "sha256", stored.getSha256(),
+                "contentType", stored.getContentType(),
+                "size", String.valueOf(stored.getSize())
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Completing upload {} failed: {}", uploadId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload could not be completed"));
+        }
+    }
+
+    // Returns a presigned PUT the client sends the file to, the bytes never pass through the application
+    @PostMapping("/intents")
+    public ResponseEntity<Map<String, Object>> createUploadIntent(@RequestBody Map<String, Object> request, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            return ResponseEntity.ok(directUploadService.createIntent(user.getId(), (String) request.get("filename"),
+                    (String) request.get("contentType"), Long.parseLong(String.valueOf(request.get("size"))),
+                    (String) request.get("sha256")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Upload intent failed for user {}: {}", user.getId(), e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload could not be started"));
+        }
+    }
+
+    @PostMapping("/intents/{uploadId}/complete")
+    public ResponseEntity<Map<String, String>> completeUploadIntent(@PathVariable String uploadId, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        try {
+            StoredFile stored = directUploadService.complete(user.getId(), uploadId);
+
+            return ResponseEntity.ok(Map.of(
+                "id", String.valueOf(stored.getId()),
+                "url", stored.getUrl(),
+                "sha256", stored.getSha256(),
+                "contentType", stored.getContentType(),
+                "size", String.valueOf(stored.getSize())
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Completing upload intent {} failed: {}", uploadId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload could not be completed"));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Void> getFile(@PathVariable Long id,
+                                        @RequestParam(required = false) String variant,
+                                        Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        FileMetadata file = fileService.findFile(id).orElse(null);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!canRead(file, user)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        String objectName = objectName(file, variant);
+        // A missing preview falls back to the original, without caching so the preview is picked up once ready
+        boolean fallback = variant != null && objectName.equals(file.getStoragePath());
+
+        FileService.PresignedUrl presigned = fileService.getCachedFileUrl(objectName);
+        if (presigned == null) {
+            // Storage clients cannot reach directly, the object is served by the download endpoint
+            String location = FileService.FILE_PATH + id + "/content"
+                    + (variant != null && !fallback ? "?variant=" + variant : "");
+            return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(location)).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(presigned.url()))
+                .cacheControl(fallback
+                        ? CacheControl.noCache()
+                        : CacheControl.maxAge(presigned.maxAgeSeconds(), TimeUnit.SECONDS).cachePrivate())
+                .build();
+    }
+
+    // Streams the object with support for conditional and single Range requests, so players and PDF viewers
+    // can seek without downloading the whole file
+    @GetMapping("/{id}/content")
+    public void downloadFile(@PathVariable Long id,
+                             @RequestParam(required = false) String variant,
+                             HttpServletRequest request,
+                             HttpServletResponse response,
+                             Authentication auth) throws Exception {
+        User user = (User) auth.getPrincipal();
+        FileMetadata file = fileService.findFile(id).orElse(null);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!canRead(file, user)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        // The content hash identifies the original, previews are described by storage
+        String objectName = objectName(file, variant);
+        boolean original = objectName.equals(file.getStoragePath());
+        long size;
+        String etag;
+        long lastModified;
+        String contentType;
+        if (original && file.getFileHash() != null) {
+            size = file.getFileSize();
+            etag = "\"" + file.getFileHash() + "\"";
+            lastModified = file.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            contentType = file.getMimeType();
+        } else {
+            ObjectStorage.StoredObject object = fileService.statObject(objectName);
+            if (object == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            size = object.size();
+            etag = object.etag().startsWith("\"") ? object.etag() : "\"" + object.etag() + "\"";
+            lastModified = object.lastModified().toEpochMilli();
+            contentType = original ? file.getMimeType() : PREVIEW_CONTENT_TYPE;
+        }
+
+        // Answers If-None-Match, If-Modified-Since and their If-Match counterparts, and sets the validators
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long length = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A range of an older version is useless to the client, it gets the whole current object
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // Several ranges would need a multipart body, serving everything is allowed instead
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    length = ranges.get(0).getRangeEnd(size) - start + 1;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        response.setContentType(contentType);
+        response.setContentLengthLong(length);
+        if (original) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                    .filename(file.getOriginalFilename(), StandardCharsets.UTF_8).build().toString());
+        }
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        Path localPath = fileService.localObjectPath(objectName);
+        if (localPath != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file with sendfile once the handler returns, the bytes never enter the JVM
+            request.setAttribute(SENDFILE_FILENAME, localPath.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        fileService.transferObject(objectName, start, length, Channels.newChannel(response.getOutputStream()));
+    }
+
+    // Visible to its uploader and to the members of the conversation it was sent to
+    private boolean canRead(FileMetadata file, User user) {
+        return file.getUploadedBy().equals(user.getId())
+                || (file.getConversationId() != null
+                    && memberRepository.existsByConversationIdAndUserId(file.getConversationId(), user.getId()));
+    }
+
+    private String objectName(FileMetadata file, String variant) {
+        if ("thumbnail".equals(variant) && file.getThumbnailPath() != null) {
+            return file.getThumbnailPath();
+        } else if ("placeholder".equals(variant) && file.getPlaceholderPath() != null) {
+            return file.getPlaceholderPath();
+        }
+        return file.getStoragePath();
+    }
+}
@@ -46,8 +46,10 @@ public class MessageController {
         Long messageId = Long.valueOf(request.get("messageId").toString());
         Message.Status status = Message.Status.valueOf(request.get("status").toString());
         
+        Long sentAt = request.get("sentAt") != null ? Long.valueOf(request.get("sentAt").toString()) : null;
+
         if (status == Message.Status.DELIVERED) {
-            messageStatusService.markAsDelivered(messageId, user.getId(), user.getUsername());
+            messageStatusService.markAsDelivered(messageId, user.getId(), user.getUsername(), sentAt);
         } else if (status == Message.Status.READ) {
             messageStatusService.markAsRead(messageId, user.getId(), user.getUsername());
         }
@@ -76,6 +78,9 @@ class WebSocketMessageController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private MessageStatusService messageStatusService;
+
     @MessageMapping("/conversations/{conversationId}/send")
     public void sendMessage(@DestinationVariable Long conversationId, 
                            @Payload SendMessageRequest request, 
@@ -96,6 +101,15 @@ class WebSocketMessageController {
         messageService.sendTypingIndicator(conversationId, getUserIdFromPrincipal(principal), typing);
     }
 
+    // Recipients acknowledge every message they receive, echoing its sentAt so delivery is timed end to end
+    @MessageMapping("/messages/{messageId}/delivered")
+    public void acknowledgeDelivery(@DestinationVariable Long messageId,
+                                    @Payload Map<String, Long> payload,
+                                    Principal principal) {
+        messageStatusService.markAsDelivered(messageId, getUserIdFromPrincipal(principal), principal.getName(),
+                payload.get("sentAt"));
+    }
+
     private Long getUserIdFromPrincipal(Principal principal) {
         if (principal instanceof org.springframework.security.core.Authentication) {
             org.springframework.security.core.Authentication auth = (org.springframework.security.core.Authentication) principal;
@@ -8,6 +8,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,6 +17,8 @@ import java.util.Set;
 @RequestMapping("/api/presence")
 public class PresenceController {
 
+    private static final int MAX_BULK_USERS = 1000;
+
     @Autowired
     private PresenceService presenceService;
 
@@ -26,11 +30,27 @@ public class PresenceController {
     }
 
     @GetMapping("/online")
-    public ResponseEntity<Set<Object>> getOnlineUsers() {
-        Set<Object> onlineUsers = presenceService.getOnlineUsers();
+    public ResponseEntity<Set<String>> getOnlineUsers() {
+        Set<String> onlineUsers = presenceService.getOnlineUsers();
         return ResponseEntity.ok(onlineUsers);
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<Map<Long, Boolean>> getBulkStatus(@RequestBody Map<String, List<Long>> request) {
+        List<Long> userIds = request.get("userIds");
+        if (userIds == null || userIds.size() > MAX_BULK_USERS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        long[] ids = userIds.stream().mapToLong(Long::longValue).toArray();
+        boolean[] online = presenceService.areOnline(ids);
+        Map<Long, Boolean> status = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            status.put(ids[i], online[i]);
+        }
+        return ResponseEntity.ok(status);
+    }
+
     @GetMapping("/status/{userId}")
     public ResponseEntity<Map<String, Object>> getUserStatus(@PathVariable Long userId) {
         boolean online = presenceService.isUserOnline(userId);
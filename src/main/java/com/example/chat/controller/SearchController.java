@@ -0,0 +1,68 @@
+package com.example.chat.controller;
+
+import com.example.chat.model.User;
+import com.example.chat.service.MessageSearchService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @GetMapping("/messages")
+    public ResponseEntity<Map<String, Object>> searchMessages(@RequestParam String query,
+                                                              @RequestParam(required = false) Long conversationId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              Authentication auth) {
+        if (query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        User user = (User) auth.getPrincipal();
+        try {
+            return ResponseEntity.ok(messageSearchService.search(user.getId(), query, conversationId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/messages/stream")
+    public ResponseEntity<StreamingResponseBody> streamMessages(@RequestParam String query,
+                                                                @RequestParam(required = false) Long conversationId,
+                                                                Authentication auth) {
+        if (query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        User user = (User) auth.getPrincipal();
+        StreamingResponseBody body = outputStream ->
+                messageSearchService.stream(user.getId(), query, conversationId, result -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(result));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
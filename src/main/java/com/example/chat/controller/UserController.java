@@ -2,6 +2,7 @@ package com.example.chat.controller;
 
 import com.example.chat.dto.UserDto;
 import com.example.chat.model.User;
+import com.example.chat.service.PresenceService;
 import com.example.chat.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -17,11 +18,16 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private PresenceService presenceService;
+
     @GetMapping("/me")
     public ResponseEntity<UserDto> getCurrentUser(Authentication auth) {
         User user = (User) auth.getPrincipal();
         UserDto userDto = new UserDto(user);
-        userDto.setOnline(userService.isUserOnline(user.getId()));
+        // The principal is a cached snapshot without last seen
+        userDto.setLastSeen(presenceService.getLastSeen(user.getId()));
+        userDto.setOnline(presenceService.isUserOnline(user.getId()));
         return ResponseEntity.ok(userDto);
     }
 
@@ -35,8 +41,9 @@ public class UserController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<UserDto>> searchUsers(@RequestParam String query) {
-        List<UserDto> users = userService.searchUsers(query);
+    public ResponseEntity<List<UserDto>> searchUsers(@RequestParam String query,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        List<UserDto> users = userService.searchUsers(query, limit);
         return ResponseEntity.ok(users);
     }
 }
\ No newline at end of file
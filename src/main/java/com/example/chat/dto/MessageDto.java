@@ -11,10 +11,14 @@ public class MessageDto {
     private String content;
     private String attachmentUrl;
     private String mimeType;
+    private String thumbnailUrl;
+    private String placeholderUrl;
     private Message.Status status;
     private LocalDateTime createdAt;
     private LocalDateTime editedAt;
     private boolean deleted;
+    // Epoch millis at which the server accepted the send, carried along to measure delivery latency
+    private Long sentAt;
 
     public MessageDto() {}
 
@@ -26,6 +30,11 @@ public class MessageDto {
         this.content = message.getContent();
         this.attachmentUrl = message.getAttachmentUrl();
         this.mimeType = message.getMimeType();
+        // Previews are generated in the background, until they exist the endpoint redirects to the original
+        if (message.getAttachmentKey() != null && mimeType != null && mimeType.startsWith("image/")) {
+            this.thumbnailUrl = attachmentUrl + "?variant=thumbnail";
+            this.placeholderUrl = attachmentUrl + "?variant=placeholder";
+        }
         this.status = message.getStatus();
         this.createdAt = message.getCreatedAt();
         this.editedAt = message.getEditedAt();
@@ -54,6 +63,12 @@ public class MessageDto {
     public String getMimeType() { return mimeType; }
     public void setMimeType(String mimeType) { this.mimeType = mimeType; }
 
+    public String getThumbnailUrl() { return thumbnailUrl; }
+    public void setThumbnailUrl(String thumbnailUrl) { this.thumbnailUrl = thumbnailUrl; }
+
+    public String getPlaceholderUrl() { return placeholderUrl; }
+    public void setPlaceholderUrl(String placeholderUrl) { this.placeholderUrl = placeholderUrl; }
+
     public Message.Status getStatus() { return status; }
     public void setStatus(Message.Status status) { this.status = status; }
 
@@ -65,4 +80,7 @@ public class MessageDto {
 
     public boolean isDeleted() { return deleted; }
     public void setDeleted(boolean deleted) { this.deleted = deleted; }
+
+    public Long getSentAt() { return sentAt; }
+    public void setSentAt(Long sentAt) { this.sentAt = sentAt; }
 }
\ No newline at end of file
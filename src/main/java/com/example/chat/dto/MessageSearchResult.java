@@ -0,0 +1,52 @@
+package com.example.chat.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public class MessageSearchResult {
+    private Long messageId;
+    private Long conversationId;
+    private Long senderId;
+    private String senderUsername;
+    private String snippet;
+    private float rank;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    public MessageSearchResult() {}
+
+    public MessageSearchResult(Long messageId, Long conversationId, Long senderId, String senderUsername,
+                               String snippet, float rank, LocalDateTime createdAt) {
+        this.messageId = messageId;
+        this.conversationId = conversationId;
+        this.senderId = senderId;
+        this.senderUsername = senderUsername;
+        this.snippet = snippet;
+        this.rank = rank;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and setters
+    public Long getMessageId() { return messageId; }
+    public void setMessageId(Long messageId) { this.messageId = messageId; }
+
+    public Long getConversationId() { return conversationId; }
+    public void setConversationId(Long conversationId) { this.conversationId = conversationId; }
+
+    public Long getSenderId() { return senderId; }
+    public void setSenderId(Long senderId) { this.senderId = senderId; }
+
+    public String getSenderUsername() { return senderUsername; }
+    public void setSenderUsername(String senderUsername) { this.senderUsername = senderUsername; }
+
+    public String getSnippet() { return snippet; }
+    public void setSnippet(String snippet) { this.snippet = snippet; }
+
+    public float getRank() { return rank; }
+    public void setRank(float rank) { this.rank = rank; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -13,6 +13,8 @@ public class SendMessageRequest {
     private String content;
     
     private String attachmentUrl;
+
+    private Long fileId;
     
     private String mimeType;
 
@@ -35,6 +37,9 @@ public class SendMessageRequest {
     public String getAttachmentUrl() { return attachmentUrl; }
     public void setAttachmentUrl(String attachmentUrl) { this.attachmentUrl = attachmentUrl; }
 
+    public Long getFileId() { return fileId; }
+    public void setFileId(Long fileId) { this.fileId = fileId; }
+
     public String getMimeType() { return mimeType; }
     public void setMimeType(String mimeType) { this.mimeType = mimeType; }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.example.chat.dto;
+
+public class StoredFile {
+    private Long id;
+    private String objectName;
+    private String url;
+    private String sha256;
+    private long size;
+    private String contentType;
+
+    public StoredFile() {}
+
+    public StoredFile(Long id, String objectName, String url, String sha256, long size, String contentType) {
+        this.id = id;
+        this.objectName = objectName;
+        this.url = url;
+        this.sha256 = sha256;
+        this.size = size;
+        this.contentType = contentType;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getObjectName() { return objectName; }
+    public void setObjectName(String objectName) { this.objectName = objectName; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+}
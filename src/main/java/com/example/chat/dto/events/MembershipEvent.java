@@ -0,0 +1,47 @@
+package com.example.chat.dto.events;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class MembershipEvent {
+
+    public enum Type {
+        GROUP_CREATED, MEMBERS_ADDED, MEMBERS_REMOVED
+    }
+
+    private Type eventType;
+    private Long conversationId;
+    private Long actorId;
+    private List<Long> userIds;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime timestamp;
+
+    public MembershipEvent() {}
+
+    public MembershipEvent(Type eventType, Long conversationId, Long actorId, List<Long> userIds) {
+        this.eventType = eventType;
+        this.conversationId = conversationId;
+        this.actorId = actorId;
+        this.userIds = userIds;
+        this.timestamp = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public Type getEventType() { return eventType; }
+    public void setEventType(Type eventType) { this.eventType = eventType; }
+
+    public Long getConversationId() { return conversationId; }
+    public void setConversationId(Long conversationId) { this.conversationId = conversationId; }
+
+    public Long getActorId() { return actorId; }
+    public void setActorId(Long actorId) { this.actorId = actorId; }
+
+    public List<Long> getUserIds() { return userIds; }
+    public void setUserIds(List<Long> userIds) { this.userIds = userIds; }
+
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+}
@@ -20,7 +20,8 @@ public class MessageEvent {
     private Message.Type messageType;
     private Message.Status status;
     
-    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    // Milliseconds are kept for the latency analytics
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSS]")
     private LocalDateTime timestamp;
 
     public MessageEvent() {}
@@ -16,7 +16,8 @@ public class PresenceEvent {
     private Long conversationId;
     private boolean online;
     
-    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    // Milliseconds are kept for the latency analytics
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSS]")
     private LocalDateTime timestamp;
 
     public PresenceEvent() {}
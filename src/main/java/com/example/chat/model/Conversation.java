@@ -23,6 +23,15 @@ public class Conversation {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    @Column(name = "cleared_before_id")
+    private Long clearedBeforeId;
+
+    @Column(name = "cleared_at")
+    private LocalDateTime clearedAt;
+
+    @Column(name = "purge_pending")
+    private boolean purgePending = false;
+
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<ConversationMember> members = new ArrayList<>();
 
@@ -30,7 +39,7 @@ public class Conversation {
     private List<Message> messages = new ArrayList<>();
 
     public enum Type {
-        DIRECT, GROUP
+        DIRECT, GROUP, CHANNEL
     }
 
     // Constructors
@@ -57,6 +66,15 @@ public class Conversation {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
+    public Long getClearedBeforeId() { return clearedBeforeId; }
+    public void setClearedBeforeId(Long clearedBeforeId) { this.clearedBeforeId = clearedBeforeId; }
+
+    public LocalDateTime getClearedAt() { return clearedAt; }
+    public void setClearedAt(LocalDateTime clearedAt) { this.clearedAt = clearedAt; }
+
+    public boolean isPurgePending() { return purgePending; }
+    public void setPurgePending(boolean purgePending) { this.purgePending = purgePending; }
+
     public List<ConversationMember> getMembers() { return members; }
     public void setMembers(List<ConversationMember> members) { this.members = members; }
 
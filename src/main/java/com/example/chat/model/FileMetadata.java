@@ -0,0 +1,118 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "file_metadata")
+public class FileMetadata {
+    public enum PreviewStatus {
+        PENDING, READY, FAILED, SKIPPED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Column(name = "conversation_id")
+    private Long conversationId;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    @Column(name = "file_size")
+    private long fileSize;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "file_hash")
+    private String fileHash;
+
+    @Column(name = "storage_path")
+    private String storagePath;
+
+    @Column(name = "uploaded_by")
+    private Long uploadedBy;
+
+    @Column(name = "uploaded_at")
+    private LocalDateTime uploadedAt = LocalDateTime.now();
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "preview_status")
+    private PreviewStatus previewStatus;
+
+    @Column(name = "thumbnail_path")
+    private String thumbnailPath;
+
+    @Column(name = "placeholder_path")
+    private String placeholderPath;
+
+    @Column(name = "image_width")
+    private Integer imageWidth;
+
+    @Column(name = "image_height")
+    private Integer imageHeight;
+
+    // Constructors
+    public FileMetadata() {}
+
+    public FileMetadata(String originalFilename, long fileSize, String mimeType, String fileHash,
+                        String storagePath, Long uploadedBy) {
+        this.originalFilename = originalFilename;
+        this.fileSize = fileSize;
+        this.mimeType = mimeType;
+        this.fileHash = fileHash;
+        this.storagePath = storagePath;
+        this.uploadedBy = uploadedBy;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getMessageId() { return messageId; }
+    public void setMessageId(Long messageId) { this.messageId = messageId; }
+
+    public Long getConversationId() { return conversationId; }
+    public void setConversationId(Long conversationId) { this.conversationId = conversationId; }
+
+    public String getOriginalFilename() { return originalFilename; }
+    public void setOriginalFilename(String originalFilename) { this.originalFilename = originalFilename; }
+
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+
+    public String getFileHash() { return fileHash; }
+    public void setFileHash(String fileHash) { this.fileHash = fileHash; }
+
+    public String getStoragePath() { return storagePath; }
+    public void setStoragePath(String storagePath) { this.storagePath = storagePath; }
+
+    public Long getUploadedBy() { return uploadedBy; }
+    public void setUploadedBy(Long uploadedBy) { this.uploadedBy = uploadedBy; }
+
+    public LocalDateTime getUploadedAt() { return uploadedAt; }
+    public void setUploadedAt(LocalDateTime uploadedAt) { this.uploadedAt = uploadedAt; }
+
+    public PreviewStatus getPreviewStatus() { return previewStatus; }
+    public void setPreviewStatus(PreviewStatus previewStatus) { this.previewStatus = previewStatus; }
+
+    public String getThumbnailPath() { return thumbnailPath; }
+    public void setThumbnailPath(String thumbnailPath) { this.thumbnailPath = thumbnailPath; }
+
+    public String getPlaceholderPath() { return placeholderPath; }
+    public void setPlaceholderPath(String placeholderPath) { this.placeholderPath = placeholderPath; }
+
+    public Integer getImageWidth() { return imageWidth; }
+    public void setImageWidth(Integer imageWidth) { this.imageWidth = imageWidth; }
+
+    public Integer getImageHeight() { return imageHeight; }
+    public void setImageHeight(Integer imageHeight) { this.imageHeight = imageHeight; }
+}
@@ -27,6 +27,9 @@ public class Message {
     @Column(name = "attachment_url")
     private String attachmentUrl;
 
+    @Column(name = "attachment_key")
+    private String attachmentKey;
+
     @Column(name = "mime_type")
     private String mimeType;
 
@@ -80,6 +83,9 @@ public class Message {
     public String getAttachmentUrl() { return attachmentUrl; }
     public void setAttachmentUrl(String attachmentUrl) { this.attachmentUrl = attachmentUrl; }
 
+    public String getAttachmentKey() { return attachmentKey; }
+    public void setAttachmentKey(String attachmentKey) { this.attachmentKey = attachmentKey; }
+
     public String getMimeType() { return mimeType; }
     public void setMimeType(String mimeType) { this.mimeType = mimeType; }
 
@@ -0,0 +1,85 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "message_archive_segments")
+public class MessageArchiveSegment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "conversation_id")
+    private Long conversationId;
+
+    @Column(name = "range_start")
+    private LocalDateTime rangeStart;
+
+    @Column(name = "range_end")
+    private LocalDateTime rangeEnd;
+
+    @Column(name = "first_message_id")
+    private Long firstMessageId;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "message_count")
+    private int messageCount;
+
+    private String storage;
+
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Constructors
+    public MessageArchiveSegment() {}
+
+    public MessageArchiveSegment(Long conversationId, LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                 Long firstMessageId, Long lastMessageId, int messageCount,
+                                 String storage, String storageKey) {
+        this.conversationId = conversationId;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.firstMessageId = firstMessageId;
+        this.lastMessageId = lastMessageId;
+        this.messageCount = messageCount;
+        this.storage = storage;
+        this.storageKey = storageKey;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getConversationId() { return conversationId; }
+    public void setConversationId(Long conversationId) { this.conversationId = conversationId; }
+
+    public LocalDateTime getRangeStart() { return rangeStart; }
+    public void setRangeStart(LocalDateTime rangeStart) { this.rangeStart = rangeStart; }
+
+    public LocalDateTime getRangeEnd() { return rangeEnd; }
+    public void setRangeEnd(LocalDateTime rangeEnd) { this.rangeEnd = rangeEnd; }
+
+    public Long getFirstMessageId() { return firstMessageId; }
+    public void setFirstMessageId(Long firstMessageId) { this.firstMessageId = firstMessageId; }
+
+    public Long getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(Long lastMessageId) { this.lastMessageId = lastMessageId; }
+
+    public int getMessageCount() { return messageCount; }
+    public void setMessageCount(int messageCount) { this.messageCount = messageCount; }
+
+    public String getStorage() { return storage; }
+    public void setStorage(String storage) { this.storage = storage; }
+
+    public String getStorageKey() { return storageKey; }
+    public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -1,6 +1,8 @@
 package com.example.chat.repository;
 
 import com.example.chat.model.ConversationMember;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,5 +21,14 @@ public interface ConversationMemberRepository extends JpaRepository<Conversation
     @Query("SELECT cm FROM ConversationMember cm WHERE cm.conversation.id = :conversationId AND cm.user.id != :excludeUserId")
     List<ConversationMember> findOtherMembers(@Param("conversationId") Long conversationId, @Param("excludeUserId") Long excludeUserId);
     
+    @Cacheable(value = "conversationMembers", key = "#p0 + ':' + #p1", sync = true)
     boolean existsByConversationIdAndUserId(Long conversationId, Long userId);
+
+    @Override
+    @CacheEvict(value = "conversationMembers", key = "#p0.conversation.id + ':' + #p0.user.id")
+    <S extends ConversationMember> S save(S member);
+
+    @Override
+    @CacheEvict(value = "conversationMembers", key = "#p0.conversation.id + ':' + #p0.user.id")
+    void delete(ConversationMember member);
 }
\ No newline at end of file
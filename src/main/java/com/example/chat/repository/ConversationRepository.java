@@ -1,11 +1,14 @@
 package com.example.chat.repository;
 
 import com.example.chat.model.Conversation;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +22,20 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
            "EXISTS (SELECT 1 FROM ConversationMember m1 WHERE m1.conversation = c AND m1.user.id = :user1Id) AND " +
            "EXISTS (SELECT 1 FROM ConversationMember m2 WHERE m2.conversation = c AND m2.user.id = :user2Id)")
     Optional<Conversation> findDirectConversation(@Param("user1Id") Long user1Id, @Param("user2Id") Long user2Id);
-}
\ No newline at end of file
+
+    @Query("SELECT COALESCE(c.clearedBeforeId, 0) FROM Conversation c WHERE c.id = :conversationId")
+    Optional<Long> findClearedBeforeId(@Param("conversationId") Long conversationId);
+
+    // Taken before the clear watermark is read, an import batch holding the row commits below it or sees the clear
+    @Query(value = "SELECT id FROM conversations WHERE id = :conversationId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockForClear(@Param("conversationId") Long conversationId);
+
+    // The type of a conversation never changes and conversations are not deleted, nothing to evict
+    @Cacheable(value = "conversations", key = "#p0", sync = true)
+    @Query(value = "SELECT type FROM conversations WHERE id = :conversationId", nativeQuery = true)
+    String findTypeById(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.updatedAt = :updatedAt WHERE c.id = :conversationId")
+    int touch(@Param("conversationId") Long conversationId, @Param("updatedAt") LocalDateTime updatedAt);
+}
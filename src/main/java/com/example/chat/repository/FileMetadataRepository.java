@@ -0,0 +1,32 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.FileMetadata;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Attaching and preview generation run concurrently on the same row, each only writes its own columns
+@Repository
+public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long> {
+
+    Optional<FileMetadata> findFirstByFileHashAndPreviewStatus(String fileHash, FileMetadata.PreviewStatus previewStatus);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.messageId = :messageId, f.conversationId = :conversationId " +
+           "WHERE f.id = :id AND f.messageId IS NULL")
+    int attach(@Param("id") Long id, @Param("messageId") Long messageId, @Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.previewStatus = :status, f.thumbnailPath = :thumbnailPath, " +
+           "f.placeholderPath = :placeholderPath, f.imageWidth = :width, f.imageHeight = :height WHERE f.id = :id")
+    int updatePreview(@Param("id") Long id, @Param("status") FileMetadata.PreviewStatus status,
+                      @Param("thumbnailPath") String thumbnailPath, @Param("placeholderPath") String placeholderPath,
+                      @Param("width") Integer width, @Param("height") Integer height);
+}
@@ -0,0 +1,15 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.MessageArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MessageArchiveSegmentRepository extends JpaRepository<MessageArchiveSegment, Long> {
+
+    List<MessageArchiveSegment> findByConversationIdOrderByRangeEndDesc(Long conversationId);
+
+    List<MessageArchiveSegment> findByConversationIdAndLastMessageIdLessThanEqual(Long conversationId, Long lastMessageId);
+}
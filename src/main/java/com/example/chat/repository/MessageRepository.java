@@ -4,24 +4,58 @@ import com.example.chat.model.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
-    Page<Message> findByConversationIdAndDeletedFalseOrderByCreatedAtDesc(Long conversationId, Pageable pageable);
-    
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.deleted = false AND m.id > :afterMessageId ORDER BY m.createdAt ASC")
+    // Messages up to the clear watermark stay hidden until the background purge removes them
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.deleted = false " +
+           "AND m.id > :clearedBeforeId ORDER BY m.createdAt DESC")
+    Page<Message> findVisible(@Param("conversationId") Long conversationId, @Param("clearedBeforeId") long clearedBeforeId, Pageable pageable);
+
+    // Bounded by created_at so partitions newer than the page are pruned
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.deleted = false " +
+           "AND m.id > :clearedBeforeId AND m.createdAt < :before ORDER BY m.createdAt DESC")
+    Page<Message> findVisibleBefore(@Param("conversationId") Long conversationId, @Param("clearedBeforeId") long clearedBeforeId,
+                                    @Param("before") LocalDateTime before, Pageable pageable);
+
+    // last_value of a sequence that was never used is the start value, not an allocated id
+    @Query(value = "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM messages_id_seq", nativeQuery = true)
+    long findLastAllocatedId();
+
+    // Deletes one chunk of cleared messages together with their receipts
+    @Modifying
+    @Query(value = "WITH doomed AS (SELECT id, created_at FROM messages WHERE conversation_id = :conversationId AND id <= :clearedBeforeId LIMIT :limit), " +
+                   "receipts AS (DELETE FROM message_receipts WHERE message_id IN (SELECT id FROM doomed)) " +
+                   "DELETE FROM messages m USING doomed d WHERE m.id = d.id AND m.created_at = d.created_at", nativeQuery = true)
+    int purgeClearedChunk(@Param("conversationId") Long conversationId, @Param("clearedBeforeId") long clearedBeforeId, @Param("limit") int limit);
+
+    // Ids and created_at can disagree by a few milliseconds, the created_at lower bound leaves a margin so
+    // only partitions from the anchor message onwards are scanned. Imports write old created_at values under
+    // new ids, the bound drops to the oldest row of any import with ids above the anchor.
+    @Query(value = "SELECT * FROM messages m WHERE m.conversation_id = :conversationId AND m.deleted = false AND m.id > :afterMessageId " +
+                   "AND m.created_at >= LEAST(COALESCE((SELECT a.created_at - INTERVAL '1 minute' FROM messages a WHERE a.id = :afterMessageId), '-infinity'), " +
+                   "(SELECT MIN(i.min_created_at) FROM message_imports i WHERE i.last_message_id > :afterMessageId)) " +
+                   "ORDER BY m.created_at ASC", nativeQuery = true)
     List<Message> findNewMessages(@Param("conversationId") Long conversationId, @Param("afterMessageId") Long afterMessageId);
-    
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId AND m.id > :lastReadMessageId AND m.sender.id != :userId AND m.deleted = false")
+
+    @Query(value = "SELECT COUNT(*) FROM messages m WHERE m.conversation_id = :conversationId AND m.id > :lastReadMessageId " +
+                   "AND m.sender_id != :userId AND m.deleted = false " +
+                   "AND m.created_at >= LEAST(COALESCE((SELECT a.created_at - INTERVAL '1 minute' FROM messages a WHERE a.id = :lastReadMessageId), '-infinity'), " +
+                   "(SELECT MIN(i.min_created_at) FROM message_imports i WHERE i.last_message_id > :lastReadMessageId))",
+           nativeQuery = true)
     long countUnreadMessages(@Param("conversationId") Long conversationId, @Param("lastReadMessageId") Long lastReadMessageId, @Param("userId") Long userId);
-    
-    void deleteByConversationId(Long conversationId);
+
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.conversation.id = :conversationId AND m.createdAt < :cutoff ORDER BY m.createdAt ASC, m.id ASC")
+    List<Message> findArchivable(@Param("conversationId") Long conversationId, @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
     
     @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.sender.id != :userId AND m.status != 'READ' AND m.deleted = false")
     List<Message> findUnreadMessagesByConversationAndNotSender(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
@@ -3,6 +3,7 @@ package com.example.chat.repository;
 import com.example.chat.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,6 +16,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     
-    @Query("SELECT u FROM User u WHERE u.username LIKE %:query% OR u.email LIKE %:query%")
-    List<User> searchUsers(String query);
+    @Query(value = "SELECT * FROM users WHERE lower(username) LIKE :pattern " +
+                   "ORDER BY lower(username) <-> :query LIMIT :limit", nativeQuery = true)
+    List<User> searchByUsernameSimilarity(@Param("query") String query, @Param("pattern") String pattern, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE lower(username) LIKE :prefix " +
+                   "ORDER BY lower(username) LIMIT :limit", nativeQuery = true)
+    List<User> searchByUsernamePrefix(@Param("prefix") String prefix, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE lower(email) LIKE :prefix " +
+                   "ORDER BY lower(email) LIMIT :limit", nativeQuery = true)
+    List<User> searchByEmailPrefix(@Param("prefix") String prefix, @Param("limit") int limit);
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.events.MessageEvent;
+import com.example.chat.dto.events.PresenceEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Windowed analytics computed in memory from the event stream and flushed to the rollup tables.
+// Events are keyed by message and by user, so the events needed to pair a send with its read, or an
+// online with its offline, arrive at the same consumer.
+@Service
+@ConditionalOnProperty(name = "app.kafka.events.enabled", havingValue = "true")
+public class AnalyticsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsAggregator.class);
+
+    public static final String DELIVERY_LATENCY = "DELIVERY";
+    public static final String READ_LATENCY = "READ";
+    public static final String SESSION_DURATION = "SESSION";
+
+    // Up to a day in milliseconds with two significant digits
+    private static final long MAX_TRACKED_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Send times waiting for their delivery and read events, and session start times
+    private final Cache<Long, LocalDateTime> sentAt = Caffeine.newBuilder()
+            .maximumSize(1_000_000)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+    private final Cache<Long, LocalDateTime> onlineSince = Caffeine.newBuilder()
+            .maximumSize(1_000_000)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    // Listener threads record under the read lock, the flush swaps the windows under the write lock
+    private final ReadWriteLock windowLock = new ReentrantReadWriteLock();
+    private Map<WindowKey, LongAdder> messageCounts = new ConcurrentHashMap<>();
+    private Map<WindowKey, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public void recordMessageEvents(List<MessageEvent> events) {
+        windowLock.readLock().lock();
+        try {
+            for (MessageEvent event : events) {
+                if (event.getTimestamp() == null || event.getMessageId() == null) {
+                    continue;
+                }
+                switch (event.getEventType()) {
+                    case MESSAGE_SENT -> {
+                        sentAt.put(event.getMessageId(), event.getTimestamp());
+                        messageCounts.computeIfAbsent(new WindowKey(event.getConversationId(), minute(event.getTimestamp())),
+                                key -> new LongAdder()).increment();
+                    }
+                    case MESSAGE_DELIVERED -> recordSince(DELIVERY_LATENCY, sentAt.getIfPresent(event.getMessageId()), event.getTimestamp());
+                    case MESSAGE_READ -> {
+                        recordSince(READ_LATENCY, sentAt.getIfPresent(event.getMessageId()), event.getTimestamp());
+                        sentAt.invalidate(event.getMessageId());
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } finally {
+            windowLock.readLock().unlock();
+        }
+    }
+
+    public void recordPresenceEvents(List<PresenceEvent> events) {
+        windowLock.readLock().lock();
+        try {
+            for (PresenceEvent event : events) {
+                if (event.getTimestamp() == null || event.getUserId() == null) {
+                    continue;
+                }
+                switch (event.getEventType()) {
+                    case USER_ONLINE -> onlineSince.put(event.getUserId(), event.getTimestamp());
+                    case USER_OFFLINE -> {
+                        recordSince(SESSION_DURATION, onlineSince.getIfPresent(event.getUserId()), event.getTimestamp());
+                        onlineSince.invalidate(event.getUserId());
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } finally {
+            windowLock.readLock().unlock();
+        }
+    }
+
+    private void recordSince(String metric, LocalDateTime start, LocalDateTime end) {
+        if (start == null) {
+            return;
+        }
+        long millis = Math.min(Math.max(0, Duration.between(start, end).toMillis()), MAX_TRACKED_MILLIS);
+        Histogram histogram = histograms.computeIfAbsent(new WindowKey(metric, minute(end)),
+                key -> new Histogram(MAX_TRACKED_MILLIS, SIGNIFICANT_DIGITS));
+        synchronized (histogram) {
+            histogram.recordValue(millis);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.flush-interval:10000}")
+    public void flush() {
+        Map<WindowKey, LongAdder> counts;
+        Map<WindowKey, Histogram> latencies;
+        windowLock.writeLock().lock();
+        try {
+            counts = messageCounts;
+            latencies = histograms;
+            messageCounts = new ConcurrentHashMap<>();
+            histograms = new ConcurrentHashMap<>();
+        } finally {
+            windowLock.writeLock().unlock();
+        }
+
+        try {
+            if (!counts.isEmpty()) {
+                List<Object[]> rows = new ArrayList<>(counts.size());
+                counts.forEach((key, count) -> rows.add(new Object[] {key.id(), Timestamp.valueOf(key.minute()), count.sum()}));
+                jdbcTemplate.batchUpdate("INSERT INTO analytics_conversation_minute (conversation_id, minute, messages) VALUES (?, ?, ?) " +
+                        "ON CONFLICT (conversation_id, minute) DO UPDATE SET messages = analytics_conversation_minute.messages + EXCLUDED.messages",
+                        rows);
+            }
+            if (!latencies.isEmpty()) {
+                List<Object[]> rows = new ArrayList<>(latencies.size());
+                latencies.forEach((key, histogram) -> rows.add(new Object[] {
+                        key.id(), Timestamp.valueOf(key.minute()), histogram.getTotalCount(), encode(histogram)}));
+                jdbcTemplate.batchUpdate("INSERT INTO analytics_latency_minute (metric, minute, samples, histogram) VALUES (?, ?, ?, ?)", rows);
+            }
+            logger.debug("Flushed {} message count and {} latency windows", counts.size(), latencies.size());
+        } catch (Exception e) {
+            // The events were acknowledged already, these windows are lost rather than double counted later
+            logger.error("Error flushing {} analytics windows", counts.size() + latencies.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        byte[] bytes = new byte[length];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static LocalDateTime minute(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    // Conversation id or metric name, and the minute the window starts at
+    private record WindowKey(Object id, LocalDateTime minute) {}
+}
@@ -0,0 +1,79 @@
+package com.example.chat.service;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class AnalyticsService {
+
+    private static final Duration MAX_RANGE = Duration.ofDays(7);
+    private static final int TOP_CONVERSATIONS = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public Map<String, Object> getAnalytics(LocalDateTime from, LocalDateTime to, Long conversationId) {
+        if (!from.isBefore(to) || Duration.between(from, to).compareTo(MAX_RANGE) > 0) {
+            throw new IllegalArgumentException("Analytics range must be positive and at most " + MAX_RANGE.toDays() + " days");
+        }
+        Timestamp start = Timestamp.valueOf(from);
+        Timestamp end = Timestamp.valueOf(to);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", from);
+        result.put("to", to);
+        if (conversationId != null) {
+            result.put("messagesPerMinute", jdbcTemplate.queryForList(
+                    "SELECT minute, messages FROM analytics_conversation_minute " +
+                    "WHERE conversation_id = ? AND minute >= ? AND minute < ? ORDER BY minute",
+                    conversationId, start, end));
+        } else {
+            result.put("messagesPerMinute", jdbcTemplate.queryForList(
+                    "SELECT minute, SUM(messages) AS messages FROM analytics_conversation_minute " +
+                    "WHERE minute >= ? AND minute < ? GROUP BY minute ORDER BY minute", start, end));
+            result.put("topConversations", jdbcTemplate.queryForList(
+                    "SELECT conversation_id, SUM(messages) AS messages FROM analytics_conversation_minute " +
+                    "WHERE minute >= ? AND minute < ? GROUP BY conversation_id ORDER BY messages DESC LIMIT ?",
+                    start, end, TOP_CONVERSATIONS));
+        }
+
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        for (String metric : List.of(AnalyticsAggregator.DELIVERY_LATENCY, AnalyticsAggregator.READ_LATENCY,
+                AnalyticsAggregator.SESSION_DURATION)) {
+            latencies.put(metric, percentiles(metric, start, end));
+        }
+        result.put("latencyMillis", latencies);
+        return result;
+    }
+
+    // Histograms flushed by every consumer are merged, so percentiles are exact across instances
+    private Map<String, Object> percentiles(String metric, Timestamp start, Timestamp end) {
+        Histogram merged = new Histogram(2);
+        jdbcTemplate.query("SELECT histogram FROM analytics_latency_minute WHERE metric = ? AND minute >= ? AND minute < ?",
+                rs -> {
+                    try {
+                        merged.add(Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(rs.getBytes("histogram")), 0));
+                    } catch (Exception e) {
+                        throw new RuntimeException("Error decoding analytics histogram", e);
+                    }
+                }, metric, start, end);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("samples", merged.getTotalCount());
+        summary.put("p50", merged.getValueAtPercentile(50));
+        summary.put("p95", merged.getValueAtPercentile(95));
+        summary.put("p99", merged.getValueAtPercentile(99));
+        summary.put("max", merged.getMaxValue());
+        return summary;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.chat.service;
+
+import com.example.chat.cache.RecentMessageBuffer;
+import com.example.chat.dto.MessageDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Delivers channel posts after they are persisted: every node receives the post and delivers it to the
+// subscribers connected to it, split into partitions of local user ids handled by the fan-out workers
+@Service
+public class ChannelFanoutService implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelFanoutService.class);
+
+    private static final String PROGRESS_KEY = "channel_progress:";
+    private static final String CHANNEL_QUEUE = "/queue/channels";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisContainer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("fanoutExecutor")
+    private ThreadPoolTaskExecutor fanoutExecutor;
+
+    @Value("${app.channels.fanout.channel:channel.fanout}")
+    private String channel;
+
+    @Value("${app.channels.fanout.partition-size:1000}")
+    private int partitionSize;
+
+    private Cache<Long, ChannelProgress> progress;
+    private Timer lag;
+    private Counter deliveries;
+
+    @PostConstruct
+    public void init() {
+        progress = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+
+        lag = Timer.builder("channel.fanout.lag")
+                .description("Time from posting a channel message until this node delivered it to all local subscribers")
+                .register(meterRegistry);
+        deliveries = Counter.builder("channel.fanout.deliveries")
+                .description("Channel messages delivered to local subscribers")
+                .register(meterRegistry);
+        Gauge.builder("channel.fanout.pending", fanoutExecutor, executor -> executor.getThreadPoolExecutor().getQueue().size())
+                .description("Fan-out partitions waiting for a worker")
+                .register(meterRegistry);
+
+        redisContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+
+    // Called once the post is committed, the poster does not wait for any delivery
+    public void publish(Long channelId, MessageDto message) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("conversationId", channelId);
+            payload.put("message", message);
+            stringRedisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(payload));
+        } catch (Exception e) {
+            // Subscribers on other nodes catch up through history, local ones are still served
+            logger.warn("Error publishing channel {} post, delivering locally only", channelId, e);
+            fanOut(channelId, message);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JsonNode payload = objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8));
+            Long channelId = payload.get("conversationId").asLong();
+            MessageDto post = objectMapper.treeToValue(payload.get("message"), MessageDto.class);
+            recentMessageBuffer.append(channelId, post);
+            fanOut(channelId, post);
+        } catch (Exception e) {
+            logger.error("Error handling channel fan-out message", e);
+        }
+    }
+
+    void fanOut(Long channelId, MessageDto message) {
+        List<Map<Long, String>> partitions = partition(presenceService.getLocalUsers());
+        ChannelProgress channelProgress = progress.get(channelId, id -> new ChannelProgress());
+        channelProgress.posted(message.getId(), partitions.size());
+        if (partitions.isEmpty()) {
+            completed(channelId, channelProgress, message);
+            return;
+        }
+
+        for (Map<Long, String> users : partitions) {
+            fanoutExecutor.execute(() -> {
+                try {
+                    deliverPartition(channelId, message, users);
+                } catch (Exception e) {
+                    logger.error("Error delivering channel {} message {} to {} local users", channelId, message.getId(), users.size(), e);
+                } finally {
+                    if (channelProgress.partitionDone(message.getId())) {
+                        completed(channelId, channelProgress, message);
+                    }
+                }
+            });
+        }
+    }
+
+    private void deliverPartition(Long channelId, MessageDto message, Map<Long, String> users) {
+        // Only subscribers of the channel among this slice of local users, found with one indexed lookup
+        List<Long> subscribers = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT user_id FROM conversation_members WHERE conversation_id = ? AND user_id = ANY(?)");
+            ps.setLong(1, channelId);
+            ps.setArray(2, connection.createArrayOf("bigint", users.keySet().toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("user_id"));
+
+        for (Long userId : subscribers) {
+            messagingTemplate.convertAndSendToUser(users.get(userId), CHANNEL_QUEUE, message);
+        }
+        deliveries.increment(subscribers.size());
+    }
+
+    private void completed(Long channelId, ChannelProgress channelProgress, MessageDto message) {
+        long lagMillis = message.getCreatedAt() != null
+                ? Math.max(0, Duration.between(message.getCreatedAt(), LocalDateTime.now()).toMillis())
+                : 0;
+        lag.record(lagMillis, TimeUnit.MILLISECONDS);
+        channelProgress.delivered(message.getId(), lagMillis);
+
+        // Per node progress so the lag of a channel can be read across the cluster
+        try {
+            String key = PROGRESS_KEY + channelId;
+            stringRedisTemplate.opsForHash().put(key, presenceRegistry.getNodeId(), message.getId() + ":" + lagMillis);
+            stringRedisTemplate.expire(key, 1, TimeUnit.DAYS);
+        } catch (Exception e) {
+            logger.debug("Error recording fan-out progress of channel {}", channelId, e);
+        }
+    }
+
+    public Map<String, Object> getProgress(Long channelId) {
+        Map<String, Object> nodes = new HashMap<>();
+        try {
+            stringRedisTemplate.opsForHash().entries(PROGRESS_KEY + channelId).forEach((node, value) -> {
+                String[] parts = value.toString().split(":");
+                nodes.put(node.toString(), Map.of("deliveredMessageId", Long.valueOf(parts[0]), "lagMillis", Long.valueOf(parts[1])));
+            });
+        } catch (Exception e) {
+            logger.warn("Error reading fan-out progress of channel {}", channelId, e);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("conversationId", channelId);
+        result.put("nodes", nodes);
+        ChannelProgress local = progress.getIfPresent(channelId);
+        if (local != null) {
+            result.put("local", local.snapshot());
+        }
+        return result;
+    }
+
+    private List<Map<Long, String>> partition(SortedMap<Long, String> users) {
+        List<Map<Long, String>> partitions = new ArrayList<>();
+        Map<Long, String> current = new HashMap<>();
+        for (Map.Entry<Long, String> user : users.entrySet()) {
+            current.put(user.getKey(), user.getValue());
+            if (current.size() == partitionSize) {
+                partitions.add(current);
+                current = new HashMap<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            partitions.add(current);
+        }
+        return partitions;
+    }
+
+    // Fan-out state of one channel on this node, posts are tracked individually only by their outstanding partitions
+    static class ChannelProgress {
+        private final Map<Long, AtomicInteger> pending = new HashMap<>();
+        private final AtomicLong deliveredMessages = new AtomicLong();
+        private long lastPostedMessageId;
+        private long lastDeliveredMessageId;
+        private long lastLagMillis;
+
+        synchronized void posted(Long messageId, int partitions) {
+            lastPostedMessageId = Math.max(lastPostedMessageId, messageId);
+            if (partitions > 0) {
+                pending.put(messageId, new AtomicInteger(partitions));
+            }
+        }
+
+        synchronized boolean partitionDone(Long messageId) {
+            AtomicInteger remaining = pending.get(messageId);
+            if (remaining != null && remaining.decrementAndGet() == 0) {
+                pending.remove(messageId);
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void delivered(Long messageId, long lagMillis) {
+            lastDeliveredMessageId = Math.max(lastDeliveredMessageId, messageId);
+            lastLagMillis = lagMillis;
+            deliveredMessages.incrementAndGet();
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("lastPostedMessageId", lastPostedMessageId);
+            snapshot.put("lastDeliveredMessageId", lastDeliveredMessageId);
+            snapshot.put("lagMillis", lastLagMillis);
+            snapshot.put("messagesInFlight", pending.size());
+            snapshot.put("messagesDelivered", deliveredMessages.get());
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.events.MembershipEvent;
+import com.example.chat.model.Conversation;
+import com.example.chat.model.ConversationMember;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Membership changes for large groups as a fixed number of set-based statements, whatever the member count
+@Service
+public class ConversationMembershipService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationMembershipService.class);
+
+    private static final String MEMBERS_CACHE = "conversationMembers";
+
+    private static final String INSERT_MEMBERS_SQL =
+            "INSERT INTO conversation_members (conversation_id, user_id, role) " +
+            "SELECT ?, u.user_id, ? FROM unnest(?::bigint[]) AS u(user_id) " +
+            "ON CONFLICT (conversation_id, user_id) DO NOTHING RETURNING user_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired(required = false)
+    private EventPublisher eventPublisher;
+
+    @Value("${app.conversations.max-bulk-members:10000}")
+    private int maxBulkMembers;
+
+    public record GroupCreated(Long conversationId, String name, int memberCount, List<Long> invalidUserIds) {}
+
+    public record MembersAdded(Long conversationId, int added, int alreadyMembers, List<Long> invalidUserIds) {}
+
+    public record MembersRemoved(Long conversationId, int removed, int notMembers) {}
+
+    // Unknown user ids are reported back and skipped
+    @Transactional
+    public GroupCreated createGroup(String name, Long creatorId, List<Long> memberIds) {
+        return createGroup(name, creatorId, memberIds, false);
+    }
+
+    // With requireAllUsers an unknown user id fails the call before anything is inserted
+    @Transactional
+    GroupCreated createGroup(String name, Long creatorId, List<Long> memberIds, boolean requireAllUsers) {
+        Set<Long> requested = requestedIds(memberIds);
+        requested.remove(creatorId);
+        List<Long> valid = existingUsers(requested);
+        if (requireAllUsers && valid.size() != requested.size()) {
+            throw new RuntimeException("User not found");
+        }
+
+        Long conversationId = jdbcTemplate.queryForObject(
+                "INSERT INTO conversations (type, name) VALUES (?, ?) RETURNING id",
+                Long.class, Conversation.Type.GROUP.name(), name);
+        insertMembers(conversationId, ConversationMember.Role.ADMIN, List.of(creatorId));
+        List<Long> added = insertMembers(conversationId, ConversationMember.Role.MEMBER, valid);
+
+        List<Long> members = new ArrayList<>(added.size() + 1);
+        members.add(creatorId);
+        members.addAll(added);
+        publish(new MembershipEvent(MembershipEvent.Type.GROUP_CREATED, conversationId, creatorId, members));
+
+        return new GroupCreated(conversationId, name, members.size(), invalidIds(requested, valid));
+    }
+
+    @Transactional
+    public MembersAdded addMembers(Long conversationId, Long requesterId, List<Long> userIds) {
+        requireGroupAdmin(conversationId, requesterId, "Only admins can add members");
+        Set<Long> requested = requestedIds(userIds);
+        List<Long> valid = existingUsers(requested);
+
+        List<Long> added = insertMembers(conversationId, ConversationMember.Role.MEMBER, valid);
+        // Membership checks may have cached a negative answer for the new members
+        evictMembership(conversationId, added);
+        if (!added.isEmpty()) {
+            publish(new MembershipEvent(MembershipEvent.Type.MEMBERS_ADDED, conversationId, requesterId, added));
+        }
+
+        return new MembersAdded(conversationId, added.size(), valid.size() - added.size(), invalidIds(requested, valid));
+    }
+
+    @Transactional
+    public MembersRemoved removeMembers(Long conversationId, Long requesterId, List<Long> userIds) {
+        requireGroupAdmin(conversationId, requesterId, "Only admins can remove members");
+        Set<Long> requested = requestedIds(userIds);
+        requested.remove(requesterId);
+
+        List<Long> removed = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM conversation_members WHERE conversation_id = ? AND user_id = ANY(?) RETURNING user_id");
+            ps.setLong(1, conversationId);
+            ps.setArray(2, connection.createArrayOf("bigint", requested.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("user_id"));
+
+        evictMembership(conversationId, removed);
+        if (!removed.isEmpty()) {
+            publish(new MembershipEvent(MembershipEvent.Type.MEMBERS_REMOVED, conversationId, requesterId, removed));
+        }
+
+        return new MembersRemoved(conversationId, removed.size(), requested.size() - removed.size());
+    }
+
+    private Set<Long> requestedIds(List<Long> userIds) {
+        Set<Long> requested = userIds != null ? new LinkedHashSet<>(userIds) : new LinkedHashSet<>();
+        requested.remove(null);
+        if (requested.size() > maxBulkMembers) {
+            throw new IllegalArgumentException("At most " + maxBulkMembers + " members can be changed at once");
+        }
+        return requested;
+    }
+
+    private List<Long> existingUsers(Set<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT id FROM users WHERE id = ANY(?)");
+            ps.setArray(1, connection.createArrayOf("bigint", userIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("id"));
+    }
+
+    private List<Long> insertMembers(Long conversationId, ConversationMember.Role role, List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_MEMBERS_SQL);
+            ps.setLong(1, conversationId);
+            ps.setString(2, role.name());
+            ps.setArray(3, connection.createArrayOf("bigint", userIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("user_id"));
+    }
+
+    private void requireGroupAdmin(Long conversationId, Long requesterId, String adminMessage) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT c.type, cm.role FROM conversations c " +
+                "LEFT JOIN conversation_members cm ON cm.conversation_id = c.id AND cm.user_id = ? WHERE c.id = ?",
+                requesterId, conversationId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Conversation not found");
+        }
+        if (!Conversation.Type.GROUP.name().equals(rows.get(0).get("type"))) {
+            throw new RuntimeException("Can only change members of group conversations");
+        }
+        Object role = rows.get(0).get("role");
+        if (role == null) {
+            throw new RuntimeException("Access denied");
+        }
+        if (!ConversationMember.Role.ADMIN.name().equals(role)) {
+            throw new RuntimeException(adminMessage);
+        }
+    }
+
+    private List<Long> invalidIds(Set<Long> requested, List<Long> valid) {
+        Set<Long> invalid = new LinkedHashSet<>(requested);
+        valid.forEach(invalid::remove);
+        return new ArrayList<>(invalid);
+    }
+
+    private void evictMembership(Long conversationId, List<Long> userIds) {
+        Cache cache = cacheManager.getCache(MEMBERS_CACHE);
+        if (cache != null) {
+            userIds.forEach(userId -> cache.evict(conversationId + ":" + userId));
+        }
+    }
+
+    private void publish(MembershipEvent event) {
+        if (eventPublisher != null) {
+            eventPublisher.publishMembershipEvent(event);
+        }
+        logger.debug("{} for conversation {}: {} users", event.getEventType(), event.getConversationId(), event.getUserIds().size());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.chat.service;
+
+import com.example.chat.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class ConversationPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationPurgeService.class);
+
+    // Advisory lock class, combined with the conversation id so one node purges a conversation at a time
+    private static final int PURGE_LOCK_CLASS = 0x70757267;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageArchiveService messageArchiveService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.purge.chunk-pause-ms:100}")
+    private long chunkPauseMs;
+
+    @Value("${app.purge.max-chunks-per-run:100}")
+    private int maxChunksPerRun;
+
+    @Value("${app.purge.max-conversations-per-run:100}")
+    private int maxConversationsPerRun;
+
+    @Scheduled(fixedDelayString = "${app.purge.interval:5000}")
+    public void purgeClearedConversations() {
+        List<Map<String, Object>> pending = jdbcTemplate.queryForList(
+                "SELECT id, cleared_before_id FROM conversations WHERE purge_pending LIMIT ?", maxConversationsPerRun);
+
+        int chunks = 0;
+        for (Map<String, Object> conversation : pending) {
+            Long conversationId = ((Number) conversation.get("id")).longValue();
+            long clearedBeforeId = ((Number) conversation.get("cleared_before_id")).longValue();
+            try {
+                while (chunks < maxChunksPerRun) {
+                    chunks++;
+                    if (!purgeChunk(conversationId, clearedBeforeId)) {
+                        break;
+                    }
+                    // Short pause so the purge does not starve foreground writes of I/O
+                    Thread.sleep(chunkPauseMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Error purging cleared messages of conversation {}", conversationId, e);
+            }
+        }
+    }
+
+    // Returns true when a full chunk was deleted and more cleared messages may remain
+    private boolean purgeChunk(Long conversationId, long clearedBeforeId) {
+        Boolean more = new TransactionTemplate(transactionManager).execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, ?)",
+                    Boolean.class, PURGE_LOCK_CLASS, conversationId.intValue());
+            if (!Boolean.TRUE.equals(locked)) {
+                return false;
+            }
+
+            int deleted = messageRepository.purgeClearedChunk(conversationId, clearedBeforeId, chunkSize);
+            if (deleted == chunkSize) {
+                return true;
+            }
+
+            int segments = messageArchiveService.purgeSegments(conversationId, clearedBeforeId);
+            fileService.releaseConversationFiles(conversationId, clearedBeforeId);
+            // A newer clear while purging moves the watermark, the conversation then stays pending
+            jdbcTemplate.update("UPDATE conversations SET purge_pending = false WHERE id = ? AND cleared_before_id = ?",
+                    conversationId, clearedBeforeId);
+            logger.info("Purged cleared messages of conversation {} up to id {} ({} archive segments)",
+                    conversationId, clearedBeforeId, segments);
+            return false;
+        });
+        return Boolean.TRUE.equals(more);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.RecentMessageBuffer;
 import com.example.chat.dto.ConversationDto;
 import com.example.chat.dto.MessageDto;
 import com.example.chat.dto.UserDto;
@@ -16,6 +17,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -35,6 +38,18 @@ public class ConversationService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private MessageArchiveService messageArchiveService;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private ConversationMembershipService membershipService;
+
     @Transactional
     public ConversationDto createDirectConversation(Long user1Id, Long user2Id) {
         // Check if direct conversation already exists
@@ -59,28 +74,55 @@ public class ConversationService {
 
     @Transactional
     public ConversationDto createGroupConversation(String name, Long creatorId, List<Long> memberIds) {
+        // Creator becomes admin, members are validated and inserted in bulk
+        ConversationMembershipService.GroupCreated group = membershipService.createGroup(name, creatorId, memberIds, true);
+
+        Conversation conversation = conversationRepository.findById(group.conversationId())
+                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        return convertToDto(conversation, creatorId);
+    }
+
+    @Transactional
+    public ConversationDto createChannel(String name, Long creatorId) {
         Conversation conversation = new Conversation();
-        conversation.setType(Conversation.Type.GROUP);
+        conversation.setType(Conversation.Type.CHANNEL);
         conversation.setName(name);
         conversation = conversationRepository.save(conversation);
 
-        // Add creator as admin
+        // Admins post, every other member is a read-only subscriber
         User creator = userService.findById(creatorId).orElseThrow(() -> new RuntimeException("User not found"));
-        ConversationMember creatorMember = new ConversationMember(conversation, creator);
-        creatorMember.setRole(ConversationMember.Role.ADMIN);
-        memberRepository.save(creatorMember);
-
-        // Add other members
-        for (Long memberId : memberIds) {
-            if (!memberId.equals(creatorId)) {
-                User member = userService.findById(memberId).orElseThrow(() -> new RuntimeException("User not found"));
-                memberRepository.save(new ConversationMember(conversation, member));
-            }
-        }
+        ConversationMember owner = new ConversationMember(conversation, creator);
+        owner.setRole(ConversationMember.Role.ADMIN);
+        memberRepository.save(owner);
 
         return convertToDto(conversation, creatorId);
     }
 
+    @Transactional
+    public void subscribe(Long channelId, Long userId) {
+        Conversation channel = conversationRepository.findById(channelId)
+                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        if (channel.getType() != Conversation.Type.CHANNEL) {
+            throw new RuntimeException("Only channels can be subscribed to");
+        }
+        if (memberRepository.existsByConversationIdAndUserId(channelId, userId)) {
+            return;
+        }
+
+        User user = userService.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
+        memberRepository.save(new ConversationMember(channel, user));
+    }
+
+    @Transactional
+    public void unsubscribe(Long channelId, Long userId) {
+        ConversationMember member = memberRepository.findByConversationIdAndUserId(channelId, userId)
+                .orElseThrow(() -> new RuntimeException("Access denied"));
+        if (member.getConversation().getType() != Conversation.Type.CHANNEL) {
+            throw new RuntimeException("Only channels can be unsubscribed from");
+        }
+        memberRepository.delete(member);
+    }
+
     public List<ConversationDto> getUserConversations(Long userId) {
         List<Conversation> conversations = conversationRepository.findByUserId(userId);
         return conversations.stream()
@@ -97,13 +139,47 @@ public class ConversationService {
                 .map(conv -> convertToDto(conv, userId));
     }
 
-    public Page<MessageDto> getConversationMessages(Long conversationId, Long userId, Pageable pageable) {
+    public Page<MessageDto> getConversationMessages(Long conversationId, Long userId, LocalDateTime before, Pageable pageable) {
         if (!memberRepository.existsByConversationIdAndUserId(conversationId, userId)) {
             throw new RuntimeException("Access denied");
         }
 
-        return messageRepository.findByConversationIdAndDeletedFalseOrderByCreatedAtDesc(conversationId, pageable)
-                .map(MessageDto::new);
+        // The latest page is usually still held in the recent message buffer
+        boolean firstPage = before == null && pageable.getPageNumber() == 0 && pageable.getSort().isUnsorted();
+        if (firstPage) {
+            Page<MessageDto> recent = recentMessageBuffer.firstPage(conversationId, pageable);
+            if (recent != null) {
+                return recent;
+            }
+        }
+
+        long seedToken = firstPage ? recentMessageBuffer.beginSeed(conversationId) : 0L;
+        long clearedBeforeId = clearedBeforeId(conversationId);
+        Page<Message> messages = before != null
+                ? messageRepository.findVisibleBefore(conversationId, clearedBeforeId, before, pageable)
+                : messageRepository.findVisible(conversationId, clearedBeforeId, pageable);
+        Page<MessageDto> page = messageArchiveService.readThrough(conversationId, clearedBeforeId, before, pageable,
+                messages.map(MessageDto::new));
+        if (firstPage) {
+            recentMessageBuffer.seed(conversationId, page, seedToken);
+        }
+        return page;
+    }
+
+    public List<MessageDto> getNewMessages(Long conversationId, Long userId, Long afterMessageId) {
+        if (!memberRepository.existsByConversationIdAndUserId(conversationId, userId)) {
+            throw new RuntimeException("Access denied");
+        }
+
+        List<MessageDto> recent = recentMessageBuffer.messagesAfter(conversationId, afterMessageId);
+        if (recent != null) {
+            return recent;
+        }
+
+        long after = Math.max(afterMessageId, clearedBeforeId(conversationId));
+        return messageRepository.findNewMessages(conversationId, after).stream()
+                .map(MessageDto::new)
+                .collect(Collectors.toList());
     }
 
     @Transactional
@@ -132,6 +208,12 @@ public class ConversationService {
         memberRepository.save(new ConversationMember(conversation, newMember));
     }
 
+    public boolean isAdmin(Long conversationId, Long userId) {
+        return memberRepository.findByConversationIdAndUserId(conversationId, userId)
+                .map(member -> member.getRole() == ConversationMember.Role.ADMIN)
+                .orElse(false);
+    }
+
     @Transactional
     public void markAsRead(Long conversationId, Long userId, Long messageId) {
         ConversationMember member = memberRepository.findByConversationIdAndUserId(conversationId, userId)
@@ -144,14 +226,19 @@ public class ConversationService {
     private ConversationDto convertToDto(Conversation conversation, Long currentUserId) {
         ConversationDto dto = new ConversationDto(conversation);
 
-        // Set members
-        List<UserDto> members = memberRepository.findByConversationId(conversation.getId()).stream()
-                .map(member -> {
-                    UserDto userDto = new UserDto(member.getUser());
-                    userDto.setOnline(userService.isUserOnline(member.getUser().getId()));
-                    return userDto;
-                })
-                .collect(Collectors.toList());
+        // Set members, channel subscriber lists are too large to embed
+        List<ConversationMember> conversationMembers = conversation.getType() == Conversation.Type.CHANNEL
+                ? List.of()
+                : memberRepository.findByConversationId(conversation.getId());
+        boolean[] online = presenceService.areOnline(conversationMembers.stream()
+                .mapToLong(member -> member.getUser().getId())
+                .toArray());
+        List<UserDto> members = new ArrayList<>(conversationMembers.size());
+        for (int i = 0; i < conversationMembers.size(); i++) {
+            UserDto userDto = new UserDto(conversationMembers.get(i).getUser());
+            userDto.setOnline(online[i]);
+            members.add(userDto);
+        }
         dto.setMembers(members);
 
         // Set display name for direct conversations
@@ -165,8 +252,8 @@ public class ConversationService {
         }
 
         // Set last message
-        messageRepository.findByConversationIdAndDeletedFalseOrderByCreatedAtDesc(
-                conversation.getId(), Pageable.ofSize(1))
+        long clearedBeforeId = conversation.getClearedBeforeId() != null ? conversation.getClearedBeforeId() : 0L;
+        messageRepository.findVisible(conversation.getId(), clearedBeforeId, Pageable.ofSize(1))
                 .getContent().stream()
                 .findFirst()
                 .ifPresent(message -> dto.setLastMessage(new MessageDto(message)));
@@ -177,11 +264,16 @@ public class ConversationService {
         if (member != null) {
             Long lastReadMessageId = member.getLastReadMessageId();
             if (lastReadMessageId != null) {
-                long unreadCount = messageRepository.countUnreadMessages(conversation.getId(), lastReadMessageId, currentUserId);
+                long unreadCount = messageRepository.countUnreadMessages(conversation.getId(),
+                        Math.max(lastReadMessageId, clearedBeforeId), currentUserId);
                 dto.setUnreadCount(unreadCount);
             }
         }
 
         return dto;
     }
+
+    private long clearedBeforeId(Long conversationId) {
+        return conversationRepository.findClearedBeforeId(conversationId).orElse(0L);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.example.chat.service;
+
+// Carries conversation updates to every node, each node delivers them to its own WebSocket sessions
+public interface DeliveryBackbone {
+
+    void publish(Long conversationId, Object messageData);
+}
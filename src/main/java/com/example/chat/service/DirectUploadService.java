@@ -0,0 +1,189 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.StoredFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Clients write attachments straight to object storage with a presigned PUT; the application only signs the
+// request and checks the stored object's metadata when the client reports completion
+@Service
+public class DirectUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectUploadService.class);
+
+    private static final String STATUS_PENDING = "PENDING";
+    private static final String STATUS_COMPLETING = "COMPLETING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_FAILED = "FAILED";
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // A single PUT is limited to 5 GB by storage
+    @Value("${app.files.direct.max-size:5368709120}")
+    private long maxSize;
+
+    @Value("${app.files.direct.url-expiry:900}")
+    private int urlExpirySeconds;
+
+    @Value("${app.files.direct.ttl-hours:24}")
+    private long ttlHours;
+
+    public Map<String, Object> createIntent(Long userId, String originalFilename, String contentType, long size,
+                                            String sha256) throws Exception {
+        fileService.validateName(originalFilename, contentType);
+        if (sha256 == null || !FileService.SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File size exceeds limit of " + (maxSize / 1024 / 1024) + "MB");
+        }
+        fileService.checkQuota(userId, size);
+
+        String uploadId = UUID.randomUUID().toString();
+        String objectName = "uploads/" + userId + "/" + fileService.generateFileName(originalFilename);
+        ObjectStorage.PresignedUpload presigned = fileService.presignUpload(objectName, contentType, sha256.toLowerCase(),
+                urlExpirySeconds);
+        jdbcTemplate.update(
+                "INSERT INTO upload_intents (id, user_id, object_name, original_filename, content_type, declared_size, sha256) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                uploadId, userId, objectName, originalFilename, contentType, size, sha256.toLowerCase());
+
+        Map<String, Object> intent = new HashMap<>();
+        intent.put("uploadId", uploadId);
+        intent.put("method", "PUT");
+        intent.put("url", presigned.url());
+        intent.put("headers", presigned.headers());
+        intent.put("expiresAt", Instant.now().plusSeconds(urlExpirySeconds).toString());
+        return intent;
+    }
+
+    public StoredFile complete(Long userId, String uploadId) throws Exception {
+        // Claiming the intent keeps a retried or concurrent callback from registering the object twice
+        List<Map<String, Object>> claimed = jdbcTemplate.queryForList(
+                "UPDATE upload_intents SET status = ? WHERE id = ? AND user_id = ? AND status = ? " +
+                "RETURNING object_name, original_filename, content_type, declared_size, sha256",
+                STATUS_COMPLETING, uploadId, userId, STATUS_PENDING);
+        if (claimed.isEmpty()) {
+            List<Map<String, Object>> intents = jdbcTemplate.queryForList(
+                    "SELECT status, file_id FROM upload_intents WHERE id = ? AND user_id = ?", uploadId, userId);
+            if (intents.isEmpty()) {
+                throw new IllegalArgumentException("Upload not found");
+            }
+            Map<String, Object> intent = intents.get(0);
+            if (!STATUS_COMPLETED.equals(intent.get("status")) || intent.get("file_id") == null) {
+                throw new IllegalArgumentException("Upload is " + ((String) intent.get("status")).toLowerCase());
+            }
+            return fileService.getStoredFile(((Number) intent.get("file_id")).longValue());
+        }
+
+        Map<String, Object> intent = claimed.get(0);
+        String objectName = (String) intent.get("object_name");
+        String contentType = (String) intent.get("content_type");
+        long declaredSize = ((Number) intent.get("declared_size")).longValue();
+        String sha256 = (String) intent.get("sha256");
+
+        ObjectStorage.StoredObject object;
+        try {
+            object = fileService.statObject(objectName);
+        } catch (Exception e) {
+            jdbcTemplate.update("UPDATE upload_intents SET status = ? WHERE id = ?", STATUS_PENDING, uploadId);
+            throw e;
+        }
+        if (object == null) {
+            // The client may report completion before its PUT finished, it can call again
+            jdbcTemplate.update("UPDATE upload_intents SET status = ? WHERE id = ?", STATUS_PENDING, uploadId);
+            throw new IllegalArgumentException("File has not been uploaded");
+        }
+
+        StoredFile stored;
+        try {
+            String mismatch = object.size() != declaredSize ? "size"
+                    : !contentType.equals(object.contentType()) ? "content type"
+                    : object.sha256() != null && !sha256.equals(object.sha256()) ? "hash"
+                    : null;
+            // Storage that did not record a checksum leaves the hash to be verified by reading the object back
+            if (mismatch == null && object.sha256() == null && !sha256.equals(fileService.hashObject(objectName))) {
+                mismatch = "hash";
+            }
+            if (mismatch != null) {
+                throw new IllegalArgumentException("Uploaded file does not match the declared " + mismatch);
+            }
+            stored = fileService.registerObject((String) intent.get("original_filename"), declaredSize, contentType,
+                    objectName, sha256, userId);
+        } catch (Exception e) {
+            jdbcTemplate.update("UPDATE upload_intents SET status = ? WHERE id = ?", STATUS_FAILED, uploadId);
+            try {
+                fileService.removeObject(objectName);
+            } catch (Exception removeError) {
+                logger.warn("Error removing rejected upload {}", objectName, removeError);
+            }
+            throw e;
+        }
+
+        jdbcTemplate.update("UPDATE upload_intents SET status = ?, file_id = ? WHERE id = ?",
+                STATUS_COMPLETED, stored.getId(), uploadId);
+        logger.info("Direct upload {} completed as file {} by user {}", uploadId, stored.getId(), userId);
+        return stored;
+    }
+
+    @Scheduled(fixedDelayString = "${app.files.direct.cleanup-interval:600000}")
+    public void removeExpiredIntents() {
+        try {
+            // Deleting first hands every expired intent to exactly one node
+            List<Map<String, Object>> expired = jdbcTemplate.queryForList(
+                    "DELETE FROM upload_intents WHERE created_at < ? RETURNING status, object_name",
+                    Timestamp.valueOf(LocalDateTime.now().minusHours(ttlHours)));
+
+            int removed = 0;
+            for (Map<String, Object> intent : expired) {
+                if (STATUS_COMPLETED.equals(intent.get("status")) || STATUS_FAILED.equals(intent.get("status"))) {
+                    continue;
+                }
+                // A completion that stalled after registering the object leaves the intent COMPLETING, its object is in use
+                String objectName = (String) intent.get("object_name");
+                if (isReferenced(objectName)) {
+                    continue;
+                }
+                // A PUT may have been made without a completion call, removing a missing object is harmless
+                try {
+                    fileService.removeObject(objectName);
+                    removed++;
+                } catch (Exception e) {
+                    logger.warn("Error removing abandoned upload {}", objectName, e);
+                }
+            }
+            if (!expired.isEmpty()) {
+                logger.info("Removed {} expired upload intents, {} abandoned objects", expired.size(), removed);
+            }
+        } catch (Exception e) {
+            logger.error("Error removing expired upload intents", e);
+        }
+    }
+
+    private boolean isReferenced(String objectName) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM file_blobs WHERE storage_path = ?) " +
+                "OR EXISTS (SELECT 1 FROM file_metadata WHERE storage_path = ?)",
+                Boolean.class, objectName, objectName));
+    }
+}
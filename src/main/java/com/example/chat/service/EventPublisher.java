@@ -1,5 +1,6 @@
 package com.example.chat.service;
 
+import com.example.chat.dto.events.MembershipEvent;
 import com.example.chat.dto.events.MessageEvent;
 import com.example.chat.dto.events.PresenceEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -9,7 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -25,26 +26,11 @@ public class EventPublisher {
     private RedisTemplate<String, Object> redisTemplate;
 
     @Autowired
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private JdbcTemplate jdbcTemplate;
 
     @Autowired
     private ObjectMapper objectMapper;
 
-    public void publishMessageToRedis(Long conversationId, Object messageData) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("conversationId", conversationId);
-            payload.put("messageData", messageData);
-            
-            String jsonPayload = objectMapper.writeValueAsString(payload);
-            redisTemplate.convertAndSend("chat.messages", jsonPayload);
-            
-            logger.debug("Published message to Redis for conversation: {}", conversationId);
-        } catch (JsonProcessingException e) {
-            logger.error("Error publishing message to Redis", e);
-        }
-    }
-
     public void publishPresenceToRedis(Long userId, String username, boolean online) {
         try {
             Map<String, Object> payload = new HashMap<>();
@@ -78,21 +64,29 @@ public class EventPublisher {
         }
     }
 
+    // Kafka events go through the outbox: they commit or roll back with the caller's transaction
+    // and OutboxRelay sends them, so a slow broker never blocks the request
     public void publishMessageEvent(MessageEvent event) {
-        try {
-            kafkaTemplate.send("chat.message.events", event.getMessageId().toString(), event);
-            logger.debug("Published message event to Kafka: {}", event.getEventType());
-        } catch (Exception e) {
-            logger.error("Error publishing message event to Kafka", e);
-        }
+        enqueue("chat.message.events", event.getMessageId().toString(), event);
+        logger.debug("Queued message event for Kafka: {}", event.getEventType());
     }
 
     public void publishPresenceEvent(PresenceEvent event) {
+        enqueue("chat.user.events", event.getUserId().toString(), event);
+        logger.debug("Queued presence event for Kafka: {}", event.getEventType());
+    }
+
+    public void publishMembershipEvent(MembershipEvent event) {
+        enqueue("chat.conversation.events", event.getConversationId().toString(), event);
+        logger.debug("Queued membership event for Kafka: {} ({} users)", event.getEventType(), event.getUserIds().size());
+    }
+
+    private void enqueue(String topic, String key, Object event) {
         try {
-            kafkaTemplate.send("chat.user.events", event.getUserId().toString(), event);
-            logger.debug("Published presence event to Kafka: {}", event.getEventType());
-        } catch (Exception e) {
-            logger.error("Error publishing presence event to Kafka", e);
+            jdbcTemplate.update("INSERT INTO event_outbox (topic, event_key, event_type, payload) VALUES (?, ?, ?, ?)",
+                    topic, key, event.getClass().getSimpleName(), objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            logger.error("Error serializing {} for the outbox", event.getClass().getSimpleName(), e);
         }
     }
-}
\ No newline at end of file
+}
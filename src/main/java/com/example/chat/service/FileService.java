@@ -1,29 +1,57 @@
 package com.example.chat.service;
 
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.GetPresignedObjectUrlArgs;
-import io.minio.MakeBucketArgs;
-import io.minio.BucketExistsArgs;
-import io.minio.http.Method;
+import com.example.chat.dto.StoredFile;
+import com.example.chat.model.FileMetadata;
+import com.example.chat.repository.FileMetadataRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Service
 public class FileService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileService.class);
+
+    public static final String FILE_PATH = "/api/files/";
+
+    static final Pattern SHA256 = Pattern.compile("[0-9a-fA-F]{64}");
+
+    // Advisory lock so one node collects unreferenced blobs at a time
+    private static final long GC_LOCK_ID = 0x66696c6567L;
     private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png", ".gif", ".pdf", ".txt", ".doc", ".docx");
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
     private static final List<String> ALLOWED_CONTENT_TYPES = Arrays.asList(
@@ -33,79 +61,378 @@ public class FileService {
     );
 
 
-    @Value("${app.minio.endpoint}")
-    private String minioEndpoint;
+    @Value("${app.file.upload.max-size}")
+    private String maxSize;
 
-    @Value("${app.minio.access-key}")
-    private String accessKey;
+    @Value("${app.files.url-expiry:3600}")
+    private long urlExpirySeconds;
 
-    @Value("${app.minio.secret-key}")
-    private String secretKey;
+    @Value("${app.files.presign-cache-size:10000}")
+    private long presignCacheSize;
 
-    @Value("${app.minio.bucket-name}")
-    private String bucketName;
+    @Autowired
+    private ObjectStorage storage;
 
-    @Value("${app.file.upload.max-size}")
-    private String maxSize;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.files.unattached-ttl-hours:24}")
+    private long unattachedTtlHours;
+
+    @Value("${app.files.gc-batch-size:100}")
+    private int gcBatchSize;
 
+    @Value("${app.files.user-quota:10737418240}")
+    private long userQuota;
 
-    private MinioClient getMinioClient() {
-        return MinioClient.builder()
-                .endpoint(minioEndpoint)
-                .credentials(accessKey, secretKey)
+    private Timer uploadTimer;
+    private DistributionSummary uploadBytes;
+    private Counter dedupHits;
+    private Counter dedupBytes;
+
+    // Presigned URLs per object and expiry bucket, shared by every viewer of the same attachment
+    private Cache<String, String> presignedUrls;
+
+    @PostConstruct
+    public void init() {
+        uploadTimer = Timer.builder("files.upload")
+                .description("Time to stream an upload to object storage")
+                .register(meterRegistry);
+        uploadBytes = DistributionSummary.builder("files.upload.size")
+                .description("Size of uploaded files")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        dedupHits = Counter.builder("files.dedup.hits")
+                .description("Uploads that referenced content already stored")
+                .register(meterRegistry);
+        dedupBytes = Counter.builder("files.dedup.bytes")
+                .description("Bytes not stored again thanks to deduplication")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        presignedUrls = Caffeine.newBuilder()
+                .maximumSize(presignCacheSize)
+                .expireAfterWrite(Duration.ofSeconds(urlExpirySeconds))
+                .recordStats()
                 .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, presignedUrls, "files.presigned");
     }
 
-    public String uploadFile(MultipartFile file, Long userId) throws Exception {
+    public StoredFile uploadFile(MultipartFile file, Long userId) throws Exception {
         validateFile(file);
+        checkQuota(userId, file.getSize());
 
         String fileName = generateFileName(file.getOriginalFilename());
         String objectName = "uploads/" + userId + "/" + fileName;
 
-        String fileHash = calculateFileHash(file);
+        // The hash is computed as the client streams the file to storage, it is read only once
+        long start = System.nanoTime();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            storage.put(objectName, inputStream, file.getSize(), file.getContentType());
+        }
+        uploadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        uploadBytes.record(file.getSize());
+
+        StoredFile stored = register(file.getOriginalFilename(), file.getSize(), file.getContentType(),
+                HexFormat.of().formatHex(digest.digest()), objectName, userId);
+        logger.info("File uploaded successfully: {} by user: {}", fileName, userId);
+        return stored;
+    }
+
+    // Registers an object written outside uploadFile; without a verified hash the content is hashed by
+    // streaming it back from storage
+    StoredFile registerObject(String originalFilename, long size, String contentType, String objectName,
+                              String fileHash, Long userId) throws Exception {
+        return register(originalFilename, size, contentType, fileHash != null ? fileHash : hashObject(objectName),
+                objectName, userId);
+    }
+
+    // Stored files plus uploads still in progress count against the quota
+    void checkQuota(Long userId, long size) {
+        if (userQuota <= 0) {
+            return;
+        }
+        Long used = jdbcTemplate.queryForObject(
+                "SELECT (SELECT COALESCE(SUM(file_size), 0) FROM file_metadata WHERE uploaded_by = ?) " +
+                "+ (SELECT COALESCE(SUM(total_size), 0) FROM upload_sessions WHERE user_id = ? AND status IN ('UPLOADING', 'COMPLETING')) " +
+                "+ (SELECT COALESCE(SUM(declared_size), 0) FROM upload_intents WHERE user_id = ? AND status IN ('PENDING', 'COMPLETING'))",
+                Long.class, userId, userId, userId);
+        if (used != null && used + size > userQuota) {
+            throw new IllegalArgumentException("Storage quota of " + (userQuota / 1024 / 1024) + "MB exceeded");
+        }
+    }
 
-        MinioClient minioClient = getMinioClient();
+    // Lets a client skip sending bytes it already has access to: content it uploaded itself or that was shared in one
+    // of its conversations. Knowing a hash proves nothing, hashes are handed out with every upload response.
+    public StoredFile uploadByHash(String sha256, String originalFilename, String contentType, Long userId) {
+        validateName(originalFilename, contentType);
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256");
+        }
+        StoredFile stored = register(originalFilename, 0, contentType, sha256.toLowerCase(), null, userId);
+        if (stored != null) {
+            dedupHits.increment();
+            dedupBytes.increment(stored.getSize());
+        }
+        return stored;
+    }
 
-        // Ensure bucket exists
-        boolean bucketExists = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-        if (!bucketExists) {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+    // Adds a reference to the blob of the hash; uploadedPath is the object just written, or null to only
+    // reference existing content readable by the user. Returns null when there is no such content.
+    private StoredFile register(String originalFilename, long size, String contentType, String fileHash,
+                                String uploadedPath, Long userId) {
+        FileMetadata metadata = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Map<String, Object>> blob = uploadedPath != null
+                    ? jdbcTemplate.queryForList(
+                            "INSERT INTO file_blobs (hash, storage_path, file_size, ref_count) VALUES (?, ?, ?, 1) " +
+                            "ON CONFLICT (hash) DO UPDATE SET ref_count = file_blobs.ref_count + 1 " +
+                            "RETURNING storage_path, file_size", fileHash, uploadedPath, size)
+                    // A blob waiting for collection is not revived, the client has to upload again
+                    : jdbcTemplate.queryForList(
+                            "UPDATE file_blobs b SET ref_count = b.ref_count + 1 WHERE b.hash = ? AND b.ref_count > 0 " +
+                            "AND EXISTS (SELECT 1 FROM file_metadata f WHERE f.file_hash = b.hash AND (f.uploaded_by = ? " +
+                            "OR EXISTS (SELECT 1 FROM conversation_members m WHERE m.conversation_id = f.conversation_id AND m.user_id = ?))) " +
+                            "RETURNING storage_path, file_size", fileHash, userId, userId);
+            if (blob.isEmpty()) {
+                return null;
+            }
+
+            FileMetadata file = new FileMetadata(originalFilename, ((Number) blob.get(0).get("file_size")).longValue(),
+                    contentType, fileHash, (String) blob.get(0).get("storage_path"), userId);
+            if (thumbnailService.supports(contentType)) {
+                // Copies of the same content share its previews
+                FileMetadata previewed = fileMetadataRepository
+                        .findFirstByFileHashAndPreviewStatus(fileHash, FileMetadata.PreviewStatus.READY).orElse(null);
+                file.setPreviewStatus(previewed != null ? FileMetadata.PreviewStatus.READY : FileMetadata.PreviewStatus.PENDING);
+                if (previewed != null) {
+                    file.setThumbnailPath(previewed.getThumbnailPath());
+                    file.setPlaceholderPath(previewed.getPlaceholderPath());
+                    file.setImageWidth(previewed.getImageWidth());
+                    file.setImageHeight(previewed.getImageHeight());
+                }
+            }
+            return fileMetadataRepository.save(file);
+        });
+        if (metadata == null) {
+            return null;
         }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            minioClient.putObject(
-                PutObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(objectName)
-                    .stream(inputStream, file.getSize(), -1)
-                    .contentType(file.getContentType())
-                    .build()
-            );
+        if (uploadedPath != null && !uploadedPath.equals(metadata.getStoragePath())) {
+            // Same content is already stored, the copy just written is dropped
+            dedupHits.increment();
+            dedupBytes.increment(metadata.getFileSize());
+            try {
+                removeObject(uploadedPath);
+            } catch (Exception e) {
+                logger.warn("Error removing duplicate upload {}", uploadedPath, e);
+            }
+        }
+        if (metadata.getPreviewStatus() == FileMetadata.PreviewStatus.PENDING) {
+            thumbnailService.submit(metadata.getId());
         }
 
-        logger.info("File uploaded successfully: {} by user: {}", fileName, userId);
+        return new StoredFile(metadata.getId(), metadata.getStoragePath(), FILE_PATH + metadata.getId(), fileHash,
+                metadata.getFileSize(), contentType);
+    }
 
-        return getFileUrl(objectName);
+    // Files of the messages in a created_at range, e.g. a partition about to be dropped
+    public int releaseMessageFiles(LocalDateTime createdFrom, LocalDateTime createdTo) {
+        return release("message_id IN (SELECT id FROM messages WHERE created_at >= ? AND created_at < ?)",
+                Timestamp.valueOf(createdFrom), Timestamp.valueOf(createdTo));
     }
 
-    public String getFileUrl(String objectName) throws Exception {
-        MinioClient minioClient = getMinioClient();
+    // Files of a conversation's messages up to a clear watermark
+    public int releaseConversationFiles(Long conversationId, long throughMessageId) {
+        return release("conversation_id = ? AND message_id <= ?", conversationId, throughMessageId);
+    }
+
+    public int releaseUnattachedFiles(LocalDateTime uploadedBefore) {
+        return release("message_id IS NULL AND uploaded_at < ?", Timestamp.valueOf(uploadedBefore));
+    }
 
-        // Ensure bucket exists
-        boolean bucketExists = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-        if (!bucketExists) {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-            logger.info("Created MinIO bucket: {}", bucketName);
+    // Drops the file_metadata rows and their blob references, blobs left without references are removed by the
+    // collector. Objects of files uploaded before deduplication are not the blob of their hash, or have no hash;
+    // once no file points at one any more it is queued for the collector as an unreferenced blob of its own.
+    private int release(String condition, Object... args) {
+        Integer released = jdbcTemplate.queryForObject(
+                "WITH removed AS (DELETE FROM file_metadata WHERE " + condition + " RETURNING id, file_hash, storage_path, file_size), " +
+                "unreferenced AS (UPDATE file_blobs b SET ref_count = b.ref_count - r.refs " +
+                "FROM (SELECT file_hash, COUNT(*) AS refs FROM removed WHERE file_hash IS NOT NULL GROUP BY file_hash) r " +
+                "WHERE b.hash = r.file_hash), " +
+                "legacy AS (INSERT INTO file_blobs (hash, storage_path, file_size, ref_count) " +
+                "SELECT 'object:' || md5(r.storage_path), r.storage_path, MAX(r.file_size), 0 FROM removed r " +
+                "WHERE NOT EXISTS (SELECT 1 FROM file_blobs b WHERE b.storage_path = r.storage_path) " +
+                "AND NOT EXISTS (SELECT 1 FROM file_metadata f WHERE f.storage_path = r.storage_path " +
+                "                AND f.id NOT IN (SELECT id FROM removed)) " +
+                "GROUP BY r.storage_path ON CONFLICT (hash) DO NOTHING) " +
+                "SELECT COUNT(*) FROM removed", Integer.class, args);
+        return released != null ? released : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.files.gc-interval:300000}")
+    public void collectOrphanedBlobs() {
+        try {
+            // Uploads never sent with a message hold no reference worth keeping
+            releaseUnattachedFiles(LocalDateTime.now().minusHours(unattachedTtlHours));
+
+            Integer collected = new TransactionTemplate(transactionManager).execute(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, GC_LOCK_ID);
+                if (!Boolean.TRUE.equals(locked)) {
+                    return 0;
+                }
+
+                // Row locks keep concurrent uploads of the same content waiting until the blob is gone
+                List<Map<String, Object>> orphaned = jdbcTemplate.queryForList(
+                        "SELECT hash, storage_path FROM file_blobs WHERE ref_count <= 0 LIMIT ? FOR UPDATE SKIP LOCKED",
+                        gcBatchSize);
+                for (Map<String, Object> blob : orphaned) {
+                    String storagePath = (String) blob.get("storage_path");
+                    for (String objectName : List.of(storagePath, ThumbnailService.thumbnailPath(storagePath),
+                            ThumbnailService.placeholderPath(storagePath))) {
+                        try {
+                            removeObject(objectName);
+                        } catch (Exception e) {
+                            logger.warn("Error removing orphaned object {}", objectName, e);
+                        }
+                    }
+                    jdbcTemplate.update("DELETE FROM file_blobs WHERE hash = ?", blob.get("hash"));
+                }
+                return orphaned.size();
+            });
+            if (collected != null && collected > 0) {
+                logger.info("Collected {} unreferenced file blobs", collected);
+            }
+        } catch (Exception e) {
+            logger.error("Error collecting unreferenced file blobs", e);
         }
+    }
 
-        return minioClient.getPresignedObjectUrl(
-            GetPresignedObjectUrlArgs.builder()
-                .method(Method.GET)
-                .bucket(bucketName)
-                .object(objectName)
-                .expiry(7, TimeUnit.DAYS)
-                .build()
-        );
+    // Links an uploaded file to the message it is sent with, only its uploader may attach it once
+    public FileMetadata claimAttachment(Long fileId, Long userId) {
+        FileMetadata file = fileMetadataRepository.findById(fileId)
+                .orElseThrow(() -> new IllegalArgumentException("File not found"));
+        if (!file.getUploadedBy().equals(userId)) {
+            throw new RuntimeException("Access denied");
+        }
+        if (file.getMessageId() != null) {
+            throw new IllegalArgumentException("File is already attached to a message");
+        }
+        return file;
+    }
+
+    public Long fileIdFromUrl(String url) {
+        if (url == null || !url.startsWith(FILE_PATH)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(url.substring(FILE_PATH.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public Optional<FileMetadata> findFile(Long fileId) {
+        return fileMetadataRepository.findById(fileId);
+    }
+
+    public StoredFile getStoredFile(Long fileId) {
+        FileMetadata file = fileMetadataRepository.findById(fileId)
+                .orElseThrow(() -> new IllegalArgumentException("File not found"));
+        return new StoredFile(file.getId(), file.getStoragePath(), FILE_PATH + file.getId(), file.getFileHash(),
+                file.getFileSize(), file.getMimeType());
+    }
+
+    // Every URL signed within one bucket lives for two buckets, so it stays valid for at least a full bucket
+    public PresignedUrl getCachedFileUrl(String objectName) {
+        long bucketMillis = urlExpirySeconds * 1000;
+        long now = System.currentTimeMillis();
+        long bucket = now / bucketMillis;
+        String url = presignedUrls.get(objectName + "@" + bucket, key -> {
+            try {
+                return storage.presignGet(objectName, (int) (urlExpirySeconds * 2));
+            } catch (Exception e) {
+                throw new RuntimeException("Error presigning " + objectName, e);
+            }
+        });
+        if (url == null) {
+            // The storage is not reachable by clients, the application serves the object
+            return null;
+        }
+        return new PresignedUrl(url, Math.max(1, ((bucket + 1) * bucketMillis - now) / 1000));
+    }
+
+    public record PresignedUrl(String url, long maxAgeSeconds) {}
+
+    public void storeObject(String objectName, byte[] content, String contentType) throws Exception {
+        try (InputStream inputStream = new ByteArrayInputStream(content)) {
+            storage.put(objectName, inputStream, content.length, contentType);
+        }
+    }
+
+    public byte[] readObject(String objectName) throws Exception {
+        try (InputStream inputStream = storage.get(objectName, 0, -1)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    public void removeObject(String objectName) throws Exception {
+        storage.remove(objectName);
+    }
+
+    public String hashObject(String objectName) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream inputStream = new DigestInputStream(storage.get(objectName, 0, -1), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public ObjectStorage.StoredObject statObject(String objectName) throws Exception {
+        return storage.stat(objectName);
+    }
+
+    public ObjectStorage.PresignedUpload presignUpload(String objectName, String contentType, String sha256,
+                                                      int expirySeconds) throws Exception {
+        return storage.presignPut(objectName, contentType, sha256, expirySeconds);
+    }
+
+    public String createMultipartUpload(String objectName, String contentType) throws Exception {
+        return storage.createMultipartUpload(objectName, contentType);
+    }
+
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream content, long length)
+            throws Exception {
+        return storage.uploadPart(objectName, uploadId, partNumber, content, length);
+    }
+
+    public void completeMultipartUpload(String objectName, String uploadId, List<String> etags) throws Exception {
+        storage.completeMultipartUpload(objectName, uploadId, etags);
+    }
+
+    public void abortMultipartUpload(String objectName, String uploadId) throws Exception {
+        storage.abortMultipartUpload(objectName, uploadId);
+    }
+
+    public void transferObject(String objectName, long offset, long length, WritableByteChannel target) throws Exception {
+        storage.transferTo(objectName, offset, length, target);
+    }
+
+    public Path localObjectPath(String objectName) {
+        return storage.localPath(objectName);
     }
 
     private void validateFile(MultipartFile file) {
@@ -117,7 +444,10 @@ public class FileService {
             throw new IllegalArgumentException("File size exceeds limit of " + (MAX_FILE_SIZE / 1024 / 1024) + "MB");
         }
 
-        String originalFilename = file.getOriginalFilename();
+        validateName(file.getOriginalFilename(), file.getContentType());
+    }
+
+    void validateName(String originalFilename, String contentType) {
         if (originalFilename == null || originalFilename.trim().isEmpty()) {
             throw new IllegalArgumentException("Invalid filename");
         }
@@ -127,7 +457,6 @@ public class FileService {
             throw new IllegalArgumentException("File type not allowed: " + extension);
         }
 
-        String contentType = file.getContentType();
         if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType)) {
             throw new IllegalArgumentException("Invalid content type: " + contentType);
         }
@@ -138,7 +467,7 @@ public class FileService {
         }
     }
 
-    private String generateFileName(String originalFilename) {
+    String generateFileName(String originalFilename) {
         String extension = getFileExtension(originalFilename);
         return UUID.randomUUID().toString() + extension;
     }
@@ -149,29 +478,4 @@ public class FileService {
         }
         return "";
     }
-
-    private String calculateFileHash(MultipartFile file) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        try (InputStream inputStream = file.getInputStream()) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                digest.update(buffer, 0, bytesRead);
-            }
-        }
-        byte[] hash = digest.digest();
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-        return hexString.toString();
-    }
-
-    public boolean isValidFileUrl(String url) {
-        return url != null && url.startsWith(minioEndpoint) && url.contains(bucketName);
-    }
 }
\ No newline at end of file
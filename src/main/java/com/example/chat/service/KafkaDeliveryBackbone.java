@@ -0,0 +1,211 @@
+package com.example.chat.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Messages are keyed by conversation so each conversation keeps its order within one partition.
+// Every node reads the whole topic in its own consumer group; after a reconnect it resumes from its
+// committed offsets, but never replays more than the configured window.
+@Service
+@ConditionalOnProperty(name = "app.delivery.backbone", havingValue = "kafka")
+public class KafkaDeliveryBackbone implements DeliveryBackbone, ConsumerAwareRebalanceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaDeliveryBackbone.class);
+
+    private static final String GROUP_PREFIX = "chat-delivery-";
+    private static final TypeReference<Map<String, Object>> MESSAGE_DATA = new TypeReference<>() {};
+
+    @Autowired
+    private KafkaProperties kafkaProperties;
+
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    private RedisMessageSubscriber redisMessageSubscriber;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // The consumer group, and with it the resume offsets, must survive restarts of the node
+    @Value("${app.presence.node-id:}")
+    private String nodeId;
+
+    @Value("${app.delivery.kafka.topic:chat.delivery}")
+    private String topic;
+
+    @Value("${app.delivery.kafka.partitions:12}")
+    private int partitions;
+
+    @Value("${app.delivery.kafka.consumers:1}")
+    private int consumers;
+
+    @Value("${app.delivery.kafka.linger-ms:5}")
+    private int lingerMs;
+
+    @Value("${app.delivery.kafka.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${app.delivery.kafka.replay-window:60000}")
+    private long replayWindow;
+
+    private DefaultKafkaProducerFactory<String, String> producerFactory;
+    private KafkaTemplate<String, String> kafkaTemplate;
+    private ConcurrentMessageListenerContainer<String, String> container;
+    private Timer lag;
+    private Counter delivered;
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            throw new RuntimeException("app.presence.node-id must be set to a stable id per node when app.delivery.backbone=kafka");
+        }
+        kafkaAdmin.createOrModifyTopics(TopicBuilder.name(topic).partitions(partitions).replicas(1).build());
+
+        // Payloads are already JSON; a short linger batches bursts without adding noticeable latency
+        Map<String, Object> producerConfig = new HashMap<>(kafkaProperties.buildProducerProperties(null));
+        producerConfig.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerConfig.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerConfig.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        producerConfig.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        producerFactory = new DefaultKafkaProducerFactory<>(producerConfig);
+        kafkaTemplate = new KafkaTemplate<>(producerFactory);
+
+        Map<String, Object> consumerConfig = new HashMap<>(kafkaProperties.buildConsumerProperties(null));
+        consumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP_PREFIX + nodeId);
+        consumerConfig.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerConfig.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerConfig.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerConfig.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
+        consumerConfig.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1);
+        consumerConfig.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 10);
+
+        ContainerProperties containerProperties = new ContainerProperties(topic);
+        containerProperties.setAckMode(ContainerProperties.AckMode.BATCH);
+        containerProperties.setConsumerRebalanceListener(this);
+        containerProperties.setMessageListener((BatchMessageListener<String, String>) this::deliver);
+
+        container = new ConcurrentMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(consumerConfig), containerProperties);
+        container.setConcurrency(consumers);
+        container.setBeanName("kafkaDeliveryBackbone");
+        container.start();
+
+        lag = Timer.builder("delivery.backbone.lag")
+                .tag("backbone", "kafka")
+                .description("Time from publishing a message on the backbone to local delivery")
+                .register(meterRegistry);
+        delivered = Counter.builder("delivery.backbone.messages")
+                .tag("backbone", "kafka")
+                .description("Messages delivered to local sessions from the backbone")
+                .register(meterRegistry);
+        logger.info("Kafka delivery backbone consuming {} as {}", topic, GROUP_PREFIX + nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (container != null) {
+            container.stop();
+        }
+        if (producerFactory != null) {
+            producerFactory.destroy();
+        }
+    }
+
+    @Override
+    public void publish(Long conversationId, Object messageData) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("conversationId", conversationId);
+            payload.put("messageData", messageData);
+
+            kafkaTemplate.send(topic, conversationId.toString(), objectMapper.writeValueAsString(payload))
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            logger.warn("Error publishing message to Kafka for conversation: {}", conversationId, e);
+                        }
+                    });
+        } catch (Exception e) {
+            logger.error("Error publishing message to Kafka", e);
+        }
+    }
+
+    private void deliver(List<ConsumerRecord<String, String>> records) {
+        long now = System.currentTimeMillis();
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                Map<String, Object> messageData = objectMapper.readValue(record.value(), MESSAGE_DATA);
+                redisMessageSubscriber.handleChatMessage(messageData);
+                lag.record(Math.max(0, now - record.timestamp()), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                logger.error("Error delivering message from partition {} offset {}", record.partition(), record.offset(), e);
+            }
+        }
+        delivered.increment(records.size());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> assigned) {
+        if (assigned.isEmpty()) {
+            return;
+        }
+
+        long replayFrom = System.currentTimeMillis() - replayWindow;
+        Map<TopicPartition, Long> timestamps = new HashMap<>();
+        assigned.forEach(partition -> timestamps.put(partition, replayFrom));
+        Map<TopicPartition, OffsetAndTimestamp> windowStart = consumer.offsetsForTimes(timestamps);
+        Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(assigned));
+
+        for (TopicPartition partition : assigned) {
+            OffsetAndTimestamp start = windowStart.get(partition);
+            OffsetAndMetadata position = committed.get(partition);
+            if (start == null) {
+                // Nothing was published within the window
+                consumer.seekToEnd(List.of(partition));
+            } else if (position == null || position.offset() < start.offset()) {
+                consumer.seek(partition, start.offset());
+            }
+            // Otherwise the committed offset is inside the window and consumption resumes from it
+        }
+    }
+}
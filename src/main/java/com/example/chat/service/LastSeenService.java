@@ -0,0 +1,86 @@
+package com.example.chat.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class LastSeenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastSeenService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.presence.last-seen.batch-size:500}")
+    private int batchSize;
+
+    // Pending last-seen timestamps, flushed to users.last_seen in batches
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    public void recordLastSeen(Long userId, LocalDateTime lastSeen) {
+        pending.merge(userId, lastSeen, (current, update) -> update.isAfter(current) ? update : current);
+    }
+
+    public LocalDateTime getPendingLastSeen(Long userId) {
+        return pending.get(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.last-seen.flush-interval:10000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, LocalDateTime>> batch = new ArrayList<>(batchSize);
+        for (Long userId : new ArrayList<>(pending.keySet())) {
+            LocalDateTime lastSeen = pending.remove(userId);
+            if (lastSeen != null) {
+                batch.add(Map.entry(userId, lastSeen));
+            }
+            if (batch.size() >= batchSize) {
+                writeBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeBatch(List<Map.Entry<Long, LocalDateTime>> batch) {
+        StringBuilder sql = new StringBuilder("UPDATE users u SET last_seen = v.last_seen FROM (VALUES ");
+        Object[] args = new Object[batch.size() * 2];
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?::bigint, ?::timestamp)");
+            args[i * 2] = batch.get(i).getKey();
+            args[i * 2 + 1] = Timestamp.valueOf(batch.get(i).getValue());
+        }
+        sql.append(") AS v(id, last_seen) WHERE u.id = v.id AND (u.last_seen IS NULL OR u.last_seen < v.last_seen)");
+
+        try {
+            int updated = jdbcTemplate.update(sql.toString(), args);
+            logger.debug("Flushed last seen for {} users ({} rows updated)", batch.size(), updated);
+        } catch (Exception e) {
+            logger.error("Error flushing last seen for {} users, retrying on next flush", batch.size(), e);
+            batch.forEach(entry -> recordLastSeen(entry.getKey(), entry.getValue()));
+        }
+    }
+}
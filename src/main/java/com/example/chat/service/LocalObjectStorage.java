@@ -0,0 +1,196 @@
+package com.example.chat.service;
+
+import com.google.common.io.ByteStreams;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Objects as files under one directory, for tests and single-node deployments without an object store
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local")
+public class LocalObjectStorage implements ObjectStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalObjectStorage.class);
+
+    private static final String MULTIPART_DIRECTORY = ".multipart";
+
+    @Value("${app.storage.local.root:./data/files}")
+    private String rootDirectory;
+
+    private Path root;
+    private Path multipartRoot;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Path.of(rootDirectory).toAbsolutePath().normalize();
+        multipartRoot = root.resolve(MULTIPART_DIRECTORY);
+        Files.createDirectories(multipartRoot);
+        logger.info("Storing files under {}", root);
+    }
+
+    @Override
+    public void put(String objectName, InputStream content, long size, String contentType) throws Exception {
+        write(resolve(objectName), content, size);
+    }
+
+    @Override
+    public InputStream get(String objectName, long offset, long length) throws Exception {
+        FileChannel channel = FileChannel.open(resolve(objectName), StandardOpenOption.READ);
+        channel.position(offset);
+        InputStream inputStream = Channels.newInputStream(channel);
+        return length >= 0 ? ByteStreams.limit(inputStream, length) : inputStream;
+    }
+
+    @Override
+    public StoredObject stat(String objectName) throws Exception {
+        Path path = resolve(objectName);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String etag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+        return new StoredObject(attributes.size(), Files.probeContentType(path), null, etag,
+                attributes.lastModifiedTime().toInstant());
+    }
+
+    @Override
+    public void remove(String objectName) throws Exception {
+        Files.deleteIfExists(resolve(objectName));
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName, String contentType) throws Exception {
+        String uploadId = UUID.randomUUID().toString();
+        Files.createDirectories(multipartRoot.resolve(uploadId));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream content, long length)
+            throws Exception {
+        Path parts = partsDirectory(uploadId);
+        long written = write(parts.resolve(String.valueOf(partNumber)), content, length);
+        return "\"" + partNumber + "-" + written + "\"";
+    }
+
+    // Parts are concatenated file to file, the bytes do not pass through the heap
+    @Override
+    public void completeMultipartUpload(String objectName, String uploadId, List<String> etags) throws Exception {
+        Path parts = partsDirectory(uploadId);
+        Path target = resolve(objectName);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload", ".tmp");
+        try {
+            try (FileChannel output = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (int partNumber = 1; partNumber <= etags.size(); partNumber++) {
+                    try (FileChannel part = FileChannel.open(parts.resolve(String.valueOf(partNumber)), StandardOpenOption.READ)) {
+                        transfer(part, 0, part.size(), output);
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        deleteDirectory(parts);
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws Exception {
+        deleteDirectory(partsDirectory(uploadId));
+    }
+
+    @Override
+    public String presignGet(String objectName, int expirySeconds) {
+        return null;
+    }
+
+    @Override
+    public PresignedUpload presignPut(String objectName, String contentType, String sha256, int expirySeconds) {
+        throw new IllegalArgumentException("Direct uploads are not supported by the local storage");
+    }
+
+    // FileChannel.transferTo lets the kernel move the bytes, without copying them into the JVM
+    @Override
+    public void transferTo(String objectName, long offset, long length, WritableByteChannel target) throws Exception {
+        try (FileChannel channel = FileChannel.open(resolve(objectName), StandardOpenOption.READ)) {
+            transfer(channel, offset, length >= 0 ? length : channel.size() - offset, target);
+        }
+    }
+
+    @Override
+    public Path localPath(String objectName) {
+        return resolve(objectName);
+    }
+
+    private static void transfer(FileChannel source, long offset, long length, WritableByteChannel target) throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long sent = source.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                // The file was truncated underneath us
+                throw new IOException("Unexpected end of file at " + position + " of " + end);
+            }
+            position += sent;
+        }
+    }
+
+    // Written next to the target and moved into place, readers never see a partial file
+    private static long write(Path target, InputStream content, long size) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload", ".tmp");
+        try {
+            long written = Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (size >= 0 && written != size) {
+                throw new IOException("Expected " + size + " bytes but received " + written);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path resolve(String objectName) {
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.equals(root) || path.startsWith(multipartRoot)) {
+            throw new IllegalArgumentException("Invalid object name: " + objectName);
+        }
+        return path;
+    }
+
+    private Path partsDirectory(String uploadId) {
+        Path parts = multipartRoot.resolve(uploadId).normalize();
+        if (!parts.getParent().equals(multipartRoot) || !Files.isDirectory(parts)) {
+            throw new IllegalArgumentException("Unknown multipart upload: " + uploadId);
+        }
+        return parts;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.MessageDto;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageArchiveSegment;
+import com.example.chat.repository.MessageArchiveSegmentRepository;
+import com.example.chat.repository.MessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class MessageArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiveService.class);
+
+    private static final String STORAGE_LOCAL = "local";
+    private static final String SEGMENT_CONTENT_TYPE = "application/gzip";
+    private static final DateTimeFormatter SEGMENT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    // Advisory lock class, combined with the conversation id so one node archives a conversation at a time
+    private static final int ARCHIVE_LOCK_CLASS = 0x61726368;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageArchiveSegmentRepository segmentRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.archive.after-days:90}")
+    private int afterDays;
+
+    @Value("${app.archive.storage:minio}")
+    private String storage;
+
+    @Value("${app.archive.local-dir:./data/archive}")
+    private String localDir;
+
+    @Value("${app.archive.max-segment-messages:10000}")
+    private int maxSegmentMessages;
+
+    @Value("${app.archive.max-conversations-per-run:1000}")
+    private int maxConversationsPerRun;
+
+    @Value("${app.archive.segment-cache-size:64}")
+    private int segmentCacheSize;
+
+    // Segments are immutable, decoded copies can be kept without invalidation
+    private Cache<String, List<MessageDto>> segmentCache;
+
+    @PostConstruct
+    public void init() {
+        segmentCache = Caffeine.newBuilder().maximumSize(segmentCacheSize).build();
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void archiveColdMessages() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(afterDays);
+        List<Long> conversationIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT conversation_id FROM messages WHERE created_at < ? LIMIT ?",
+                Long.class, Timestamp.valueOf(cutoff), maxConversationsPerRun);
+
+        int segments = 0;
+        for (Long conversationId : conversationIds) {
+            try {
+                while (archiveSegment(conversationId, cutoff)) {
+                    segments++;
+                }
+            } catch (Exception e) {
+                logger.error("Error archiving messages of conversation {}", conversationId, e);
+            }
+        }
+        logger.info("Archived messages older than {} from {} conversations into {} segments",
+                cutoff, conversationIds.size(), segments);
+    }
+
+    // Returns true when a segment was written and more messages may be waiting
+    private boolean archiveSegment(Long conversationId, LocalDateTime cutoff) {
+        Boolean archived = new TransactionTemplate(transactionManager).execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, ?)",
+                    Boolean.class, ARCHIVE_LOCK_CLASS, conversationId.intValue());
+            if (!Boolean.TRUE.equals(locked)) {
+                return false;
+            }
+
+            List<Message> batch = messageRepository.findArchivable(conversationId, cutoff,
+                    PageRequest.of(0, maxSegmentMessages));
+            if (batch.isEmpty()) {
+                return false;
+            }
+
+            // Deleted messages are dropped instead of archived
+            List<MessageDto> live = batch.stream()
+                    .filter(message -> !message.isDeleted())
+                    .map(MessageDto::new)
+                    .toList();
+            if (!live.isEmpty()) {
+                writeSegment(conversationId, live);
+            }
+
+            Message last = batch.get(batch.size() - 1);
+            jdbcTemplate.update("DELETE FROM message_receipts WHERE message_id IN (" +
+                    "SELECT id FROM messages WHERE conversation_id = ? AND created_at <= ? AND (created_at, id) <= (?, ?))",
+                    conversationId, Timestamp.valueOf(last.getCreatedAt()), Timestamp.valueOf(last.getCreatedAt()), last.getId());
+            jdbcTemplate.update("DELETE FROM messages WHERE conversation_id = ? AND created_at <= ? AND (created_at, id) <= (?, ?)",
+                    conversationId, Timestamp.valueOf(last.getCreatedAt()), Timestamp.valueOf(last.getCreatedAt()), last.getId());
+            return batch.size() == maxSegmentMessages;
+        });
+        return Boolean.TRUE.equals(archived);
+    }
+
+    private void writeSegment(Long conversationId, List<MessageDto> messages) {
+        MessageDto first = messages.get(0);
+        MessageDto last = messages.get(messages.size() - 1);
+        String key = "archive/" + conversationId + "/" + first.getCreatedAt().format(SEGMENT_TIMESTAMP)
+                + "-" + first.getId() + "-" + last.getId() + ".ndjson.gz";
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                for (MessageDto message : messages) {
+                    gzip.write(objectMapper.writeValueAsBytes(message));
+                    gzip.write('\n');
+                }
+            }
+
+            if (STORAGE_LOCAL.equals(storage)) {
+                Path path = Paths.get(localDir).resolve(key);
+                Files.createDirectories(path.getParent());
+                Files.write(path, bytes.toByteArray());
+            } else {
+                fileService.storeObject(key, bytes.toByteArray(), SEGMENT_CONTENT_TYPE);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error writing archive segment " + key, e);
+        }
+
+        segmentRepository.save(new MessageArchiveSegment(conversationId, first.getCreatedAt(), last.getCreatedAt(),
+                first.getId(), last.getId(), messages.size(), storage, key));
+        logger.debug("Archived {} messages of conversation {} to {}", messages.size(), conversationId, key);
+    }
+
+    public Page<MessageDto> readThrough(Long conversationId, long clearedBeforeId, LocalDateTime before, Pageable pageable,
+                                        Page<MessageDto> hot) {
+        // Segments wholly below the clear watermark are waiting to be purged
+        List<MessageArchiveSegment> segments = segmentRepository.findByConversationIdOrderByRangeEndDesc(conversationId).stream()
+                .filter(segment -> segment.getLastMessageId() > clearedBeforeId)
+                .filter(segment -> before == null || segment.getRangeStart().isBefore(before))
+                .toList();
+        if (segments.isEmpty()) {
+            return hot;
+        }
+
+        long[] visibleCounts = segments.stream().mapToLong(segment -> visibleCount(segment, clearedBeforeId, before)).toArray();
+        long total = hot.getTotalElements() + Arrays.stream(visibleCounts).sum();
+        if (hot.getNumberOfElements() >= pageable.getPageSize()) {
+            return new PageImpl<>(hot.getContent(), pageable, total);
+        }
+
+        // Paging past the hot window continues newest first through the archived segments
+        List<MessageDto> content = new ArrayList<>(hot.getContent());
+        long skip = Math.max(0, pageable.getOffset() - hot.getTotalElements());
+        for (int s = 0; s < segments.size() && content.size() < pageable.getPageSize(); s++) {
+            if (skip >= visibleCounts[s]) {
+                skip -= visibleCounts[s];
+                continue;
+            }
+
+            List<MessageDto> archived = readSegment(segments.get(s));
+            for (int i = archived.size() - 1; i >= 0 && content.size() < pageable.getPageSize(); i--) {
+                MessageDto message = archived.get(i);
+                if (!visible(message, clearedBeforeId, before)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                content.add(message);
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    // Segments straddling the clear watermark or the page cursor are read, only their visible messages count
+    private long visibleCount(MessageArchiveSegment segment, long clearedBeforeId, LocalDateTime before) {
+        if (segment.getFirstMessageId() > clearedBeforeId && (before == null || segment.getRangeEnd().isBefore(before))) {
+            return segment.getMessageCount();
+        }
+        return readSegment(segment).stream().filter(message -> visible(message, clearedBeforeId, before)).count();
+    }
+
+    private static boolean visible(MessageDto message, long clearedBeforeId, LocalDateTime before) {
+        return message.getId() > clearedBeforeId && (before == null || message.getCreatedAt().isBefore(before));
+    }
+
+    // Removes segments that hold only messages cleared from the conversation
+    public int purgeSegments(Long conversationId, long clearedBeforeId) {
+        List<MessageArchiveSegment> cleared = segmentRepository.findByConversationIdAndLastMessageIdLessThanEqual(
+                conversationId, clearedBeforeId);
+        for (MessageArchiveSegment segment : cleared) {
+            try {
+                if (STORAGE_LOCAL.equals(segment.getStorage())) {
+                    Files.deleteIfExists(Paths.get(localDir).resolve(segment.getStorageKey()));
+                } else {
+                    fileService.removeObject(segment.getStorageKey());
+                }
+            } catch (Exception e) {
+                // An orphaned object is harmless once its segment row is gone
+                logger.warn("Error removing archive segment {}", segment.getStorageKey(), e);
+            }
+            segmentRepository.delete(segment);
+            segmentCache.invalidate(segment.getStorageKey());
+        }
+        return cleared.size();
+    }
+
+    private List<MessageDto> readSegment(MessageArchiveSegment segment) {
+        return segmentCache.get(segment.getStorageKey(), key -> {
+            try {
+                byte[] data = STORAGE_LOCAL.equals(segment.getStorage())
+                        ? Files.readAllBytes(Paths.get(localDir).resolve(key))
+                        : fileService.readObject(key);
+
+                List<MessageDto> messages = new ArrayList<>(segment.getMessageCount());
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            messages.add(objectMapper.readValue(line, MessageDto.class));
+                        }
+                    }
+                }
+                return messages;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading archive segment " + key, e);
+            } catch (Exception e) {
+                throw new RuntimeException("Error reading archive segment " + key, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chat.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+// Command line import, exits when done:
+// java -jar chat.jar --spring.main.web-application-type=none --app.import.file=history.ndjson [--app.import.id=<id to resume>]
+@Component
+@ConditionalOnProperty(name = "app.import.file")
+public class MessageImportCommand implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageImportCommand.class);
+
+    @Autowired
+    private MessageImportService messageImportService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${app.import.file}")
+    private String file;
+
+    @Value("${app.import.id:#{null}}")
+    private String importId;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path path = Paths.get(file);
+        int exitCode = 0;
+        try (InputStream input = Files.newInputStream(path)) {
+            Map<String, Object> result = messageImportService.importMessages(input, importId, path.getFileName().toString());
+            logger.info("Imported {}: {}", path, result);
+        } catch (Exception e) {
+            logger.error("Error importing {}", path, e);
+            exitCode = 1;
+        }
+
+        int status = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> status));
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.chat.service;
+
+import com.example.chat.cache.RecentMessageBuffer;
+import com.example.chat.dto.MessageImportRecord;
+import com.example.chat.model.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+public class MessageImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageImportService.class);
+
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_FAILED = "FAILED";
+
+    private static final Set<String> TYPES = Arrays.stream(Message.Type.values()).map(Enum::name).collect(Collectors.toSet());
+    private static final Set<String> STATUSES = Arrays.stream(Message.Status.values()).map(Enum::name).collect(Collectors.toSet());
+
+    private static final String COPY_SQL =
+            "COPY messages (conversation_id, sender_id, type, content, attachment_url, mime_type, status, " +
+            "created_at, edited_at, deleted, metadata) FROM STDIN WITH (FORMAT csv)";
+
+    // Members have read everything they sent and everything the old system marked as read. Messages are reduced
+    // to one row per conversation and sender before they meet the members, a large group is not multiplied out
+    private static final String READ_WATERMARK_SQL =
+            "UPDATE conversation_members cm SET last_read_message_id = r.last_read_id " +
+            "FROM (SELECT member_id, MAX(last_id) AS last_read_id FROM (" +
+            "        SELECT cm2.id AS member_id, rd.last_id " +
+            "        FROM (SELECT conversation_id, MAX(id) AS last_id FROM messages " +
+            "              WHERE id > ? AND status = 'READ' GROUP BY conversation_id) rd " +
+            "        JOIN conversation_members cm2 ON cm2.conversation_id = rd.conversation_id " +
+            "        UNION ALL " +
+            "        SELECT cm2.id, sent.last_id " +
+            "        FROM (SELECT conversation_id, sender_id, MAX(id) AS last_id FROM messages " +
+            "              WHERE id > ? GROUP BY conversation_id, sender_id) sent " +
+            "        JOIN conversation_members cm2 ON cm2.conversation_id = sent.conversation_id AND cm2.user_id = sent.sender_id" +
+            "      ) w GROUP BY member_id) r " +
+            "WHERE cm.id = r.member_id AND (cm.last_read_message_id IS NULL OR cm.last_read_message_id < r.last_read_id)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MessagePartitionService messagePartitionService;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Value("${app.import.batch-size:50000}")
+    private int batchSize;
+
+    public Map<String, Object> importMessages(InputStream input, String importId, String source) throws IOException {
+        String id = importId != null ? importId : createImport(source);
+        Map<String, Object> job = findImport(id);
+        if (STATUS_COMPLETED.equals(job.get("status"))) {
+            return job;
+        }
+        jdbcTemplate.update("UPDATE message_imports SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?", STATUS_RUNNING, id);
+
+        ImportRun run = new ImportRun(id, ((Number) job.get("lines_processed")).longValue());
+        ObjectReader reader = objectMapper.readerFor(MessageImportRecord.class);
+        List<MessageImportRecord> batch = new ArrayList<>(batchSize);
+        int batchLines = 0;
+        int malformed = 0;
+        long line = 0;
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String text;
+            while ((text = lines.readLine()) != null) {
+                // Lines up to the checkpoint were committed by an earlier run
+                if (++line <= run.linesProcessed) {
+                    continue;
+                }
+
+                batchLines++;
+                if (!text.isBlank()) {
+                    try {
+                        batch.add(reader.readValue(text));
+                    } catch (JsonProcessingException e) {
+                        malformed++;
+                    }
+                }
+
+                if (batchLines == batchSize) {
+                    writeBatch(run, batch, batchLines, malformed);
+                    batch.clear();
+                    batchLines = 0;
+                    malformed = 0;
+                }
+            }
+            if (batchLines > 0) {
+                writeBatch(run, batch, batchLines, malformed);
+            }
+
+            rebuildDerivedState(id, ((Number) job.get("after_message_id")).longValue());
+        } catch (IOException | RuntimeException e) {
+            jdbcTemplate.update("UPDATE message_imports SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?", STATUS_FAILED, id);
+            logger.error("Message import {} failed after {} lines, it can be resumed", id, run.linesProcessed, e);
+            throw e;
+        }
+
+        Map<String, Object> result = findImport(id);
+        logger.info("Message import {} completed: {} rows imported, {} rejected",
+                id, result.get("rows_imported"), result.get("rows_rejected"));
+        return result;
+    }
+
+    public Map<String, Object> findImport(String id) {
+        List<Map<String, Object>> imports = jdbcTemplate.queryForList(
+                "SELECT id, source, status, after_message_id, lines_processed, rows_imported, rows_rejected, created_at, updated_at " +
+                "FROM message_imports WHERE id = ?", id);
+        if (imports.isEmpty()) {
+            throw new RuntimeException("Import not found");
+        }
+        return imports.get(0);
+    }
+
+    private String createImport(String source) {
+        // Everything this import writes gets an id above the current sequence value
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO message_imports (id, source, after_message_id) " +
+                "SELECT ?, ?, CASE WHEN is_called THEN last_value ELSE 0 END FROM messages_id_seq", id, source);
+        return id;
+    }
+
+    private void writeBatch(ImportRun run, List<MessageImportRecord> batch, int lines, int malformed) {
+        resolveIds(run, batch);
+
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        Set<Long> conversations = new HashSet<>();
+        Set<YearMonth> months = new HashSet<>();
+        for (MessageImportRecord record : batch) {
+            Long senderId = record.getSenderId() != null
+                    ? (Boolean.TRUE.equals(run.userIds.get(record.getSenderId())) ? record.getSenderId() : null)
+                    : run.usernames.get(record.getSenderUsername());
+            String type = record.getType() != null ? record.getType() : Message.Type.TEXT.name();
+            String status = record.getStatus() != null ? record.getStatus() : Message.Status.SENT.name();
+            if (senderId == null || record.getCreatedAt() == null || !TYPES.contains(type) || !STATUSES.contains(status)
+                    || !Boolean.TRUE.equals(run.conversationIds.get(record.getConversationId()))) {
+                continue;
+            }
+
+            rows.add(new Object[] {record.getConversationId(), senderId, type, record.getContent(), record.getAttachmentUrl(),
+                    record.getMimeType(), status, record.getCreatedAt(), record.getEditedAt(), record.isDeleted(),
+                    record.getMetadata()});
+            conversations.add(record.getConversationId());
+            months.add(YearMonth.from(record.getCreatedAt()));
+        }
+
+        // DDL on messages inside the batch transaction would block readers until it commits
+        for (YearMonth month : months) {
+            if (run.months.add(month)) {
+                messagePartitionService.createPartition(month);
+            }
+        }
+
+        int imported = new TransactionTemplate(transactionManager).execute(status -> {
+            Long processed = jdbcTemplate.queryForObject(
+                    "SELECT lines_processed FROM message_imports WHERE id = ? FOR UPDATE", Long.class, run.id);
+            if (processed == null || processed != run.linesProcessed) {
+                throw new RuntimeException("Import " + run.id + " is being run concurrently");
+            }
+
+            // Rows sent before a clear of their conversation stay hidden, the clear cannot commit in between
+            Map<Long, LocalDateTime> clearedAt = lockClearedAt(conversations);
+            StringBuilder csv = new StringBuilder(rows.size() * 160);
+            LocalDateTime oldest = null;
+            int copied = 0;
+            for (Object[] row : rows) {
+                LocalDateTime createdAt = (LocalDateTime) row[7];
+                LocalDateTime cleared = clearedAt.get((Long) row[0]);
+                if (cleared != null && !createdAt.isAfter(cleared)) {
+                    continue;
+                }
+                appendRow(csv, row);
+                oldest = oldest == null || createdAt.isBefore(oldest) ? createdAt : oldest;
+                copied++;
+            }
+
+            if (copied > 0) {
+                copyIn(csv.toString());
+            }
+            // The checkpoint commits together with the rows so a resumed import never duplicates them. The id
+            // range and oldest created_at let the id based reads find these rows below their created_at bound.
+            jdbcTemplate.update("UPDATE message_imports SET lines_processed = lines_processed + ?, " +
+                    "rows_imported = rows_imported + ?, rows_rejected = rows_rejected + ?, " +
+                    "min_created_at = LEAST(min_created_at, ?::timestamp), last_message_id = (SELECT last_value FROM messages_id_seq), " +
+                    "updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                    lines, copied, malformed + batch.size() - copied, oldest != null ? Timestamp.valueOf(oldest) : null, run.id);
+            return copied;
+        });
+        run.linesProcessed += lines;
+        logger.debug("Message import {} copied {} rows, {} lines processed", run.id, imported, run.linesProcessed);
+    }
+
+    private Map<Long, LocalDateTime> lockClearedAt(Set<Long> conversationIds) {
+        Map<Long, LocalDateTime> clearedAt = new HashMap<>();
+        if (!conversationIds.isEmpty()) {
+            // Key share does not block sends, only the row lock taken by clearChat
+            queryAny("SELECT id, cleared_at FROM conversations WHERE id = ANY(?) FOR KEY SHARE", "bigint", conversationIds.toArray(), rs -> {
+                Timestamp cleared = rs.getTimestamp("cleared_at");
+                if (cleared != null) {
+                    clearedAt.put(rs.getLong("id"), cleared.toLocalDateTime());
+                }
+            });
+        }
+        return clearedAt;
+    }
+
+    // Senders and conversations are looked up once per import, only ids not seen in earlier batches are queried
+    private void resolveIds(ImportRun run, List<MessageImportRecord> batch) {
+        Set<String> usernames = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> conversationIds = new HashSet<>();
+        for (MessageImportRecord record : batch) {
+            if (record.getSenderId() != null) {
+                if (!run.userIds.containsKey(record.getSenderId())) {
+                    userIds.add(record.getSenderId());
+                }
+            } else if (record.getSenderUsername() != null && !run.usernames.containsKey(record.getSenderUsername())) {
+                usernames.add(record.getSenderUsername());
+            }
+            if (record.getConversationId() != null && !run.conversationIds.containsKey(record.getConversationId())) {
+                conversationIds.add(record.getConversationId());
+            }
+        }
+
+        usernames.forEach(username -> run.usernames.put(username, null));
+        userIds.forEach(id -> run.userIds.put(id, false));
+        conversationIds.forEach(id -> run.conversationIds.put(id, false));
+
+        if (!usernames.isEmpty()) {
+            queryAny("SELECT id, username FROM users WHERE username = ANY(?)", "varchar", usernames.toArray(),
+                    rs -> run.usernames.put(rs.getString("username"), rs.getLong("id")));
+        }
+        if (!userIds.isEmpty()) {
+            queryAny("SELECT id FROM users WHERE id = ANY(?)", "bigint", userIds.toArray(),
+                    rs -> run.userIds.put(rs.getLong("id"), true));
+        }
+        if (!conversationIds.isEmpty()) {
+            queryAny("SELECT id FROM conversations WHERE id = ANY(?)", "bigint", conversationIds.toArray(),
+                    rs -> run.conversationIds.put(rs.getLong("id"), true));
+        }
+    }
+
+    private void queryAny(String sql, String type, Object[] values, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setArray(1, connection.createArrayOf(type, values));
+            return ps;
+        }, handler);
+    }
+
+    private void copyIn(String csv) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(csv));
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Error copying imported messages", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void rebuildDerivedState(String id, long afterMessageId) {
+        List<Long> conversations = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Long> touched = jdbcTemplate.queryForList(
+                    "UPDATE conversations c SET updated_at = GREATEST(c.updated_at, m.last_created_at) " +
+                    "FROM (SELECT conversation_id, MAX(created_at) AS last_created_at FROM messages WHERE id > ? " +
+                    "      GROUP BY conversation_id) m " +
+                    "WHERE c.id = m.conversation_id RETURNING c.id", Long.class, afterMessageId);
+            int members = jdbcTemplate.update(READ_WATERMARK_SQL, afterMessageId, afterMessageId);
+            jdbcTemplate.update("UPDATE message_imports SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                    STATUS_COMPLETED, id);
+            logger.info("Message import {} updated {} conversations and {} read watermarks", id, touched.size(), members);
+            return touched;
+        });
+
+        // Buffered first pages no longer match the conversation totals
+        conversations.forEach(recentMessageBuffer::evict);
+    }
+
+    private static void appendRow(StringBuilder csv, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            // An unquoted empty field is NULL, quoted values keep empty strings, commas and newlines intact
+            if (values[i] != null) {
+                String value = values[i].toString();
+                csv.append('"');
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    if (c == '"') {
+                        csv.append('"');
+                    }
+                    csv.append(c);
+                }
+                csv.append('"');
+            }
+        }
+        csv.append('\n');
+    }
+
+    private static class ImportRun {
+        private final String id;
+        private long linesProcessed;
+        private final Map<String, Long> usernames = new HashMap<>();
+        private final Map<Long, Boolean> userIds = new HashMap<>();
+        private final Map<Long, Boolean> conversationIds = new HashMap<>();
+        private final Set<YearMonth> months = new HashSet<>();
+
+        ImportRun(String id, long linesProcessed) {
+            this.id = id;
+            this.linesProcessed = linesProcessed;
+        }
+    }
+}
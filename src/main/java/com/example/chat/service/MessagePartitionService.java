@@ -0,0 +1,121 @@
+package com.example.chat.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+@Service
+public class MessagePartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessagePartitionService.class);
+
+    private static final String PARTITION_PREFIX = "messages_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Advisory lock so only one node maintains partitions at a time
+    private static final long MAINTENANCE_LOCK_ID = 0x6d7367706172L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private FileService fileService;
+
+    @Value("${app.messages.partitions.premake-months:3}")
+    private int premakeMonths;
+
+    @Value("${app.messages.retention.months:0}")
+    private int retentionMonths;
+
+    @Value("${app.messages.retention.drop:true}")
+    private boolean dropExpired;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${app.messages.partitions.maintenance-cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_ID);
+                if (!Boolean.TRUE.equals(locked)) {
+                    logger.debug("Message partitions are being maintained by another node");
+                    return;
+                }
+
+                YearMonth current = YearMonth.now();
+                for (int i = 0; i <= premakeMonths; i++) {
+                    createPartition(current.plusMonths(i));
+                }
+                if (retentionMonths > 0) {
+                    expirePartitions(current.minusMonths(retentionMonths));
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error maintaining message partitions", e);
+        }
+    }
+
+    public void createPartition(YearMonth month) {
+        String partition = PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF messages FOR VALUES FROM ('%s') TO ('%s')",
+                partition, month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    private void expirePartitions(YearMonth oldestRetained) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = 'messages'", String.class);
+
+        for (String partition : partitions) {
+            YearMonth month = partitionMonth(partition);
+            if (month == null || !month.isBefore(oldestRetained)) {
+                continue;
+            }
+
+            // Rows pointing at the expired messages are no longer covered by foreign keys
+            int receipts = jdbcTemplate.update(
+                    "DELETE FROM message_receipts WHERE message_id IN (SELECT id FROM " + partition + ")");
+            int files = fileService.releaseMessageFiles(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+
+            jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + partition);
+            if (dropExpired) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            logger.info("Expired message partition {} ({}, {} receipts, {} files removed)",
+                    partition, dropExpired ? "dropped" : "detached", receipts, files);
+        }
+    }
+
+    private YearMonth partitionMonth(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.MessageSearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Service
+public class MessageSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchService.class);
+
+    private static final String HEADLINE_OPTIONS = "StartSel=<mark>, StopSel=</mark>, MaxWords=30, MinWords=10, MaxFragments=2";
+
+    // Matches in the caller's conversations, ranked; the GIN index on content_tsv drives the scan
+    private static final String MATCHES_SQL =
+            "SELECT m.id, m.conversation_id, m.sender_id, m.content, m.created_at, " +
+            "ts_rank(m.content_tsv, q.query) AS rank " +
+            "FROM messages m JOIN conversations c ON c.id = m.conversation_id, websearch_to_tsquery('english', ?) AS q(query) " +
+            "WHERE m.content_tsv @@ q.query AND m.deleted = false AND m.id > COALESCE(c.cleared_before_id, 0) " +
+            "AND m.conversation_id IN (SELECT cm.conversation_id FROM conversation_members cm WHERE cm.user_id = ?) ";
+
+    // Content is HTML escaped before the highlighting, the <mark> tags are then the only markup in a snippet
+    private static final String ESCAPED_CONTENT =
+            "replace(replace(replace(replace(replace(r.content, '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), '\"', '&quot;'), '''', '&#39;')";
+
+    // Snippets are only built for the rows that are returned
+    private static final String RESULTS_SQL =
+            "SELECT r.id, r.conversation_id, r.sender_id, u.username, r.created_at, r.rank, " +
+            "ts_headline('english', " + ESCAPED_CONTENT + ", websearch_to_tsquery('english', ?), '" + HEADLINE_OPTIONS + "') AS snippet " +
+            "FROM (%s) r JOIN users u ON u.id = r.sender_id " +
+            "ORDER BY r.rank DESC, r.id DESC";
+
+    private static final RowMapper<MessageSearchResult> RESULT_MAPPER = (rs, rowNum) -> new MessageSearchResult(
+            rs.getLong("id"),
+            rs.getLong("conversation_id"),
+            rs.getLong("sender_id"),
+            rs.getString("username"),
+            rs.getString("snippet"),
+            rs.getFloat("rank"),
+            rs.getTimestamp("created_at") != null ? rs.getTimestamp("created_at").toLocalDateTime() : null
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.search.max-page-size:50}")
+    private int maxPageSize;
+
+    @Value("${app.search.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    @Value("${app.search.stream.max-results:10000}")
+    private int maxStreamResults;
+
+    public Map<String, Object> search(Long userId, String query, Long conversationId, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder matches = matchesSql(userId, query, conversationId, args);
+        if (cursor != null && !cursor.isBlank()) {
+            // Keyset page: continue strictly after the last (rank, id) of the previous page
+            Object[] position = decodeCursor(cursor);
+            matches.append("AND (ts_rank(m.content_tsv, q.query), m.id) < (?::real, ?) ");
+            args.add(position[0]);
+            args.add(position[1]);
+        }
+        matches.append("ORDER BY rank DESC, m.id DESC LIMIT ?");
+        args.add(size);
+
+        args.add(0, query);
+        List<MessageSearchResult> results = jdbcTemplate.query(String.format(RESULTS_SQL, matches), RESULT_MAPPER, args.toArray());
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("results", results);
+        page.put("nextCursor", results.size() == size ? encodeCursor(results.get(size - 1)) : null);
+        return page;
+    }
+
+    public void stream(Long userId, String query, Long conversationId, Consumer<MessageSearchResult> consumer) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder matches = matchesSql(userId, query, conversationId, args);
+        matches.append("ORDER BY rank DESC, m.id DESC LIMIT ?");
+        args.add(maxStreamResults);
+        args.add(0, query);
+
+        String sql = String.format(RESULTS_SQL, matches);
+        Object[] params = args.toArray();
+
+        // The Postgres driver only uses a server-side cursor for fetch sizes inside a transaction
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setFetchSize(streamFetchSize);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps;
+        }, rs -> {
+            consumer.accept(RESULT_MAPPER.mapRow(rs, rs.getRow()));
+        }));
+        logger.debug("Streamed search results for user {} in conversation {}", userId, conversationId);
+    }
+
+    private String encodeCursor(MessageSearchResult result) {
+        String position = result.getRank() + ":" + result.getMessageId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Object[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            return new Object[] {
+                Float.parseFloat(position.substring(0, separator)),
+                Long.parseLong(position.substring(separator + 1))
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid search cursor");
+        }
+    }
+
+    private StringBuilder matchesSql(Long userId, String query, Long conversationId, List<Object> args) {
+        StringBuilder sql = new StringBuilder(MATCHES_SQL);
+        args.add(query);
+        args.add(userId);
+        if (conversationId != null) {
+            sql.append("AND m.conversation_id = ? ");
+            args.add(conversationId);
+        }
+        return sql;
+    }
+}
@@ -1,20 +1,32 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.RecentMessageBuffer;
 import com.example.chat.dto.MessageDto;
 import com.example.chat.dto.SendMessageRequest;
 import com.example.chat.model.Conversation;
+import com.example.chat.model.ConversationMember;
+import com.example.chat.model.FileMetadata;
 import com.example.chat.model.Message;
 import com.example.chat.model.User;
 import com.example.chat.repository.ConversationMemberRepository;
 import com.example.chat.repository.ConversationRepository;
+import com.example.chat.repository.FileMetadataRepository;
 import com.example.chat.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -46,18 +58,97 @@ public class MessageService {
     @Autowired
     private PresenceService presenceService;
 
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private ChannelFanoutService channelFanoutService;
+
+    @Autowired
+    private DeliveryBackbone deliveryBackbone;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("messagesSentCounter")
+    private Counter messagesSentCounter;
+
     private static final String OFFLINE_MESSAGES_KEY = "offline_messages:";
 
+    private Timer membershipStage;
+    private Timer persistStage;
+    private Timer commitStage;
+    private Timer localFanoutStage;
+    private Timer backbonePublishStage;
+    private Timer eventPublishStage;
+    private Timer offlineEnqueueStage;
+    private Timer sendTimer;
+    private Timer localDispatch;
+
+    @PostConstruct
+    public void init() {
+        membershipStage = stageTimer("membership");
+        persistStage = stageTimer("persist");
+        commitStage = stageTimer("commit");
+        localFanoutStage = stageTimer("local_fanout");
+        backbonePublishStage = stageTimer("backbone_publish");
+        eventPublishStage = stageTimer("event_publish");
+        offlineEnqueueStage = stageTimer("offline_enqueue");
+        sendTimer = Timer.builder("chat.message.send.time")
+                .description("Time from accepting a message until it was committed and handed to every delivery path")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        localDispatch = dispatchTimer(meterRegistry, "local");
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("chat.message.send.stage")
+                .tag("stage", stage)
+                .description("Time spent in one stage of sending a message")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Shared with the backbone subscriber, which records the same latency for messages sent on other nodes
+    static Timer dispatchTimer(MeterRegistry meterRegistry, String path) {
+        return Timer.builder("chat.message.dispatch.time")
+                .tag("path", path)
+                .description("Time from accepting a message until it was handed to the local WebSocket sessions")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     @Transactional
     @org.springframework.scheduling.annotation.Async("messageExecutor")
     public java.util.concurrent.CompletableFuture<MessageDto> sendMessage(SendMessageRequest request, Long senderId) {
+        long sentAt = System.currentTimeMillis();
+        long started = System.nanoTime();
+
         // Verify user is member of conversation
         if (!memberRepository.existsByConversationIdAndUserId(request.getConversationId(), senderId)) {
             throw new RuntimeException("Access denied");
         }
 
-        Conversation conversation = conversationRepository.findById(request.getConversationId())
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        String type = conversationRepository.findTypeById(request.getConversationId());
+        if (type == null) {
+            throw new RuntimeException("Conversation not found");
+        }
+        Conversation conversation = conversationRepository.getReferenceById(request.getConversationId());
+
+        // Channels are read-only for subscribers
+        boolean channel = Conversation.Type.CHANNEL.name().equals(type);
+        if (channel && memberRepository.findByConversationIdAndUserId(conversation.getId(), senderId)
+                .map(member -> member.getRole() != ConversationMember.Role.ADMIN).orElse(true)) {
+            throw new RuntimeException("Only admins can post in channels");
+        }
+        long start = lap(membershipStage, started);
 
         User sender = userService.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -70,21 +161,56 @@ public class MessageService {
         message.setAttachmentUrl(request.getAttachmentUrl());
         message.setMimeType(request.getMimeType());
 
+        // Uploaded files are referenced by id, the message keeps the object key and a URL that never expires
+        Long fileId = request.getFileId() != null ? request.getFileId() : fileService.fileIdFromUrl(request.getAttachmentUrl());
+        FileMetadata attachment = fileId != null ? fileService.claimAttachment(fileId, senderId) : null;
+        if (attachment != null) {
+            message.setAttachmentKey(attachment.getStoragePath());
+            message.setAttachmentUrl(FileService.FILE_PATH + attachment.getId());
+            message.setMimeType(attachment.getMimeType());
+        }
+
         message = messageRepository.save(message);
+        if (attachment != null && fileMetadataRepository.attach(attachment.getId(), message.getId(), conversation.getId()) == 0) {
+            throw new IllegalArgumentException("File is already attached to a message");
+        }
+        bufferAfterCommit(conversation.getId(), new MessageDto(message));
 
         // Update conversation timestamp
-        conversation.setUpdatedAt(LocalDateTime.now());
-        conversationRepository.save(conversation);
+        conversationRepository.touch(conversation.getId(), LocalDateTime.now());
 
         MessageDto messageDto = new MessageDto(message);
+        messageDto.setSentAt(sentAt);
+        start = lap(persistStage, start);
+
+        if (channel) {
+            // Delivery to the subscribers is left to the fan-out workers, independent of their number
+            fanOutAfterCommit(conversation.getId(), messageDto);
+            if (eventPublisher != null) {
+                eventPublisher.publishMessageEvent(new com.example.chat.dto.events.MessageEvent(
+                    com.example.chat.dto.events.MessageEvent.Type.MESSAGE_SENT,
+                    message.getId(),
+                    conversation.getId(),
+                    senderId,
+                    sender.getUsername(),
+                    message.getContent(),
+                    message.getType(),
+                    message.getStatus()
+                ));
+                lap(eventPublishStage, start);
+            }
+            recordSent(started);
+            return java.util.concurrent.CompletableFuture.completedFuture(messageDto);
+        }
 
         // Send real-time message to online users
         sendRealTimeMessage(conversation.getId(), messageDto);
+        start = lap(localFanoutStage, start);
 
-        // Publish to Redis for real-time delivery across instances
-        if (eventPublisher != null) {
-            eventPublisher.publishMessageToRedis(conversation.getId(), messageDto);
+        // Real-time delivery across instances
+        backboneAfterCommit(conversation.getId(), messageDto);
 
+        if (eventPublisher != null) {
             // Publish message event to Kafka
             eventPublisher.publishMessageEvent(new com.example.chat.dto.events.MessageEvent(
                 com.example.chat.dto.events.MessageEvent.Type.MESSAGE_SENT,
@@ -96,11 +222,14 @@ public class MessageService {
                 message.getType(),
                 message.getStatus()
             ));
+            start = lap(eventPublishStage, start);
         }
 
         // Handle offline message delivery
         handleOfflineMessageDelivery(conversation.getId(), messageDto, senderId);
+        lap(offlineEnqueueStage, start);
 
+        recordSent(started);
         return java.util.concurrent.CompletableFuture.completedFuture(messageDto);
     }
 
@@ -116,6 +245,7 @@ public class MessageService {
 
         message.setStatus(status);
         messageRepository.save(message);
+        recentMessageBuffer.updateStatus(message.getConversation().getId(), messageId, status);
 
         // Send status update to sender
         MessageDto messageDto = new MessageDto(message);
@@ -177,6 +307,7 @@ public class MessageService {
     private void sendRealTimeMessage(Long conversationId, MessageDto messageDto) {
         // Send to conversation topic
         messagingTemplate.convertAndSend("/topic/conversations/" + conversationId, messageDto);
+        localDispatch.record(Math.max(0, System.currentTimeMillis() - messageDto.getSentAt()), TimeUnit.MILLISECONDS);
 
         // Mark as delivered for online users
         List<Long> onlineMembers = getOnlineMembers(conversationId);
@@ -186,6 +317,84 @@ public class MessageService {
         }
     }
 
+    private long lap(Timer stage, long start) {
+        long now = System.nanoTime();
+        stage.record(now - start, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private void recordSent(long started) {
+        // The commit runs after this method returns, its share is taken around it
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private long commitStarted;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    commitStarted = System.nanoTime();
+                }
+
+                @Override
+                public void afterCommit() {
+                    long now = System.nanoTime();
+                    commitStage.record(now - commitStarted, TimeUnit.NANOSECONDS);
+                    sendTimer.record(now - started, TimeUnit.NANOSECONDS);
+                    messagesSentCounter.increment();
+                }
+            });
+        } else {
+            sendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            messagesSentCounter.increment();
+        }
+    }
+
+    private void bufferAfterCommit(Long conversationId, MessageDto messageDto) {
+        // Readers on this node must not see the message in the buffer before it is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentMessageBuffer.append(conversationId, messageDto);
+                }
+            });
+        } else {
+            recentMessageBuffer.append(conversationId, messageDto);
+        }
+    }
+
+    private void backboneAfterCommit(Long conversationId, MessageDto messageDto) {
+        // Other nodes must not deliver a message that can still roll back
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishToBackbone(conversationId, messageDto);
+                }
+            });
+        } else {
+            publishToBackbone(conversationId, messageDto);
+        }
+    }
+
+    private void publishToBackbone(Long conversationId, MessageDto messageDto) {
+        long start = System.nanoTime();
+        deliveryBackbone.publish(conversationId, messageDto);
+        lap(backbonePublishStage, start);
+    }
+
+    private void fanOutAfterCommit(Long channelId, MessageDto messageDto) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    channelFanoutService.publish(channelId, messageDto);
+                }
+            });
+        } else {
+            channelFanoutService.publish(channelId, messageDto);
+        }
+    }
+
     private void handleOfflineMessageDelivery(Long conversationId, MessageDto messageDto, Long senderId) {
         // Get offline members
         List<Long> offlineMembers = getOfflineMembers(conversationId, senderId);
@@ -219,17 +428,23 @@ public class MessageService {
     }
 
     private List<Long> getOnlineMembers(Long conversationId) {
-        return memberRepository.findByConversationId(conversationId).stream()
-                .map(member -> member.getUser().getId())
-                .filter(presenceService::isUserOnline)
-                .toList();
+        return filterByPresence(memberRepository.findByConversationId(conversationId), true);
     }
 
     private List<Long> getOfflineMembers(Long conversationId, Long excludeUserId) {
-        return memberRepository.findOtherMembers(conversationId, excludeUserId).stream()
-                .map(member -> member.getUser().getId())
-                .filter(userId -> !presenceService.isUserOnline(userId))
-                .toList();
+        return filterByPresence(memberRepository.findOtherMembers(conversationId, excludeUserId), false);
+    }
+
+    private List<Long> filterByPresence(List<ConversationMember> members, boolean online) {
+        long[] userIds = members.stream().mapToLong(member -> member.getUser().getId()).toArray();
+        boolean[] status = presenceService.areOnline(userIds);
+        List<Long> result = new ArrayList<>();
+        for (int i = 0; i < userIds.length; i++) {
+            if (status[i] == online) {
+                result.add(userIds[i]);
+            }
+        }
+        return result;
     }
 
     @Transactional
@@ -239,17 +454,38 @@ public class MessageService {
             throw new RuntimeException("Access denied");
         }
 
-        // Delete all messages in the conversation
-        messageRepository.deleteByConversationId(conversationId);
-
-        // Update conversation timestamp
+        // Hide everything sent so far, the rows are purged in chunks by ConversationPurgeService
+        conversationRepository.lockForClear(conversationId)
+                .orElseThrow(() -> new RuntimeException("Conversation not found"));
         Conversation conversation = conversationRepository.findById(conversationId)
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        conversation.setClearedBeforeId(messageRepository.findLastAllocatedId());
+        conversation.setClearedAt(LocalDateTime.now());
+        conversation.setPurgePending(true);
         conversation.setUpdatedAt(LocalDateTime.now());
         conversationRepository.save(conversation);
+        clearedAfterCommit(conversationId, userId);
+    }
+
+    private void clearedAfterCommit(Long conversationId, Long userId) {
+        // Evicting before the commit lets a reader seed the buffer again from the rows still visible
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cleared(conversationId, userId);
+                }
+            });
+        } else {
+            cleared(conversationId, userId);
+        }
+    }
+
+    private void cleared(Long conversationId, Long userId) {
+        recentMessageBuffer.evict(conversationId);
 
         // Notify all members that chat was cleared
-        messagingTemplate.convertAndSend("/topic/conversations/" + conversationId + "/cleared", 
+        messagingTemplate.convertAndSend("/topic/conversations/" + conversationId + "/cleared",
                 Map.of("clearedBy", userId, "timestamp", LocalDateTime.now()));
     }
 
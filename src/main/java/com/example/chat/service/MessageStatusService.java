@@ -1,14 +1,20 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.RecentMessageBuffer;
 import com.example.chat.dto.MessageStatusDto;
 import com.example.chat.model.Message;
 import com.example.chat.model.User;
 import com.example.chat.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.concurrent.TimeUnit;
 
@@ -24,19 +30,35 @@ public class MessageStatusService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
-    @Autowired(required = false)
-    private EventPublisher eventPublisher;
+    @Autowired
+    private DeliveryBackbone deliveryBackbone;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    @Qualifier("messagesDeliveredCounter")
+    private Counter messagesDeliveredCounter;
+
+    @Autowired
+    @Qualifier("messagesReadCounter")
+    private Counter messagesReadCounter;
+
+    @Autowired
+    @Qualifier("messageDeliveryTimer")
+    private Timer messageDeliveryTimer;
 
     private static final String MESSAGE_STATUS_KEY = "message_status:";
 
+    // sentAt is the send timestamp the recipient received with the message, echoed back with the acknowledgement
     @Transactional
-    public void markAsDelivered(Long messageId, Long userId, String username) {
-        updateMessageStatus(messageId, Message.Status.DELIVERED, userId, username);
+    public void markAsDelivered(Long messageId, Long userId, String username, Long sentAt) {
+        updateMessageStatus(messageId, Message.Status.DELIVERED, userId, username, sentAt);
     }
 
     @Transactional
     public void markAsRead(Long messageId, Long userId, String username) {
-        updateMessageStatus(messageId, Message.Status.READ, userId, username);
+        updateMessageStatus(messageId, Message.Status.READ, userId, username, null);
     }
 
     @Transactional
@@ -59,17 +81,31 @@ public class MessageStatusService {
                     
                     // Cache status
                     cacheMessageStatus(message.getId(), Message.Status.READ, userId);
+                    messagesReadCounter.increment();
                 });
+        recentMessageBuffer.markRead(conversationId, userId);
     }
 
-    private void updateMessageStatus(Long messageId, Message.Status status, Long userId, String username) {
+    private void updateMessageStatus(Long messageId, Message.Status status, Long userId, String username, Long sentAt) {
         Message message = messageRepository.findById(messageId).orElse(null);
         if (message == null || message.getSender().getId().equals(userId)) {
             return; // Don't update status for sender's own messages
         }
 
+        // Latency runs from the send timestamp to the first acknowledgement. Acks without one, from older clients
+        // or for imported history, are counted but not timed.
+        if (status == Message.Status.DELIVERED && message.getStatus() == Message.Status.SENT) {
+            messagesDeliveredCounter.increment();
+            if (sentAt != null) {
+                messageDeliveryTimer.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+            }
+        } else if (status == Message.Status.READ && message.getStatus() != Message.Status.READ) {
+            messagesReadCounter.increment();
+        }
+
         message.setStatus(status);
         messageRepository.save(message);
+        recentMessageBuffer.updateStatus(message.getConversation().getId(), messageId, status);
 
         MessageStatusDto statusDto = new MessageStatusDto(
             messageId, message.getConversation().getId(), status, userId, username
@@ -82,15 +118,27 @@ public class MessageStatusService {
             statusDto
         );
 
-        // Publish to Redis for multi-instance support
-        if (eventPublisher != null) {
-            eventPublisher.publishMessageToRedis(message.getConversation().getId(), statusDto);
-        }
+        // Multi-instance support
+        backboneAfterCommit(message.getConversation().getId(), statusDto);
 
         // Cache status in Redis
         cacheMessageStatus(messageId, status, userId);
     }
 
+    private void backboneAfterCommit(Long conversationId, MessageStatusDto statusDto) {
+        // Other nodes must not show a status that can still roll back
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliveryBackbone.publish(conversationId, statusDto);
+                }
+            });
+        } else {
+            deliveryBackbone.publish(conversationId, statusDto);
+        }
+    }
+
     private void cacheMessageStatus(Long messageId, Message.Status status, Long userId) {
         String key = MESSAGE_STATUS_KEY + messageId + ":" + userId;
         redisTemplate.opsForValue().set(key, status.name(), 24, TimeUnit.HOURS);
@@ -0,0 +1,291 @@
+package com.example.chat.service;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.Part;
+import jakarta.annotation.PostConstruct;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "minio", matchIfMissing = true)
+public class MinioObjectStorage implements ObjectStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(MinioObjectStorage.class);
+
+    @Value("${app.minio.endpoint}")
+    private String minioEndpoint;
+
+    @Value("${app.minio.access-key}")
+    private String accessKey;
+
+    @Value("${app.minio.secret-key}")
+    private String secretKey;
+
+    @Value("${app.minio.bucket-name}")
+    private String bucketName;
+
+    @Value("${app.minio.max-idle-connections:32}")
+    private int maxIdleConnections;
+
+    @Value("${app.minio.connect-timeout:5000}")
+    private long connectTimeout;
+
+    @Value("${app.minio.read-timeout:60000}")
+    private long readTimeout;
+
+    // One client and one HTTP connection pool for the whole application, MinioClient is thread safe
+    private MinioClient minioClient;
+    private MultipartClient multipartClient;
+    private OkHttpClient httpClient;
+    private volatile boolean bucketReady;
+
+    @PostConstruct
+    public void init() {
+        httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, 5, TimeUnit.MINUTES))
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .build();
+        minioClient = MinioClient.builder()
+                .endpoint(minioEndpoint)
+                .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
+                .build();
+        multipartClient = new MultipartClient(MinioAsyncClient.builder()
+                .endpoint(minioEndpoint)
+                .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
+                .build());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            ensureBucket();
+        } catch (Exception e) {
+            // Storage may come up after the application, the first upload checks again
+            logger.warn("MinIO bucket {} could not be verified at startup: {}", bucketName, e.getMessage());
+        }
+    }
+
+    private void ensureBucket() throws Exception {
+        if (bucketReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!bucketReady) {
+                if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+                    minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                    logger.info("Created MinIO bucket: {}", bucketName);
+                }
+                bucketReady = true;
+            }
+        }
+    }
+
+    @Override
+    public void put(String objectName, InputStream content, long size, String contentType) throws Exception {
+        ensureBucket();
+        minioClient.putObject(
+            PutObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .stream(content, size, -1)
+                .contentType(contentType)
+                .build()
+        );
+    }
+
+    @Override
+    public InputStream get(String objectName, long offset, long length) throws Exception {
+        GetObjectArgs.Builder args = GetObjectArgs.builder().bucket(bucketName).object(objectName);
+        if (length >= 0) {
+            args.offset(offset).length(length);
+        } else if (offset > 0) {
+            args.offset(offset);
+        }
+        return minioClient.getObject(args.build());
+    }
+
+    @Override
+    public StoredObject stat(String objectName) throws Exception {
+        StatObjectResponse stat;
+        try {
+            stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .extraHeaders(Map.of("x-amz-checksum-mode", "ENABLED"))
+                    .build());
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw e;
+        }
+        String checksum = stat.headers().get("x-amz-checksum-sha256");
+        return new StoredObject(stat.size(), stat.contentType(),
+                checksum != null ? HexFormat.of().formatHex(Base64.getDecoder().decode(checksum)) : null,
+                stat.etag(), stat.lastModified().toInstant());
+    }
+
+    @Override
+    public void remove(String objectName) throws Exception {
+        minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(objectName).build());
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName, String contentType) throws Exception {
+        ensureBucket();
+        return multipartClient.create(bucketName, objectName, contentType);
+    }
+
+    // The SDK buffers every part it sends in memory, a part is streamed to a presigned URL instead
+    @Override
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream content, long length)
+            throws Exception {
+        String url = minioClient.getPresignedObjectUrl(
+            GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(bucketName)
+                .object(objectName)
+                .extraQueryParams(Map.of("uploadId", uploadId, "partNumber", String.valueOf(partNumber)))
+                .expiry(1, TimeUnit.HOURS)
+                .build()
+        );
+
+        RequestBody body = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return null;
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            // The request stream can be read once, the call must not be retried with it
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                Source source = Okio.source(content);
+                sink.writeAll(source);
+            }
+        };
+
+        try (Response response = httpClient.newCall(new Request.Builder().url(url).put(body).build()).execute()) {
+            String etag = response.header("ETag");
+            if (!response.isSuccessful() || etag == null) {
+                throw new RuntimeException("Error uploading part " + partNumber + " of " + objectName + ": HTTP " + response.code());
+            }
+            return etag;
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String objectName, String uploadId, List<String> etags) throws Exception {
+        Part[] parts = new Part[etags.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new Part(i + 1, etags.get(i));
+        }
+        multipartClient.complete(bucketName, objectName, uploadId, parts);
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws Exception {
+        multipartClient.abort(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public String presignGet(String objectName, int expirySeconds) throws Exception {
+        // Presigning is a local computation, it does not call the server
+        return minioClient.getPresignedObjectUrl(
+            GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket(bucketName)
+                .object(objectName)
+                .expiry(expirySeconds, TimeUnit.SECONDS)
+                .build()
+        );
+    }
+
+    // The client must send the signed headers with its PUT, storage rejects a body whose checksum differs
+    @Override
+    public PresignedUpload presignPut(String objectName, String contentType, String sha256, int expirySeconds)
+            throws Exception {
+        ensureBucket();
+        Map<String, String> headers = Map.of(
+                "Content-Type", contentType,
+                "x-amz-checksum-sha256", Base64.getEncoder().encodeToString(HexFormat.of().parseHex(sha256)));
+        String url = minioClient.getPresignedObjectUrl(
+            GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(bucketName)
+                .object(objectName)
+                .extraHeaders(headers)
+                .expiry(expirySeconds, TimeUnit.SECONDS)
+                .build()
+        );
+        return new PresignedUpload(url, headers);
+    }
+
+    // The low-level multipart calls are protected in the SDK
+    private static class MultipartClient extends MinioAsyncClient {
+
+        MultipartClient(MinioAsyncClient client) {
+            super(client);
+        }
+
+        String create(String bucket, String objectName, String contentType) throws Exception {
+            return createMultipartUploadAsync(bucket, null, objectName,
+                    ImmutableMultimap.of("Content-Type", contentType), ImmutableMultimap.of()).get().result().uploadId();
+        }
+
+        void complete(String bucket, String objectName, String uploadId, Part[] parts) throws Exception {
+            completeMultipartUploadAsync(bucket, null, objectName, uploadId, parts, ImmutableMultimap.of(), ImmutableMultimap.of()).get();
+        }
+
+        void abort(String bucket, String objectName, String uploadId) throws Exception {
+            abortMultipartUploadAsync(bucket, null, objectName, uploadId, ImmutableMultimap.of(), ImmutableMultimap.of()).get();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chat.service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Where attachment bytes live, selected with app.storage.type
+public interface ObjectStorage {
+
+    void put(String objectName, InputStream content, long size, String contentType) throws Exception;
+
+    // A negative length reads to the end of the object
+    InputStream get(String objectName, long offset, long length) throws Exception;
+
+    // Null when the object does not exist
+    StoredObject stat(String objectName) throws Exception;
+
+    void remove(String objectName) throws Exception;
+
+    String createMultipartUpload(String objectName, String contentType) throws Exception;
+
+    String uploadPart(String objectName, String uploadId, int partNumber, InputStream content, long length) throws Exception;
+
+    void completeMultipartUpload(String objectName, String uploadId, List<String> etags) throws Exception;
+
+    void abortMultipartUpload(String objectName, String uploadId) throws Exception;
+
+    // Null when clients cannot read the storage directly, the application then serves the object
+    String presignGet(String objectName, int expirySeconds) throws Exception;
+
+    PresignedUpload presignPut(String objectName, String contentType, String sha256, int expirySeconds) throws Exception;
+
+    default void transferTo(String objectName, long offset, long length, WritableByteChannel target) throws Exception {
+        try (InputStream inputStream = get(objectName, offset, length)) {
+            OutputStream outputStream = Channels.newOutputStream(target);
+            inputStream.transferTo(outputStream);
+            outputStream.flush();
+        }
+    }
+
+    // Backends keeping objects as local files expose them so the container can send them itself
+    default Path localPath(String objectName) {
+        return null;
+    }
+
+    // sha256 is only known when the writer sent a checksum that storage verified
+    record StoredObject(long size, String contentType, String sha256, String etag, Instant lastModified) {}
+
+    record PresignedUpload(String url, Map<String, String> headers) {}
+}
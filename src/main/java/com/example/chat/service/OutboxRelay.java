@@ -0,0 +1,154 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.events.MembershipEvent;
+import com.example.chat.dto.events.MessageEvent;
+import com.example.chat.dto.events.PresenceEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@ConditionalOnProperty(name = "app.kafka.events.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    // Advisory lock so a single relay drains the outbox. Ids are taken at insert time, not at commit, so events
+    // are relayed roughly but not strictly in commit order.
+    private static final long RELAY_LOCK_ID = 0x6f7574626f78L;
+
+    private static final Map<String, Class<?>> EVENT_TYPES = Map.of(
+            MessageEvent.class.getSimpleName(), MessageEvent.class,
+            PresenceEvent.class.getSimpleName(), PresenceEvent.class,
+            MembershipEvent.class.getSimpleName(), MembershipEvent.class
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.outbox.send-timeout:30000}")
+    private long sendTimeout;
+
+    // Age of the oldest event still waiting in the outbox, measured on every relay pass
+    private final AtomicLong lagMillis = new AtomicLong();
+    private Counter relayed;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("outbox.relay.lag", lagMillis, AtomicLong::get)
+                .description("Age of the oldest event waiting in the outbox")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        relayed = Counter.builder("outbox.relay.events")
+                .description("Events relayed from the outbox to Kafka")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval:200}")
+    public void relay() {
+        try {
+            // Keep draining while full batches come back
+            while (relayBatch() == batchSize) {
+                // next batch
+            }
+        } catch (Exception e) {
+            logger.warn("Error relaying outbox events to Kafka, retrying on next pass", e);
+        } finally {
+            updateLag();
+        }
+    }
+
+    private int relayBatch() {
+        Integer sent = new TransactionTemplate(transactionManager).execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, RELAY_LOCK_ID);
+            if (!Boolean.TRUE.equals(locked)) {
+                return 0;
+            }
+
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, topic, event_key, event_type, payload FROM event_outbox ORDER BY id LIMIT ?", batchSize);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                sends.add(kafkaTemplate.send((String) row.get("topic"), (String) row.get("event_key"), decode(row)));
+            }
+            kafkaTemplate.flush();
+
+            // Rows are removed only once the broker acknowledged the whole batch, a failure resends it
+            try {
+                CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0])).get(sendTimeout, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                throw new RuntimeException("Error sending outbox batch to Kafka", e);
+            }
+
+            // Exactly the rows sent: a transaction holding a lower id may have committed since the SELECT
+            Long[] ids = rows.stream().map(row -> ((Number) row.get("id")).longValue()).toArray(Long[]::new);
+            jdbcTemplate.update("DELETE FROM event_outbox WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+            relayed.increment(rows.size());
+            return rows.size();
+        });
+        return sent != null ? sent : 0;
+    }
+
+    private Object decode(Map<String, Object> row) {
+        Class<?> type = EVENT_TYPES.get((String) row.get("event_type"));
+        if (type == null) {
+            throw new RuntimeException("Unknown outbox event type " + row.get("event_type"));
+        }
+        try {
+            return objectMapper.readValue((String) row.get("payload"), type);
+        } catch (Exception e) {
+            throw new RuntimeException("Error decoding outbox event " + row.get("id"), e);
+        }
+    }
+
+    private void updateLag() {
+        try {
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM event_outbox", Timestamp.class);
+            lagMillis.set(oldest != null ? Math.max(0, System.currentTimeMillis() - oldest.getTime()) : 0);
+        } catch (Exception e) {
+            logger.debug("Error measuring outbox lag", e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.chat.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.BitFieldSubCommands.BitFieldGet;
+import org.springframework.data.redis.connection.BitFieldSubCommands.BitFieldSubCommand;
+import org.springframework.data.redis.connection.BitFieldSubCommands.BitFieldType;
+import org.springframework.data.redis.connection.BitFieldSubCommands.Offset;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@Component
+public class PresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private static final String ONLINE_USERS_KEY = "online_users";
+    private static final String USER_SESSIONS_KEY = "presence:user:";
+    private static final String NODE_SESSIONS_KEY = "presence:node:";
+    private static final String NODES_KEY = "presence:nodes";
+    private static final String ONLINE_BITMAP_KEY = "presence:online_bitmap";
+
+    // Returns 1 when this is the user's first session across all nodes
+    private static final RedisScript<Long> ADD_SESSION_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('HINCRBY', KEYS[1], ARGV[1], 1) " +
+        "redis.call('HINCRBY', KEYS[2], ARGV[2], 1) " +
+        "redis.call('SETBIT', KEYS[4], ARGV[2], 1) " +
+        "return redis.call('SADD', KEYS[3], ARGV[2])",
+        Long.class);
+
+    // Returns 1 when the user's last session across all nodes has closed
+    private static final RedisScript<Long> REMOVE_SESSION_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('HINCRBY', KEYS[1], ARGV[1], -1) <= 0 then redis.call('HDEL', KEYS[1], ARGV[1]) end " +
+        "if redis.call('HINCRBY', KEYS[2], ARGV[2], -1) <= 0 then redis.call('HDEL', KEYS[2], ARGV[2]) end " +
+        "if redis.call('HLEN', KEYS[1]) == 0 then " +
+        "  redis.call('SETBIT', KEYS[4], ARGV[2], 0) " +
+        "  return redis.call('SREM', KEYS[3], ARGV[2]) " +
+        "end " +
+        "return 0",
+        Long.class);
+
+    // Drops every session held by a node and returns the users left without any session
+    private static final String REAP_SESSIONS =
+        "local offline = {} " +
+        "for _, u in ipairs(redis.call('HKEYS', KEYS[1])) do " +
+        "  local k = ARGV[2] .. u " +
+        "  redis.call('HDEL', k, ARGV[1]) " +
+        "  if redis.call('HLEN', k) == 0 and redis.call('SREM', KEYS[2], u) == 1 then " +
+        "    redis.call('SETBIT', KEYS[3], u, 0) " +
+        "    table.insert(offline, u) " +
+        "  end " +
+        "end " +
+        "redis.call('DEL', KEYS[1]) " +
+        "return offline";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REAP_NODE_SCRIPT = new DefaultRedisScript<>(REAP_SESSIONS, List.class);
+
+    // Claims and reaps in one step: a node that heartbeated since it was found expired is left alone, and a
+    // failed reap leaves the node in the set to be claimed again on the next heartbeat
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REAP_EXPIRED_NODE_SCRIPT = new DefaultRedisScript<>(
+        "local score = redis.call('ZSCORE', KEYS[4], ARGV[1]) " +
+        "if not score or tonumber(score) > tonumber(ARGV[3]) then return {} end " +
+        "redis.call('ZREM', KEYS[4], ARGV[1]) " +
+        REAP_SESSIONS,
+        List.class);
+
+    // Sets this node's session counts again after it was reaped, returns the users that were offline
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESTORE_SESSIONS_SCRIPT = new DefaultRedisScript<>(
+        "local online = {} " +
+        "for i = 3, #ARGV, 2 do " +
+        "  local u = ARGV[i] " +
+        "  redis.call('HSET', KEYS[1], u, ARGV[i + 1]) " +
+        "  redis.call('HSET', ARGV[2] .. u, ARGV[1], ARGV[i + 1]) " +
+        "  redis.call('SETBIT', KEYS[3], u, 1) " +
+        "  if redis.call('SADD', KEYS[2], u) == 1 then table.insert(online, u) end " +
+        "end " +
+        "return online",
+        List.class);
+
+    private static final int RESTORE_BATCH_SIZE = 1000;
+
+    // Builds the online bitmap from the online set when it does not exist yet
+    private static final RedisScript<Long> BACKFILL_BITMAP_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end " +
+        "local users = redis.call('SMEMBERS', KEYS[1]) " +
+        "for _, u in ipairs(users) do redis.call('SETBIT', KEYS[2], u, 1) end " +
+        "return #users",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.presence.node-id:}")
+    private String configuredNodeId;
+
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId != null && !configuredNodeId.isBlank()
+                ? configuredNodeId
+                : UUID.randomUUID().toString();
+        logger.info("Presence node id: {}", nodeId);
+
+        try {
+            Long backfilled = stringRedisTemplate.execute(BACKFILL_BITMAP_SCRIPT,
+                    List.of(ONLINE_USERS_KEY, ONLINE_BITMAP_KEY));
+            if (backfilled != null && backfilled > 0) {
+                logger.info("Backfilled online bitmap with {} users", backfilled);
+            }
+        } catch (Exception e) {
+            logger.warn("Error backfilling online bitmap", e);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean addSession(Long userId) {
+        String user = userId.toString();
+        Long first = stringRedisTemplate.execute(ADD_SESSION_SCRIPT,
+                List.of(USER_SESSIONS_KEY + user, NODE_SESSIONS_KEY + getNodeId(), ONLINE_USERS_KEY, ONLINE_BITMAP_KEY),
+                getNodeId(), user);
+        return first != null && first == 1L;
+    }
+
+    public boolean removeSession(Long userId) {
+        String user = userId.toString();
+        Long last = stringRedisTemplate.execute(REMOVE_SESSION_SCRIPT,
+                List.of(USER_SESSIONS_KEY + user, NODE_SESSIONS_KEY + getNodeId(), ONLINE_USERS_KEY, ONLINE_BITMAP_KEY),
+                getNodeId(), user);
+        return last != null && last == 1L;
+    }
+
+    // Returns true when this node was not registered, at startup or after other nodes reaped it
+    public boolean heartbeat() {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForZSet().add(NODES_KEY, getNodeId(), System.currentTimeMillis()));
+    }
+
+    public List<String> findExpiredNodes(long timeoutMillis) {
+        Set<String> expired = stringRedisTemplate.opsForZSet()
+                .rangeByScore(NODES_KEY, 0, System.currentTimeMillis() - timeoutMillis);
+        List<String> nodes = new ArrayList<>();
+        if (expired != null) {
+            expired.stream().filter(node -> !node.equals(getNodeId())).forEach(nodes::add);
+        }
+        return nodes;
+    }
+
+    // Only the node whose script removes the entry reaps it, the others get an empty list
+    public List<Long> reapExpiredNode(String node, long timeoutMillis) {
+        List<Long> userIds = userIds(stringRedisTemplate.execute(REAP_EXPIRED_NODE_SCRIPT,
+                List.of(NODE_SESSIONS_KEY + node, ONLINE_USERS_KEY, ONLINE_BITMAP_KEY, NODES_KEY),
+                node, USER_SESSIONS_KEY, String.valueOf(System.currentTimeMillis() - timeoutMillis)));
+        if (!userIds.isEmpty()) {
+            logger.info("Reaped presence sessions of node {}: {} users went offline", node, userIds.size());
+        }
+        return userIds;
+    }
+
+    public List<Long> restoreSessions(Map<Long, Integer> sessionCounts) {
+        List<Long> online = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : sessionCounts.entrySet()) {
+            if (args.isEmpty()) {
+                args.add(getNodeId());
+                args.add(USER_SESSIONS_KEY);
+            }
+            args.add(entry.getKey().toString());
+            args.add(entry.getValue().toString());
+            if (args.size() >= 2 + RESTORE_BATCH_SIZE * 2) {
+                online.addAll(restoreBatch(args));
+                args.clear();
+            }
+        }
+        if (!args.isEmpty()) {
+            online.addAll(restoreBatch(args));
+        }
+        logger.info("Restored presence sessions of {} users, {} were offline", sessionCounts.size(), online.size());
+        return online;
+    }
+
+    private List<Long> restoreBatch(List<String> args) {
+        return userIds(stringRedisTemplate.execute(RESTORE_SESSIONS_SCRIPT,
+                List.of(NODE_SESSIONS_KEY + getNodeId(), ONLINE_USERS_KEY, ONLINE_BITMAP_KEY), args.toArray()));
+    }
+
+    public List<Long> deregisterNode() {
+        stringRedisTemplate.opsForZSet().remove(NODES_KEY, getNodeId());
+        return userIds(stringRedisTemplate.execute(REAP_NODE_SCRIPT,
+                List.of(NODE_SESSIONS_KEY + getNodeId(), ONLINE_USERS_KEY, ONLINE_BITMAP_KEY),
+                getNodeId(), USER_SESSIONS_KEY));
+    }
+
+    private List<Long> userIds(List<?> values) {
+        List<Long> userIds = new ArrayList<>();
+        if (values != null) {
+            for (Object userId : values) {
+                userIds.add(Long.valueOf(userId.toString()));
+            }
+        }
+        return userIds;
+    }
+
+    public boolean[] areOnline(long[] userIds) {
+        boolean[] online = new boolean[userIds.length];
+        if (userIds.length == 0) {
+            return online;
+        }
+
+        // One BITFIELD call reads the bit of every requested user
+        BitFieldSubCommand[] gets = new BitFieldSubCommand[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            gets[i] = BitFieldGet.create(BitFieldType.unsigned(1), Offset.offset(userIds[i]));
+        }
+        List<Long> bits = stringRedisTemplate.opsForValue()
+                .bitField(ONLINE_BITMAP_KEY, BitFieldSubCommands.create(gets));
+        if (bits != null) {
+            for (int i = 0; i < online.length && i < bits.size(); i++) {
+                online[i] = bits.get(i) != null && bits.get(i) == 1L;
+            }
+        }
+        return online;
+    }
+
+    public Set<String> getOnlineUsers() {
+        return stringRedisTemplate.opsForSet().members(ONLINE_USERS_KEY);
+    }
+}
@@ -3,99 +3,241 @@ package com.example.chat.service;
 import com.example.chat.dto.events.PresenceEvent;
 import com.example.chat.model.User;
 import com.example.chat.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
 
 @Service
 public class PresenceService {
 
     private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
-    private static final String ONLINE_USERS_KEY = "online_users";
     private static final String USER_LAST_SEEN_KEY = "user_last_seen:";
-    private static final long PRESENCE_TIMEOUT = 300; // 5 minutes
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private LastSeenService lastSeenService;
+
     @Autowired(required = false)
     private EventPublisher eventPublisher;
 
     @Autowired
     private MessageService messageService;
 
-    public void setUserOnline(Long userId, String username) {
+    @Value("${app.presence.node-timeout:90000}")
+    private long nodeTimeout;
+
+    // WebSocket session id -> user for the sessions held by this node
+    private final Map<String, LocalSession> localSessions = new ConcurrentHashMap<>();
+
+    // Session changes take the read lock, restoring the node's sessions after a reap takes the write lock
+    private final ReadWriteLock sessionLock = new ReentrantReadWriteLock();
+
+    public void sessionConnected(String sessionId, Long userId, String username) {
+        try {
+            if (addLocalSession(sessionId, new LocalSession(userId, username))) {
+                setUserOnline(userId, username);
+            } else {
+                logger.debug("User {} opened another session", username);
+            }
+        } catch (Exception e) {
+            logger.error("Error registering session {} for user {}", sessionId, username, e);
+        }
+    }
+
+    public void sessionDisconnected(String sessionId, String username) {
+        try {
+            Long userId = removeLocalSession(sessionId);
+            if (userId != null) {
+                setUserOffline(userId, username);
+            }
+        } catch (Exception e) {
+            logger.error("Error removing session {} for user {}", sessionId, username, e);
+        }
+    }
+
+    // Returns true when this is the user's first session across all nodes
+    private boolean addLocalSession(String sessionId, LocalSession session) {
+        sessionLock.readLock().lock();
+        try {
+            return localSessions.putIfAbsent(sessionId, session) == null && presenceRegistry.addSession(session.userId());
+        } finally {
+            sessionLock.readLock().unlock();
+        }
+    }
+
+    // Returns the user when this was their last session across all nodes
+    private Long removeLocalSession(String sessionId) {
+        sessionLock.readLock().lock();
+        try {
+            // Disconnect events may be raised more than once for the same session
+            LocalSession session = localSessions.remove(sessionId);
+            return session != null && presenceRegistry.removeSession(session.userId()) ? session.userId() : null;
+        } finally {
+            sessionLock.readLock().unlock();
+        }
+    }
+
+    private void setUserOnline(Long userId, String username) {
         try {
-            // Add to online users set
-            redisTemplate.opsForSet().add(ONLINE_USERS_KEY, userId.toString());
-            
-            // Set expiration for auto-cleanup
-            redisTemplate.expire(ONLINE_USERS_KEY, PRESENCE_TIMEOUT, TimeUnit.SECONDS);
-            
             // Update last seen
             redisTemplate.opsForValue().set(USER_LAST_SEEN_KEY + userId, LocalDateTime.now().toString());
-            
+
             // Publish presence event
             if (eventPublisher != null) {
                 eventPublisher.publishPresenceToRedis(userId, username, true);
                 eventPublisher.publishPresenceEvent(new PresenceEvent(PresenceEvent.Type.USER_ONLINE, userId, username, true));
             }
-            
+
             // Deliver offline messages
             messageService.deliverOfflineMessages(userId);
-            
+
             logger.debug("User {} is now online", username);
         } catch (Exception e) {
             logger.error("Error setting user online", e);
         }
     }
 
-    public void setUserOffline(Long userId, String username) {
+    private void setUserOffline(Long userId, String username) {
         try {
-            // Remove from online users set
-            redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, userId.toString());
-            
-            // Update last seen in database
-            User user = userRepository.findById(userId).orElse(null);
-            if (user != null) {
-                user.setLastSeen(LocalDateTime.now());
-                userRepository.save(user);
-            }
-            
+            // Update last seen, persisted to the database by the write-behind flush
+            LocalDateTime now = LocalDateTime.now();
+            redisTemplate.opsForValue().set(USER_LAST_SEEN_KEY + userId, now.toString());
+            lastSeenService.recordLastSeen(userId, now);
+
             // Publish presence event
             if (eventPublisher != null) {
                 eventPublisher.publishPresenceToRedis(userId, username, false);
                 eventPublisher.publishPresenceEvent(new PresenceEvent(PresenceEvent.Type.USER_OFFLINE, userId, username, false));
             }
-            
+
             logger.debug("User {} is now offline", username);
         } catch (Exception e) {
             logger.error("Error setting user offline", e);
         }
     }
 
-    @org.springframework.cache.annotation.Cacheable(value = "onlineUsers", key = "#userId")
+    @Scheduled(fixedDelayString = "${app.presence.heartbeat-interval:30000}")
+    public void heartbeatNode() {
+        try {
+            restoreIfReaped();
+        } catch (Exception e) {
+            logger.error("Error processing presence node heartbeat", e);
+        }
+
+        List<String> expiredNodes;
+        try {
+            expiredNodes = presenceRegistry.findExpiredNodes(nodeTimeout);
+        } catch (Exception e) {
+            logger.error("Error finding expired presence nodes", e);
+            return;
+        }
+
+        // Each node is claimed and reaped atomically, a failure leaves it to be reaped on a later heartbeat
+        for (String node : expiredNodes) {
+            try {
+                List<Long> offline = presenceRegistry.reapExpiredNode(node, nodeTimeout);
+                if (!offline.isEmpty()) {
+                    logger.warn("Presence heartbeat of node {} lapsed, reaped its sessions", node);
+                    setUsersOffline(offline);
+                }
+            } catch (Exception e) {
+                logger.error("Error reaping presence node {}", node, e);
+            }
+        }
+    }
+
+    // A node that missed heartbeats for longer than the timeout was reaped by the others while its sessions
+    // stayed open, the next heartbeat registers them again
+    private void restoreIfReaped() {
+        List<Long> online;
+        Map<Long, String> usernames = new HashMap<>();
+        sessionLock.writeLock().lock();
+        try {
+            if (!presenceRegistry.heartbeat() || localSessions.isEmpty()) {
+                return;
+            }
+            Map<Long, Integer> sessionCounts = new HashMap<>();
+            for (LocalSession session : localSessions.values()) {
+                sessionCounts.merge(session.userId(), 1, Integer::sum);
+                usernames.put(session.userId(), session.username());
+            }
+            online = presenceRegistry.restoreSessions(sessionCounts);
+        } finally {
+            sessionLock.writeLock().unlock();
+        }
+        online.forEach(userId -> setUserOnline(userId, usernames.get(userId)));
+    }
+
+    // User id -> username of the users with at least one session on this node, ordered by user id
+    public SortedMap<Long, String> getLocalUsers() {
+        SortedMap<Long, String> users = new TreeMap<>();
+        localSessions.values().forEach(session -> users.put(session.userId(), session.username()));
+        return users;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            localSessions.clear();
+            setUsersOffline(presenceRegistry.deregisterNode());
+        } catch (Exception e) {
+            logger.error("Error deregistering presence node", e);
+        }
+    }
+
+    private void setUsersOffline(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> usernames = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, User::getUsername));
+        for (Long userId : userIds) {
+            setUserOffline(userId, usernames.get(userId));
+        }
+    }
+
     public boolean isUserOnline(Long userId) {
+        return areOnline(new long[] { userId })[0];
+    }
+
+    public boolean[] areOnline(long[] userIds) {
         try {
-            return redisTemplate.opsForSet().isMember(ONLINE_USERS_KEY, userId.toString());
+            return presenceRegistry.areOnline(userIds);
         } catch (Exception e) {
-            logger.error("Error checking user online status", e);
-            return false;
+            logger.error("Error checking online status of {} users", userIds.length, e);
+            return new boolean[userIds.length];
         }
     }
 
-    public Set<Object> getOnlineUsers() {
+    public Set<String> getOnlineUsers() {
         try {
-            return redisTemplate.opsForSet().members(ONLINE_USERS_KEY);
+            return presenceRegistry.getOnlineUsers();
         } catch (Exception e) {
             logger.error("Error getting online users", e);
             return Set.of();
@@ -105,9 +247,8 @@ public class PresenceService {
     public void heartbeat(Long userId) {
         try {
             if (isUserOnline(userId)) {
-                // Refresh presence timeout
-                redisTemplate.opsForSet().add(ONLINE_USERS_KEY, userId.toString());
-                redisTemplate.expire(ONLINE_USERS_KEY, PRESENCE_TIMEOUT, TimeUnit.SECONDS);
+                // Sessions are kept alive by node heartbeats, only refresh last seen here
+                redisTemplate.opsForValue().set(USER_LAST_SEEN_KEY + userId, LocalDateTime.now().toString());
             }
         } catch (Exception e) {
             logger.error("Error processing heartbeat", e);
@@ -120,7 +261,12 @@ public class PresenceService {
             if (lastSeenStr != null) {
                 return LocalDateTime.parse(lastSeenStr);
             }
-            
+
+            LocalDateTime pendingLastSeen = lastSeenService.getPendingLastSeen(userId);
+            if (pendingLastSeen != null) {
+                return pendingLastSeen;
+            }
+
             // Fallback to database
             User user = userRepository.findById(userId).orElse(null);
             return user != null ? user.getLastSeen() : null;
@@ -129,4 +275,6 @@ public class PresenceService {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    private record LocalSession(Long userId, String username) {}
+}
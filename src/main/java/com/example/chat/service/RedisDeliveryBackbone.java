@@ -0,0 +1,45 @@
+package com.example.chat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Fire-and-forget pub/sub: lowest latency, but a node that is disconnected misses what was sent meanwhile
+@Service
+@ConditionalOnProperty(name = "app.delivery.backbone", havingValue = "redis", matchIfMissing = true)
+public class RedisDeliveryBackbone implements DeliveryBackbone {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisDeliveryBackbone.class);
+
+    private static final String CHANNEL = "chat.messages";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void publish(Long conversationId, Object messageData) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("conversationId", conversationId);
+            payload.put("messageData", messageData);
+
+            stringRedisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(payload));
+            logger.debug("Published message to Redis for conversation: {}", conversationId);
+        } catch (JsonProcessingException e) {
+            logger.error("Error publishing message to Redis", e);
+        } catch (Exception e) {
+            logger.warn("Error publishing message to Redis for conversation: {}", conversationId, e);
+        }
+    }
+}
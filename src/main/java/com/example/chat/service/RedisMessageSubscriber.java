@@ -1,6 +1,11 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.RecentMessageBuffer;
+import com.example.chat.dto.MessageDto;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +15,7 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class RedisMessageSubscriber implements MessageListener {
@@ -22,6 +28,19 @@ public class RedisMessageSubscriber implements MessageListener {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer dispatch;
+
+    @PostConstruct
+    public void init() {
+        dispatch = MessageService.dispatchTimer(meterRegistry, "backbone");
+    }
+
     @Override
     public void onMessage(Message message, byte[] pattern) {
         try {
@@ -50,9 +69,20 @@ public class RedisMessageSubscriber implements MessageListener {
         }
     }
 
-    private void handleChatMessage(Map<String, Object> messageData) {
+    // Local delivery of a conversation update, shared by every delivery backbone
+    public void handleChatMessage(Map<String, Object> messageData) {
         Long conversationId = Long.valueOf(messageData.get("conversationId").toString());
         messagingTemplate.convertAndSend("/topic/conversations/" + conversationId, messageData);
+
+        // Status updates share the channel, only new messages carry a sender
+        Object payload = messageData.get("messageData");
+        if (payload instanceof Map<?, ?> message && message.containsKey("id") && message.containsKey("sender")) {
+            recentMessageBuffer.append(conversationId, objectMapper.convertValue(message, MessageDto.class));
+            // Measured against the sending node's clock, skew between nodes shows up in this latency
+            if (message.get("sentAt") instanceof Number sentAt) {
+                dispatch.record(Math.max(0, System.currentTimeMillis() - sentAt.longValue()), TimeUnit.MILLISECONDS);
+            }
+        }
     }
 
     private void handlePresenceUpdate(Map<String, Object> presenceData) {
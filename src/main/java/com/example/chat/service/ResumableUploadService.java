@@ -0,0 +1,256 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.StoredFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Large files are sent as numbered chunks, each streamed straight into one part of a multipart upload in
+// object storage. The session and its received parts live in the database, so a client can resume on any node.
+@Service
+public class ResumableUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private static final String STATUS_UPLOADING = "UPLOADING";
+    private static final String STATUS_COMPLETING = "COMPLETING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_FAILED = "FAILED";
+
+    // Storage rejects parts under 5 MB, except the last one, and uploads of more than 10000 parts
+    private static final long MIN_CHUNK_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_PARTS = 10000;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.files.uploads.chunk-size:8388608}")
+    private long chunkSize;
+
+    @Value("${app.files.uploads.max-size:5368709120}")
+    private long maxSize;
+
+    @Value("${app.files.uploads.ttl-hours:24}")
+    private long ttlHours;
+
+    private Timer chunkTimer;
+
+    @PostConstruct
+    public void init() {
+        chunkTimer = Timer.builder("files.upload.chunk")
+                .description("Time to stream one chunk of a resumable upload to object storage")
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> initiate(Long userId, String originalFilename, String contentType, long size) throws Exception {
+        fileService.validateName(originalFilename, contentType);
+        if (size <= 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File size exceeds limit of " + (maxSize / 1024 / 1024) + "MB");
+        }
+        fileService.checkQuota(userId, size);
+
+        long partSize = Math.max(Math.max(chunkSize, MIN_CHUNK_SIZE), (size + MAX_PARTS - 1) / MAX_PARTS);
+        String uploadId = UUID.randomUUID().toString();
+        String objectName = "uploads/" + userId + "/" + fileService.generateFileName(originalFilename);
+        String storageUploadId = fileService.createMultipartUpload(objectName, contentType);
+
+        jdbcTemplate.update(
+                "INSERT INTO upload_sessions (id, user_id, object_name, storage_upload_id, original_filename, " +
+                "content_type, total_size, chunk_size) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                uploadId, userId, objectName, storageUploadId, originalFilename, contentType, size, partSize);
+        logger.info("Resumable upload {} started by user {}: {} bytes in {} chunks", uploadId, userId, size,
+                partCount(size, partSize));
+
+        Map<String, Object> upload = new HashMap<>();
+        upload.put("uploadId", uploadId);
+        upload.put("status", STATUS_UPLOADING);
+        upload.put("totalSize", size);
+        upload.put("chunkSize", partSize);
+        upload.put("totalChunks", partCount(size, partSize));
+        upload.put("receivedChunks", List.of());
+        upload.put("receivedBytes", 0L);
+        return upload;
+    }
+
+    public Map<String, Object> uploadChunk(Long userId, String uploadId, int partNumber, long offset, long length,
+                                           InputStream content) throws Exception {
+        Map<String, Object> session = findSession(uploadId, userId);
+        if (!STATUS_UPLOADING.equals(session.get("status"))) {
+            throw new IllegalArgumentException("Upload is no longer accepting chunks");
+        }
+
+        long totalSize = ((Number) session.get("total_size")).longValue();
+        long partSize = ((Number) session.get("chunk_size")).longValue();
+        if (partNumber < 1 || partNumber > partCount(totalSize, partSize)) {
+            throw new IllegalArgumentException("Invalid chunk number: " + partNumber);
+        }
+        long expectedOffset = (partNumber - 1) * partSize;
+        if (offset != expectedOffset) {
+            throw new IllegalArgumentException("Chunk " + partNumber + " starts at offset " + expectedOffset);
+        }
+        long expectedLength = Math.min(partSize, totalSize - expectedOffset);
+        if (length != expectedLength) {
+            throw new IllegalArgumentException("Chunk " + partNumber + " must be " + expectedLength + " bytes");
+        }
+
+        long start = System.nanoTime();
+        String etag = fileService.uploadPart((String) session.get("object_name"), (String) session.get("storage_upload_id"),
+                partNumber, content, length);
+        chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        // A chunk sent again replaces the earlier copy, as storage does for a part number
+        jdbcTemplate.update(
+                "INSERT INTO upload_parts (upload_id, part_number, etag, part_size) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (upload_id, part_number) DO UPDATE SET etag = EXCLUDED.etag, uploaded_at = CURRENT_TIMESTAMP",
+                uploadId, partNumber, etag, length);
+        jdbcTemplate.update("UPDATE upload_sessions SET updated_at = CURRENT_TIMESTAMP WHERE id = ?", uploadId);
+
+        return Map.of("uploadId", uploadId, "chunk", partNumber, "size", length);
+    }
+
+    public Map<String, Object> getStatus(Long userId, String uploadId) {
+        Map<String, Object> session = findSession(uploadId, userId);
+        long totalSize = ((Number) session.get("total_size")).longValue();
+        long partSize = ((Number) session.get("chunk_size")).longValue();
+        List<Map<String, Object>> parts = jdbcTemplate.queryForList(
+                "SELECT part_number, part_size FROM upload_parts WHERE upload_id = ? ORDER BY part_number", uploadId);
+
+        Map<String, Object> upload = new HashMap<>();
+        upload.put("uploadId", uploadId);
+        upload.put("status", session.get("status"));
+        upload.put("totalSize", totalSize);
+        upload.put("chunkSize", partSize);
+        upload.put("totalChunks", partCount(totalSize, partSize));
+        upload.put("receivedChunks", parts.stream().map(part -> part.get("part_number")).toList());
+        upload.put("receivedBytes", parts.stream().mapToLong(part -> ((Number) part.get("part_size")).longValue()).sum());
+        if (session.get("file_id") != null) {
+            Long fileId = ((Number) session.get("file_id")).longValue();
+            upload.put("id", fileId);
+            upload.put("url", FileService.FILE_PATH + fileId);
+        }
+        return upload;
+    }
+
+    public StoredFile complete(Long userId, String uploadId) throws Exception {
+        // Claiming the session keeps a retried or concurrent request from completing it twice
+        List<Map<String, Object>> claimed = jdbcTemplate.queryForList(
+                "UPDATE upload_sessions SET status = ?, updated_at = CURRENT_TIMESTAMP " +
+                "WHERE id = ? AND user_id = ? AND status = ? " +
+                "RETURNING object_name, storage_upload_id, original_filename, content_type, total_size, chunk_size",
+                STATUS_COMPLETING, uploadId, userId, STATUS_UPLOADING);
+        if (claimed.isEmpty()) {
+            Map<String, Object> session = findSession(uploadId, userId);
+            // A completed session answers a retried completion with the file it produced
+            if (!STATUS_COMPLETED.equals(session.get("status")) || session.get("file_id") == null) {
+                throw new IllegalArgumentException("Upload is " + ((String) session.get("status")).toLowerCase());
+            }
+            return fileService.getStoredFile(((Number) session.get("file_id")).longValue());
+        }
+
+        Map<String, Object> session = claimed.get(0);
+        String objectName = (String) session.get("object_name");
+        long totalSize = ((Number) session.get("total_size")).longValue();
+        long partSize = ((Number) session.get("chunk_size")).longValue();
+        try {
+            List<Map<String, Object>> parts = jdbcTemplate.queryForList(
+                    "SELECT etag FROM upload_parts WHERE upload_id = ? ORDER BY part_number", uploadId);
+            int missing = partCount(totalSize, partSize) - parts.size();
+            if (missing > 0) {
+                throw new IllegalArgumentException("Upload is missing " + missing + " chunks");
+            }
+            fileService.completeMultipartUpload(objectName, (String) session.get("storage_upload_id"),
+                    parts.stream().map(part -> (String) part.get("etag")).toList());
+        } catch (Exception e) {
+            // Nothing was assembled yet, the client can still send the missing chunks
+            jdbcTemplate.update("UPDATE upload_sessions SET status = ? WHERE id = ?", STATUS_UPLOADING, uploadId);
+            throw e;
+        }
+
+        StoredFile stored;
+        try {
+            stored = fileService.registerObject((String) session.get("original_filename"), totalSize,
+                    (String) session.get("content_type"), objectName, null, userId);
+        } catch (Exception e) {
+            jdbcTemplate.update("UPDATE upload_sessions SET status = ? WHERE id = ?", STATUS_FAILED, uploadId);
+            try {
+                fileService.removeObject(objectName);
+            } catch (Exception removeError) {
+                logger.warn("Error removing failed upload {}", objectName, removeError);
+            }
+            throw e;
+        }
+
+        jdbcTemplate.update("UPDATE upload_sessions SET status = ?, file_id = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                STATUS_COMPLETED, stored.getId(), uploadId);
+        jdbcTemplate.update("DELETE FROM upload_parts WHERE upload_id = ?", uploadId);
+        logger.info("Resumable upload {} completed as file {}", uploadId, stored.getId());
+        return stored;
+    }
+
+    @Scheduled(fixedDelayString = "${app.files.uploads.cleanup-interval:600000}")
+    public void abortStaleUploads() {
+        try {
+            // Deleting first hands every stale session to exactly one node
+            List<Map<String, Object>> stale = jdbcTemplate.queryForList(
+                    "DELETE FROM upload_sessions WHERE updated_at < ? RETURNING status, object_name, storage_upload_id",
+                    Timestamp.valueOf(LocalDateTime.now().minusHours(ttlHours)));
+
+            int aborted = 0;
+            for (Map<String, Object> session : stale) {
+                if (STATUS_COMPLETED.equals(session.get("status")) || STATUS_FAILED.equals(session.get("status"))) {
+                    continue;
+                }
+                try {
+                    fileService.abortMultipartUpload((String) session.get("object_name"), (String) session.get("storage_upload_id"));
+                    aborted++;
+                } catch (Exception e) {
+                    logger.warn("Error aborting stale upload of {}", session.get("object_name"), e);
+                }
+            }
+            if (!stale.isEmpty()) {
+                logger.info("Removed {} expired upload sessions, {} multipart uploads aborted", stale.size(), aborted);
+            }
+        } catch (Exception e) {
+            logger.error("Error removing expired upload sessions", e);
+        }
+    }
+
+    private Map<String, Object> findSession(String uploadId, Long userId) {
+        List<Map<String, Object>> sessions = jdbcTemplate.queryForList(
+                "SELECT status, object_name, storage_upload_id, total_size, chunk_size, file_id " +
+                "FROM upload_sessions WHERE id = ? AND user_id = ?", uploadId, userId);
+        if (sessions.isEmpty()) {
+            throw new IllegalArgumentException("Upload not found");
+        }
+        return sessions.get(0);
+    }
+
+    private static int partCount(long totalSize, long partSize) {
+        return (int) ((totalSize + partSize - 1) / partSize);
+    }
+}
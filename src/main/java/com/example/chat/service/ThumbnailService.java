@@ -0,0 +1,215 @@
+package com.example.chat.service;
+
+import com.example.chat.model.FileMetadata;
+import com.example.chat.repository.FileMetadataRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private static final String PREVIEW_CONTENT_TYPE = "image/jpeg";
+    private static final List<String> PREVIEW_TYPES = List.of("image/jpeg", "image/jpg", "image/png", "image/gif");
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    @Qualifier("thumbnailExecutor")
+    private ThreadPoolTaskExecutor thumbnailExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.thumbnails.size:320}")
+    private int thumbnailSize;
+
+    @Value("${app.thumbnails.quality:0.8}")
+    private float thumbnailQuality;
+
+    @Value("${app.thumbnails.placeholder-size:24}")
+    private int placeholderSize;
+
+    @Value("${app.thumbnails.placeholder-quality:0.3}")
+    private float placeholderQuality;
+
+    // Guards against decompression bombs, a 10 MB PNG can declare billions of pixels
+    @Value("${app.thumbnails.max-pixels:50000000}")
+    private long maxPixels;
+
+    // Images are decoded from memory, larger files are left without previews
+    @Value("${app.thumbnails.max-bytes:52428800}")
+    private long maxBytes;
+
+    private Timer processing;
+    private Counter rejected;
+    private Counter failed;
+
+    @PostConstruct
+    public void init() {
+        processing = Timer.builder("files.thumbnails.processing")
+                .description("Time to generate the previews of one image")
+                .register(meterRegistry);
+        rejected = Counter.builder("files.thumbnails.rejected")
+                .description("Images not previewed because the queue was full")
+                .register(meterRegistry);
+        failed = Counter.builder("files.thumbnails.failed")
+                .description("Images whose previews could not be generated")
+                .register(meterRegistry);
+        Gauge.builder("files.thumbnails.queue", thumbnailExecutor, executor -> executor.getThreadPoolExecutor().getQueue().size())
+                .description("Images waiting for preview generation")
+                .register(meterRegistry);
+    }
+
+    public static String thumbnailPath(String storagePath) {
+        return storagePath + ".thumb.jpg";
+    }
+
+    public static String placeholderPath(String storagePath) {
+        return storagePath + ".placeholder.jpg";
+    }
+
+    public boolean supports(String contentType) {
+        return contentType != null && PREVIEW_TYPES.contains(contentType);
+    }
+
+    public void submit(Long fileId) {
+        try {
+            thumbnailExecutor.execute(() -> generate(fileId));
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            logger.warn("Preview queue full, file {} is served without previews", fileId);
+        }
+    }
+
+    void generate(Long fileId) {
+        FileMetadata file = fileMetadataRepository.findById(fileId).orElse(null);
+        if (file == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            BufferedImage image = file.getFileSize() <= maxBytes ? read(fileService.readObject(file.getStoragePath()), file) : null;
+            if (image == null) {
+                file.setPreviewStatus(FileMetadata.PreviewStatus.SKIPPED);
+            } else {
+                String thumbnailPath = thumbnailPath(file.getStoragePath());
+                String placeholderPath = placeholderPath(file.getStoragePath());
+                fileService.storeObject(thumbnailPath, encode(scale(image, thumbnailSize), thumbnailQuality), PREVIEW_CONTENT_TYPE);
+                fileService.storeObject(placeholderPath, encode(scale(image, placeholderSize), placeholderQuality), PREVIEW_CONTENT_TYPE);
+                file.setThumbnailPath(thumbnailPath);
+                file.setPlaceholderPath(placeholderPath);
+                file.setPreviewStatus(FileMetadata.PreviewStatus.READY);
+            }
+        } catch (Exception e) {
+            failed.increment();
+            file.setPreviewStatus(FileMetadata.PreviewStatus.FAILED);
+            logger.warn("Error generating previews of file {}", fileId, e);
+        } finally {
+            processing.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        fileMetadataRepository.updatePreview(fileId, file.getPreviewStatus(), file.getThumbnailPath(),
+                file.getPlaceholderPath(), file.getImageWidth(), file.getImageHeight());
+    }
+
+    // Decodes with source subsampling, a large photo never needs its full resolution for a small thumbnail
+    private BufferedImage read(byte[] data, FileMetadata file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                file.setImageWidth(width);
+                file.setImageHeight(height);
+                if ((long) width * height > maxPixels) {
+                    logger.info("Skipping previews of file {}: {}x{} exceeds the pixel limit", file.getId(), width, height);
+                    return null;
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (thumbnailSize * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static BufferedImage scale(BufferedImage source, int maxSize) {
+        double ratio = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        // JPEG has no alpha channel, transparent areas are flattened onto white
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    static byte[] encode(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -4,16 +4,24 @@ import com.example.chat.dto.UserDto;
 import com.example.chat.model.User;
 import com.example.chat.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,19 +31,22 @@ public class UserService implements UserDetailsService {
     private UserRepository userRepository;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private PresenceService presenceService;
 
-    private static final String PRESENCE_KEY_PREFIX = "presence:";
-    private static final long PRESENCE_TIMEOUT = 300; // 5 minutes
+    @Autowired
+    private CacheManager cacheManager;
+
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int MIN_TRIGRAM_QUERY_LENGTH = 3;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findByUsername(username)
+        return findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
     }
 
     public Optional<User> findByUsername(String username) {
-        return userRepository.findByUsername(username);
+        return cached("usersByUsername", username, () -> userRepository.findByUsername(username));
     }
 
     public Optional<User> findByEmail(String email) {
@@ -43,9 +54,13 @@ public class UserService implements UserDetailsService {
     }
 
     public Optional<User> findById(Long id) {
-        return userRepository.findById(id);
+        return cached("users", id, () -> userRepository.findById(id));
     }
 
+    @Caching(evict = {
+        @CacheEvict(value = "users", key = "#user.id", condition = "#user.id != null"),
+        @CacheEvict(value = "usersByUsername", key = "#user.username")
+    })
     public User save(User user) {
         return userRepository.save(user);
     }
@@ -58,50 +73,131 @@ public class UserService implements UserDetailsService {
         return userRepository.existsByEmail(email);
     }
 
-    public List<UserDto> searchUsers(String query) {
-        return userRepository.searchUsers(query).stream()
-                .map(user -> {
-                    UserDto dto = new UserDto(user);
-                    dto.setOnline(isUserOnline(user.getId()));
-                    return dto;
-                })
+    public List<UserDto> searchUsers(String query, int limit) {
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        int size = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+        String escaped = escapeLike(normalized);
+
+        // Short queries have no trigrams to match on, fall back to the prefix index
+        List<User> byUsername = normalized.length() >= MIN_TRIGRAM_QUERY_LENGTH
+                ? userRepository.searchByUsernameSimilarity(normalized, "%" + escaped + "%", size)
+                : userRepository.searchByUsernamePrefix(escaped + "%", size);
+        List<User> byEmail = userRepository.searchByEmailPrefix(escaped + "%", size);
+
+        Map<Long, User> candidates = new LinkedHashMap<>();
+        byUsername.forEach(user -> candidates.putIfAbsent(user.getId(), user));
+        byEmail.forEach(user -> candidates.putIfAbsent(user.getId(), user));
+
+        // Stable sort keeps the similarity order within each rank
+        List<User> ranked = candidates.values().stream()
+                .sorted(Comparator.comparingInt(user -> searchRank(user, normalized)))
+                .limit(size)
                 .collect(Collectors.toList());
+
+        boolean[] online = presenceService.areOnline(ranked.stream().mapToLong(User::getId).toArray());
+        List<UserDto> results = new ArrayList<>(ranked.size());
+        for (int i = 0; i < ranked.size(); i++) {
+            UserDto dto = new UserDto(ranked.get(i));
+            dto.setOnline(online[i]);
+            results.add(dto);
+        }
+        return results;
     }
 
-    public void setUserOnline(Long userId) {
-        String key = PRESENCE_KEY_PREFIX + userId;
-        redisTemplate.opsForValue().set(key, "online", PRESENCE_TIMEOUT, TimeUnit.SECONDS);
-        
-        // Update last seen
-        userRepository.findById(userId).ifPresent(user -> {
-            user.setLastSeen(LocalDateTime.now());
-            userRepository.save(user);
-        });
+    private int searchRank(User user, String query) {
+        String username = user.getUsername().toLowerCase(Locale.ROOT);
+        if (username.equals(query)) {
+            return 0;
+        }
+        if (username.startsWith(query)) {
+            return 1;
+        }
+        if (user.getEmail() != null && user.getEmail().toLowerCase(Locale.ROOT).startsWith(query)) {
+            return 2;
+        }
+        return 3;
     }
 
-    public void setUserOffline(Long userId) {
-        String key = PRESENCE_KEY_PREFIX + userId;
-        redisTemplate.delete(key);
-        
-        // Update last seen
-        userRepository.findById(userId).ifPresent(user -> {
-            user.setLastSeen(LocalDateTime.now());
-            userRepository.save(user);
-        });
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
-    public boolean isUserOnline(Long userId) {
-        String key = PRESENCE_KEY_PREFIX + userId;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    // The regions hold detached snapshots, every caller gets its own User and cannot change the cached one
+    private Optional<User> cached(String region, Object key, Supplier<Optional<User>> loader) {
+        Cache cache = cacheManager.getCache(region);
+        if (cache == null) {
+            return loader.get();
+        }
+        CachedUser snapshot = cache.get(key, () -> loader.get().map(CachedUser::new).orElse(null));
+        return Optional.ofNullable(snapshot).map(CachedUser::toUser);
     }
 
     public UserDto getUserPresence(Long userId) {
         Optional<User> userOpt = userRepository.findById(userId);
         if (userOpt.isPresent()) {
             UserDto dto = new UserDto(userOpt.get());
-            dto.setOnline(isUserOnline(userId));
+            dto.setOnline(presenceService.isUserOnline(userId));
             return dto;
         }
         return null;
     }
-}
\ No newline at end of file
+
+    // Last seen is written in batches by LastSeenService and read from the database, it is not cached
+    public static class CachedUser {
+        private Long id;
+        private String username;
+        private String email;
+        private String password;
+        private User.Role role;
+        private LocalDateTime createdAt;
+        private boolean enabled;
+
+        public CachedUser() {}
+
+        public CachedUser(User user) {
+            this.id = user.getId();
+            this.username = user.getUsername();
+            this.email = user.getEmail();
+            this.password = user.getPassword();
+            this.role = user.getRole();
+            this.createdAt = user.getCreatedAt();
+            this.enabled = user.isEnabled();
+        }
+
+        public User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setEmail(email);
+            user.setPassword(password);
+            user.setRole(role);
+            user.setCreatedAt(createdAt);
+            user.setEnabled(enabled);
+            return user;
+        }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+
+        public String getEmail() { return email; }
+        public void setEmail(String email) { this.email = email; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public User.Role getRole() { return role; }
+        public void setRole(User.Role role) { this.role = role; }
+
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+}
@@ -9,9 +9,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 import java.security.Principal;
 
@@ -29,12 +32,17 @@ public class WebSocketEventListener {
     @Autowired
     private PresenceService presenceService;
 
+    @Autowired
+    private WebSocketSessionRegistry sessionRegistry;
+
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         try {
             StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
             Principal user = headerAccessor.getUser();
             String sessionId = headerAccessor.getSessionId();
+            sessionRegistry.sessionOpened(sessionId,
+                    user instanceof Authentication auth && auth.getPrincipal() instanceof User principal ? principal.getId() : 0);
 
             if (user != null) {
                 logger.info("WebSocket connection established - User: {}, Session: {}", user.getName(), sessionId);
@@ -43,7 +51,7 @@ public class WebSocketEventListener {
                 try {
                     User userEntity = userService.findByUsername(user.getName()).orElse(null);
                     if (userEntity != null) {
-                        presenceService.setUserOnline(userEntity.getId(), userEntity.getUsername());
+                        presenceService.sessionConnected(sessionId, userEntity.getId(), userEntity.getUsername());
                         logger.debug("User {} set online successfully", user.getName());
                     } else {
                         logger.warn("User entity not found for username: {}", user.getName());
@@ -65,19 +73,14 @@ public class WebSocketEventListener {
             StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
             Principal user = headerAccessor.getUser();
             String sessionId = headerAccessor.getSessionId();
+            sessionRegistry.sessionClosed(sessionId);
 
             if (user != null) {
                 logger.info("WebSocket disconnection - User: {}, Session: {}", user.getName(), sessionId);
 
-                // Set user offline
+                // Release the session, the user goes offline once the last one closes
                 try {
-                    User userEntity = userService.findByUsername(user.getName()).orElse(null);
-                    if (userEntity != null) {
-                        presenceService.setUserOffline(userEntity.getId(), userEntity.getUsername());
-                        logger.debug("User {} set offline successfully", user.getName());
-                    } else {
-                        logger.warn("User entity not found for username: {}", user.getName());
-                    }
+                    presenceService.sessionDisconnected(sessionId, user.getName());
                 } catch (Exception e) {
                     logger.error("Error setting user offline: {}", user.getName(), e);
                 }
@@ -88,4 +91,17 @@ public class WebSocketEventListener {
             logger.error("Error handling WebSocket disconnect event", e);
         }
     }
-}
\ No newline at end of file
+
+    @EventListener
+    public void handleSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        sessionRegistry.subscribed(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId(),
+                headerAccessor.getDestination());
+    }
+
+    @EventListener
+    public void handleUnsubscribeListener(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        sessionRegistry.unsubscribed(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.chat.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntToLongFunction;
+
+// STOMP sessions held by this node. Every session takes a recycled int slot and its state lives in paged primitive
+// arrays, about 100 bytes per session next to the id Spring already holds, plus 8 bytes per subscription.
+// Outbound MESSAGE frames are counted when the broker hands them to the session and again when they are written
+// to the socket, the difference is the backlog of a slow client.
+@Component
+public class WebSocketSessionRegistry implements ChannelInterceptor {
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MAX_PREFIXES = 256;
+    private static final String OTHER_PREFIX = "other";
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final long startedAt = System.currentTimeMillis() / 1000;
+
+    // Guarded by this registry: slot allocation, subscriptions and their per prefix counts
+    private final Map<String, Integer> prefixIds = new HashMap<>();
+    private final String[] prefixes = new String[MAX_PREFIXES];
+    private final int[] prefixCounts = new int[MAX_PREFIXES];
+    private int[] freeSlots = new int[PAGE_SIZE];
+    private int freeCount;
+    private int nextSlot;
+
+    private volatile Page[] pages = new Page[0];
+    private volatile int subscriptionCount;
+
+    public synchronized void sessionOpened(String sessionId, long userId) {
+        if (sessionId == null || slots.containsKey(sessionId)) {
+            return;
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (slot >>> PAGE_BITS == pages.length) {
+            Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new Page();
+            pages = grown;
+        }
+        pages[slot >>> PAGE_BITS].open(slot & (PAGE_SIZE - 1), sessionId, userId,
+                (int) (System.currentTimeMillis() / 1000 - startedAt));
+        slots.put(sessionId, slot);
+    }
+
+    // Disconnect events may be raised more than once for the same session
+    public synchronized void sessionClosed(String sessionId) {
+        Integer slot = sessionId != null ? slots.remove(sessionId) : null;
+        if (slot == null) {
+            return;
+        }
+        Page page = pages[slot >>> PAGE_BITS];
+        int index = slot & (PAGE_SIZE - 1);
+        long[] subscriptions = page.subscriptions[index];
+        if (subscriptions != null) {
+            for (long subscription : subscriptions) {
+                prefixCounts[(int) subscription]--;
+            }
+            subscriptionCount -= subscriptions.length;
+        }
+        page.close(index);
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Subscription ids are only unique within a session, they are kept as their hash next to the prefix id
+    public synchronized void subscribed(String sessionId, String subscriptionId, String destination) {
+        Integer slot = sessionId != null ? slots.get(sessionId) : null;
+        if (slot == null || subscriptionId == null) {
+            return;
+        }
+        Page page = pages[slot >>> PAGE_BITS];
+        int index = slot & (PAGE_SIZE - 1);
+        int prefix = prefixId(prefixOf(destination));
+
+        long[] current = page.subscriptions[index];
+        long[] updated = current == null ? new long[1] : Arrays.copyOf(current, current.length + 1);
+        updated[updated.length - 1] = (long) subscriptionId.hashCode() << 32 | prefix;
+        page.subscriptions[index] = updated;
+        prefixCounts[prefix]++;
+        subscriptionCount++;
+    }
+
+    public synchronized void unsubscribed(String sessionId, String subscriptionId) {
+        Integer slot = sessionId != null ? slots.get(sessionId) : null;
+        if (slot == null || subscriptionId == null) {
+            return;
+        }
+        Page page = pages[slot >>> PAGE_BITS];
+        int index = slot & (PAGE_SIZE - 1);
+        long[] current = page.subscriptions[index];
+        if (current == null) {
+            return;
+        }
+
+        int hash = subscriptionId.hashCode();
+        for (int i = 0; i < current.length; i++) {
+            if ((int) (current[i] >>> 32) == hash) {
+                prefixCounts[(int) current[i]]--;
+                subscriptionCount--;
+                if (current.length == 1) {
+                    page.subscriptions[index] = null;
+                } else {
+                    long[] updated = new long[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    page.subscriptions[index] = updated;
+                }
+                return;
+            }
+        }
+    }
+
+    // Installed on the client outbound channel, a MESSAGE frame is queued for its session from here on
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            int slot = slot(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            if (slot >= 0) {
+                pages[slot >>> PAGE_BITS].queued(slot & (PAGE_SIZE - 1));
+            }
+        }
+        return message;
+    }
+
+    // Installed on the WebSocket transport, sees every frame as it is written to the socket
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+                    @Override
+                    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                        long start = System.nanoTime();
+                        super.sendMessage(message);
+                        frameSent(getId(), message, System.nanoTime() - start);
+                    }
+                });
+            }
+        };
+    }
+
+    void frameSent(String sessionId, WebSocketMessage<?> frame, long nanos) {
+        int slot = slot(sessionId);
+        if (slot >= 0) {
+            boolean message = frame instanceof TextMessage text && text.getPayload().startsWith("MESSAGE");
+            pages[slot >>> PAGE_BITS].sent(slot & (PAGE_SIZE - 1), frame.getPayloadLength(), message, nanos);
+        }
+    }
+
+    public int getSessionCount() {
+        return slots.size();
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionCount;
+    }
+
+    public synchronized Map<String, Object> snapshot(int limit) {
+        Map<Long, Integer> sessionsPerUser = new HashMap<>();
+        int[] active = new int[slots.size()];
+        int count = 0;
+        for (int slot : slots.values()) {
+            active[count++] = slot;
+            long userId = pages[slot >>> PAGE_BITS].userIds[slot & (PAGE_SIZE - 1)];
+            if (userId != 0) {
+                sessionsPerUser.merge(userId, 1, Integer::sum);
+            }
+        }
+        int[] sessions = Arrays.copyOf(active, count);
+
+        List<Map<String, Object>> topUsers = new ArrayList<>();
+        sessionsPerUser.entrySet().stream()
+                .filter(user -> user.getValue() > 1)
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                .limit(limit)
+                .forEach(user -> topUsers.add(Map.of("userId", user.getKey(), "sessions", user.getValue())));
+
+        Map<String, Integer> byDestination = new HashMap<>();
+        for (int i = 0; i < MAX_PREFIXES; i++) {
+            if (prefixCounts[i] > 0) {
+                byDestination.put(prefixes[i], prefixCounts[i]);
+            }
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("sessions", count);
+        snapshot.put("users", sessionsPerUser.size());
+        snapshot.put("usersWithMultipleSessions", sessionsPerUser.values().stream().filter(sessionCount -> sessionCount > 1).count());
+        snapshot.put("topUsersBySessions", topUsers);
+        snapshot.put("subscriptions", subscriptionCount);
+        snapshot.put("subscriptionsByDestination", byDestination);
+        snapshot.put("heaviestByOutboundBytes", top(sessions, limit,
+                slot -> pages[slot >>> PAGE_BITS].outboundBytes.get(slot & (PAGE_SIZE - 1))));
+        snapshot.put("deepestQueues", top(sessions, limit, slot -> {
+            Page page = pages[slot >>> PAGE_BITS];
+            int index = slot & (PAGE_SIZE - 1);
+            return (long) page.pending.get(index) << 32 | page.peakPending.get(index);
+        }));
+        return snapshot;
+    }
+
+    private List<Map<String, Object>> top(int[] sessions, int limit, IntToLongFunction weight) {
+        // Bounded min-heap, the lightest of the current top is dropped first
+        PriorityQueue<long[]> heap = new PriorityQueue<>(limit + 1, (a, b) -> Long.compare(a[0], b[0]));
+        for (int slot : sessions) {
+            long value = weight.applyAsLong(slot);
+            if (value > 0 && (heap.size() < limit || value > heap.peek()[0])) {
+                heap.add(new long[]{value, slot});
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            int slot = (int) heap.poll()[1];
+            result.add(0, describe(slot));
+        }
+        return result;
+    }
+
+    private Map<String, Object> describe(int slot) {
+        Page page = pages[slot >>> PAGE_BITS];
+        int index = slot & (PAGE_SIZE - 1);
+        Map<String, Object> session = new HashMap<>();
+        session.put("sessionId", page.sessionIds[index]);
+        session.put("userId", page.userIds[index] != 0 ? page.userIds[index] : null);
+        session.put("connectedAt", Instant.ofEpochSecond(startedAt + page.connectedAt[index]).toString());
+        session.put("subscriptions", page.subscriptions[index] != null ? page.subscriptions[index].length : 0);
+        session.put("outboundBytes", page.outboundBytes.get(index));
+        session.put("outboundMessages", page.outboundMessages.get(index));
+        session.put("queueDepth", page.pending.get(index));
+        session.put("peakQueueDepth", page.peakPending.get(index));
+        session.put("maxSendMillis", page.maxSendMillis.get(index));
+        return session;
+    }
+
+    private int slot(String sessionId) {
+        Integer slot = sessionId != null ? slots.get(sessionId) : null;
+        return slot != null ? slot : -1;
+    }
+
+    private int prefixId(String prefix) {
+        Integer id = prefixIds.get(prefix);
+        if (id == null) {
+            // The last id collects destinations beyond the limit
+            if (prefixIds.size() == MAX_PREFIXES - 1) {
+                prefixes[MAX_PREFIXES - 1] = OTHER_PREFIX;
+                return MAX_PREFIXES - 1;
+            }
+            id = prefixIds.size();
+            prefixIds.put(prefix, id);
+            prefixes[id] = prefix;
+        }
+        return id;
+    }
+
+    // Destinations are grouped by their first two segments, /topic/conversations/42 counts as /topic/conversations
+    static String prefixOf(String destination) {
+        if (destination == null) {
+            return OTHER_PREFIX;
+        }
+        int first = destination.indexOf('/', 1);
+        int second = first < 0 ? -1 : destination.indexOf('/', first + 1);
+        return second < 0 ? destination : destination.substring(0, second);
+    }
+
+    private static final class Page {
+        private final String[] sessionIds = new String[PAGE_SIZE];
+        private final long[] userIds = new long[PAGE_SIZE];
+        private final int[] connectedAt = new int[PAGE_SIZE];
+        private final long[][] subscriptions = new long[PAGE_SIZE][];
+        private final AtomicLongArray outboundBytes = new AtomicLongArray(PAGE_SIZE);
+        private final AtomicLongArray outboundMessages = new AtomicLongArray(PAGE_SIZE);
+        private final AtomicIntegerArray pending = new AtomicIntegerArray(PAGE_SIZE);
+        private final AtomicIntegerArray peakPending = new AtomicIntegerArray(PAGE_SIZE);
+        private final AtomicIntegerArray maxSendMillis = new AtomicIntegerArray(PAGE_SIZE);
+
+        void open(int index, String sessionId, long userId, int connectedAtSecond) {
+            sessionIds[index] = sessionId;
+            userIds[index] = userId;
+            connectedAt[index] = connectedAtSecond;
+            outboundBytes.set(index, 0);
+            outboundMessages.set(index, 0);
+            pending.set(index, 0);
+            peakPending.set(index, 0);
+            maxSendMillis.set(index, 0);
+        }
+
+        void close(int index) {
+            sessionIds[index] = null;
+            subscriptions[index] = null;
+        }
+
+        void queued(int index) {
+            int depth = pending.incrementAndGet(index);
+            if (depth > peakPending.get(index)) {
+                peakPending.accumulateAndGet(index, depth, Math::max);
+            }
+        }
+
+        void sent(int index, int bytes, boolean message, long nanos) {
+            outboundBytes.addAndGet(index, bytes);
+            if (message) {
+                outboundMessages.incrementAndGet(index);
+                // A frame queued for the previous holder of a recycled slot must not push the depth below zero
+                pending.getAndUpdate(index, depth -> Math.max(0, depth - 1));
+            }
+            int millis = (int) (nanos / 1_000_000);
+            if (millis > maxSendMillis.get(index)) {
+                maxSendMillis.accumulateAndGet(index, millis, Math::max);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+-- Messages sent per conversation and minute, incremented by every analytics flush
+CREATE TABLE analytics_conversation_minute (
+    conversation_id BIGINT NOT NULL,
+    minute TIMESTAMP NOT NULL,
+    messages BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (conversation_id, minute)
+);
+
+CREATE INDEX idx_analytics_conversation_minute_minute ON analytics_conversation_minute(minute);
+
+-- Latency and duration histograms per minute, one row per flush; rows of a window are merged when queried
+CREATE TABLE analytics_latency_minute (
+    id BIGSERIAL PRIMARY KEY,
+    metric VARCHAR(20) NOT NULL,
+    minute TIMESTAMP NOT NULL,
+    samples BIGINT NOT NULL,
+    histogram BYTEA NOT NULL
+);
+
+CREATE INDEX idx_analytics_latency_minute_metric ON analytics_latency_minute(metric, minute);
@@ -0,0 +1,27 @@
+-- Messages keep the object key of their attachment, attachment_url becomes the stable /api/files/{id} path
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS attachment_key VARCHAR(500);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS conversation_id BIGINT;
+
+-- Presigned URLs stored so far are path style: endpoint/bucket/key?signature
+-- Only URLs of the configured MinIO bucket are rewritten, any other link is left as it is
+UPDATE messages m
+SET attachment_key = split_part(substr(m.attachment_url, length(b.prefix) + 1), '?', 1)
+FROM (SELECT rtrim('${minio-endpoint}', '/') || '/' || '${minio-bucket}' || '/' AS prefix) b
+WHERE m.attachment_key IS NULL
+  AND left(m.attachment_url, length(b.prefix)) = b.prefix
+  AND length(split_part(substr(m.attachment_url, length(b.prefix) + 1), '?', 1)) > 0;
+
+INSERT INTO file_metadata (message_id, conversation_id, original_filename, file_size, mime_type, storage_path, uploaded_by, uploaded_at)
+SELECT m.id, m.conversation_id, regexp_replace(m.attachment_key, '^.*/', ''), 0,
+       COALESCE(m.mime_type, 'application/octet-stream'), m.attachment_key, m.sender_id, m.created_at
+FROM messages m
+WHERE m.attachment_key IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM file_metadata f WHERE f.message_id = m.id);
+
+UPDATE file_metadata f SET conversation_id = m.conversation_id
+FROM messages m
+WHERE f.message_id = m.id AND f.conversation_id IS NULL;
+
+UPDATE messages m SET attachment_url = '/api/files/' || f.id
+FROM file_metadata f
+WHERE f.message_id = m.id AND f.storage_path = m.attachment_key;
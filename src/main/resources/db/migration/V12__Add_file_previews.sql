@@ -0,0 +1,6 @@
+-- Previews generated after upload, stored next to the original object
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS preview_status VARCHAR(20);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS thumbnail_path VARCHAR(500);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS placeholder_path VARCHAR(500);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS image_width INTEGER;
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS image_height INTEGER;
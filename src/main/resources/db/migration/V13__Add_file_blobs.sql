@@ -0,0 +1,19 @@
+-- Content-addressed storage: one object per distinct SHA-256, file_metadata rows are references to it
+CREATE TABLE file_blobs (
+    hash VARCHAR(64) PRIMARY KEY,
+    storage_path VARCHAR(500) NOT NULL,
+    file_size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_file_blobs_unreferenced ON file_blobs(hash) WHERE ref_count <= 0;
+CREATE INDEX IF NOT EXISTS idx_file_metadata_hash ON file_metadata(file_hash);
+CREATE INDEX IF NOT EXISTS idx_file_metadata_unattached ON file_metadata(uploaded_at) WHERE message_id IS NULL;
+
+-- Files uploaded so far keep their own objects, the first one becomes the blob of its hash
+INSERT INTO file_blobs (hash, storage_path, file_size, ref_count)
+SELECT file_hash, MIN(storage_path), MAX(file_size), COUNT(*)
+FROM file_metadata
+WHERE file_hash IS NOT NULL
+GROUP BY file_hash;
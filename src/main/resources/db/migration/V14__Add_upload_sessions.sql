@@ -0,0 +1,27 @@
+-- Resumable uploads: each session maps onto one multipart upload in object storage, any node can continue it
+CREATE TABLE upload_sessions (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    object_name VARCHAR(500) NOT NULL,
+    storage_upload_id VARCHAR(255) NOT NULL,
+    original_filename VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    total_size BIGINT NOT NULL,
+    chunk_size BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'UPLOADING',
+    file_id BIGINT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Chunks received so far, the storage ETag of each is needed to complete the upload
+CREATE TABLE upload_parts (
+    upload_id VARCHAR(36) NOT NULL REFERENCES upload_sessions(id) ON DELETE CASCADE,
+    part_number INTEGER NOT NULL,
+    etag VARCHAR(255) NOT NULL,
+    part_size BIGINT NOT NULL,
+    uploaded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (upload_id, part_number)
+);
+
+CREATE INDEX idx_upload_sessions_updated ON upload_sessions(updated_at);
@@ -0,0 +1,16 @@
+-- Direct uploads: the client writes object_name with a presigned PUT, completion verifies it against the intent
+CREATE TABLE upload_intents (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    object_name VARCHAR(500) NOT NULL,
+    original_filename VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    declared_size BIGINT NOT NULL,
+    sha256 VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    file_id BIGINT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_upload_intents_pending ON upload_intents(user_id) WHERE status = 'PENDING';
+CREATE INDEX idx_upload_intents_created ON upload_intents(created_at);
@@ -0,0 +1,7 @@
+-- Imported rows get ids above the live messages but keep their historical created_at. Reads that prune
+-- partitions by the created_at of an anchor id widen the bound to the oldest row of any import above it
+ALTER TABLE message_imports ADD COLUMN IF NOT EXISTS min_created_at TIMESTAMP;
+ALTER TABLE message_imports ADD COLUMN IF NOT EXISTS last_message_id BIGINT;
+
+-- Imported history older than the last clear of its conversation is skipped, the id watermark cannot hide it
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS cleared_at TIMESTAMP;
@@ -0,0 +1,3 @@
+-- Expired upload intents are only removed from storage when no file or blob references their object
+CREATE INDEX IF NOT EXISTS idx_file_metadata_storage_path ON file_metadata(storage_path);
+CREATE INDEX IF NOT EXISTS idx_file_blobs_storage_path ON file_blobs(storage_path);
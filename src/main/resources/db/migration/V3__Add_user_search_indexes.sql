@@ -0,0 +1,9 @@
+-- Trigram and prefix indexes for user search typeahead
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Substring match and similarity ordering on usernames (KNN via <->)
+CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING gist (lower(username) gist_trgm_ops);
+
+-- Prefix match for short queries and email lookups
+CREATE INDEX IF NOT EXISTS idx_users_username_prefix ON users (lower(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_email_prefix ON users (lower(email) text_pattern_ops);
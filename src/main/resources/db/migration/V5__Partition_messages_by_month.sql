@@ -0,0 +1,64 @@
+-- Convert messages into a table range-partitioned by month on created_at
+
+-- The primary key of a partitioned table has to include created_at, so messages(id) can no longer be referenced
+ALTER TABLE message_receipts DROP CONSTRAINT IF EXISTS message_receipts_message_id_fkey;
+ALTER TABLE file_metadata DROP CONSTRAINT IF EXISTS file_metadata_message_id_fkey;
+ALTER TABLE messages DROP CONSTRAINT IF EXISTS messages_reply_to_id_fkey;
+
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER TABLE messages_unpartitioned RENAME CONSTRAINT messages_pkey TO messages_unpartitioned_pkey;
+ALTER SEQUENCE messages_id_seq OWNED BY NONE;
+
+CREATE TABLE messages (
+    id BIGINT NOT NULL DEFAULT nextval('messages_id_seq'),
+    conversation_id BIGINT NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+    sender_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    type VARCHAR(20) NOT NULL DEFAULT 'TEXT',
+    content TEXT,
+    attachment_url VARCHAR(500),
+    mime_type VARCHAR(100),
+    status VARCHAR(20) NOT NULL DEFAULT 'SENT',
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    edited_at TIMESTAMP,
+    deleted BOOLEAN DEFAULT FALSE,
+    metadata TEXT,
+    reply_to_id BIGINT,
+    content_tsv tsvector GENERATED ALWAYS AS (to_tsvector('english', coalesce(content, ''))) STORED,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Monthly partitions covering existing data and the next three months
+DO $$
+DECLARE
+    month_start DATE;
+    last_month DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(min(created_at), CURRENT_TIMESTAMP))::date,
+           date_trunc('month', GREATEST(COALESCE(max(created_at), CURRENT_TIMESTAMP), CURRENT_TIMESTAMP + INTERVAL '3 months'))::date
+    INTO month_start, last_month
+    FROM messages_unpartitioned;
+
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF messages FOR VALUES FROM (%L) TO (%L)',
+                       'messages_p' || to_char(month_start, 'YYYYMM'),
+                       month_start,
+                       (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO messages (id, conversation_id, sender_id, type, content, attachment_url, mime_type, status,
+                      created_at, edited_at, deleted, metadata, reply_to_id)
+SELECT id, conversation_id, sender_id, type, content, attachment_url, mime_type, status,
+       COALESCE(created_at, CURRENT_TIMESTAMP), edited_at, deleted, metadata, reply_to_id
+FROM messages_unpartitioned;
+
+DROP TABLE messages_unpartitioned;
+ALTER SEQUENCE messages_id_seq OWNED BY messages.id;
+
+-- Indexes are created on every partition
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_created ON messages(conversation_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_status ON messages(conversation_id, status);
+CREATE INDEX IF NOT EXISTS idx_messages_sender_created ON messages(sender_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_messages_reply_to ON messages(reply_to_id);
+CREATE INDEX IF NOT EXISTS idx_messages_content_tsv ON messages USING gin (content_tsv);
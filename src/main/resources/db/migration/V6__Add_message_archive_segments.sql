@@ -0,0 +1,15 @@
+-- Index of archived message segments, one row per immutable segment file
+CREATE TABLE IF NOT EXISTS message_archive_segments (
+    id BIGSERIAL PRIMARY KEY,
+    conversation_id BIGINT NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+    range_start TIMESTAMP NOT NULL,
+    range_end TIMESTAMP NOT NULL,
+    first_message_id BIGINT NOT NULL,
+    last_message_id BIGINT NOT NULL,
+    message_count INT NOT NULL,
+    storage VARCHAR(20) NOT NULL,
+    storage_key VARCHAR(500) NOT NULL UNIQUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_archive_segments_conversation_range ON message_archive_segments(conversation_id, range_end DESC);
@@ -0,0 +1,5 @@
+-- Messages with an id up to cleared_before_id are hidden from reads and purged in the background
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS cleared_before_id BIGINT;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS purge_pending BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE INDEX IF NOT EXISTS idx_conversations_purge_pending ON conversations(id) WHERE purge_pending;
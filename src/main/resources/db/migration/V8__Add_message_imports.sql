@@ -0,0 +1,12 @@
+-- Progress of bulk message imports, lines_processed is the resume point of the source file
+CREATE TABLE message_imports (
+    id VARCHAR(36) PRIMARY KEY,
+    source VARCHAR(255),
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    after_message_id BIGINT NOT NULL,
+    lines_processed BIGINT NOT NULL DEFAULT 0,
+    rows_imported BIGINT NOT NULL DEFAULT 0,
+    rows_rejected BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
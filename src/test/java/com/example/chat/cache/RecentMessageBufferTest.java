@@ -0,0 +1,106 @@
+package com.example.chat.cache;
+
+import com.example.chat.dto.MessageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RecentMessageBufferTest {
+
+    @Test
+    void ring_KeepsNewestMessagesWithinCapacity() {
+        RecentMessageBuffer.Ring ring = new RecentMessageBuffer.Ring(3, 0);
+
+        for (long id = 1; id <= 5; id++) {
+            assertTrue(ring.append(message(id)));
+        }
+        assertFalse(ring.append(message(4L)));
+        assertFalse(ring.append(message(1L)));
+
+        Page<MessageDto> page = ring.newestFirst(PageRequest.of(0, 3));
+        assertEquals(List.of(5L, 4L, 3L), page.getContent().stream().map(MessageDto::getId).toList());
+    }
+
+    @Test
+    void ring_ShortPageWithoutFullHistory_IsNotServed() {
+        RecentMessageBuffer.Ring ring = new RecentMessageBuffer.Ring(50, 100);
+        ring.append(message(99L));
+        ring.append(message(100L));
+
+        assertNull(ring.newestFirst(PageRequest.of(0, 20)));
+        assertNull(ring.after(10L));
+        assertEquals(List.of(100L), ring.after(99L).stream().map(MessageDto::getId).toList());
+    }
+
+    @Test
+    void ring_WholeHistoryBuffered_ServesShortPage() {
+        RecentMessageBuffer.Ring ring = new RecentMessageBuffer.Ring(50, 2);
+        ring.append(message(1L));
+        ring.append(message(2L));
+
+        Page<MessageDto> page = ring.newestFirst(PageRequest.of(0, 20));
+        assertNotNull(page);
+        assertEquals(2, page.getTotalElements());
+        assertEquals(2, ring.after(0L).size());
+    }
+
+    @Test
+    void seed_MessageAppendedWithoutRingDuringRead_IsNotSeeded() {
+        RecentMessageBuffer buffer = buffer();
+
+        // Message 3 commits after the first page was read but before the ring exists
+        long token = buffer.beginSeed(1L);
+        buffer.append(1L, message(3L));
+        buffer.seed(1L, new PageImpl<>(List.of(message(2L), message(1L)), PageRequest.of(0, 20), 2), token);
+        assertNull(buffer.firstPage(1L, PageRequest.of(0, 20)));
+
+        // The next read sees it in the database and seeds
+        token = buffer.beginSeed(1L);
+        buffer.seed(1L, new PageImpl<>(List.of(message(3L), message(2L), message(1L)), PageRequest.of(0, 20), 3), token);
+        assertEquals(List.of(3L, 2L, 1L), buffer.firstPage(1L, PageRequest.of(0, 20)).getContent().stream()
+                .map(MessageDto::getId).toList());
+    }
+
+    @Test
+    void seed_ReadBeforeEviction_IsNotSeeded() {
+        RecentMessageBuffer buffer = buffer();
+
+        // The chat is cleared while a reader still holds the old first page
+        long token = buffer.beginSeed(1L);
+        buffer.evict(1L);
+        buffer.seed(1L, new PageImpl<>(List.of(message(2L), message(1L)), PageRequest.of(0, 20), 2), token);
+
+        assertNull(buffer.firstPage(1L, PageRequest.of(0, 20)));
+    }
+
+    private RecentMessageBuffer buffer() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer();
+        ReflectionTestUtils.setField(buffer, "stringRedisTemplate", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(buffer, "redisContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(buffer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "capacity", 50);
+        ReflectionTestUtils.setField(buffer, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(buffer, "channel", "recent.messages");
+        ReflectionTestUtils.setField(buffer, "reseedInterval", 60000L);
+        buffer.init();
+        return buffer;
+    }
+
+    private MessageDto message(Long id) {
+        MessageDto message = new MessageDto();
+        message.setId(id);
+        message.setContent("message " + id);
+        return message;
+    }
+}
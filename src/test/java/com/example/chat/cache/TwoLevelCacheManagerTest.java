@@ -0,0 +1,110 @@
+package com.example.chat.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoLevelCacheManagerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new TwoLevelCacheManager(
+                Map.of("users", "maximumSize=100,expireAfterWrite=10m"),
+                "maximumSize=10",
+                null,
+                Duration.ofMinutes(30),
+                null,
+                "cache.invalidation",
+                meterRegistry
+        );
+        cacheManager.afterPropertiesSet();
+    }
+
+    @Test
+    void get_LoadsOnceAndServesFromLocalTier() {
+        Cache cache = cacheManager.getCache("users");
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("alice", cache.get(1L, () -> { loads.incrementAndGet(); return "alice"; }));
+        assertEquals("alice", cache.get(1L, () -> { loads.incrementAndGet(); return "other"; }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void get_NullValueIsNotCached() {
+        Cache cache = cacheManager.getCache("users");
+
+        assertNull(cache.get(1L, () -> null));
+        assertEquals("alice", cache.get(1L, () -> "alice"));
+    }
+
+    @Test
+    void onMessage_InvalidationFromOtherNodeEvictsLocalEntry() {
+        Cache cache = cacheManager.getCache("users");
+        cache.put(1L, "alice");
+
+        cacheManager.onMessage(invalidation("other-node\nusers\n1"), null);
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void onMessage_ClearFromOtherNodeDropsAllEntries() {
+        Cache cache = cacheManager.getCache("users");
+        cache.put(1L, "alice");
+        cache.put(2L, "bob");
+
+        cacheManager.onMessage(invalidation("other-node\nusers\n*"), null);
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+    }
+
+    @Test
+    void evict_TransactionAwareWaitsForCommit() {
+        TwoLevelCacheManager transactional = new TwoLevelCacheManager(
+                Map.of("users", "maximumSize=100,expireAfterWrite=10m"),
+                "maximumSize=10", null, Duration.ofMinutes(30), null, "cache.invalidation", meterRegistry);
+        transactional.setTransactionAware(true);
+        transactional.afterPropertiesSet();
+        Cache cache = transactional.getCache("users");
+        cache.put(1L, "alice");
+        cache.put(2L, "bob");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evict(1L);
+            assertEquals("alice", cache.get(1L).get());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNull(cache.get(1L));
+
+        // Invalidations from other nodes still reach the decorated region
+        transactional.onMessage(invalidation("other-node\nusers\n2"), null);
+        assertNull(cache.get(2L));
+    }
+
+    private DefaultMessage invalidation(String body) {
+        return new DefaultMessage("cache.invalidation".getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.events.MessageEvent;
+import com.example.chat.dto.events.PresenceEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsAggregatorTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private AnalyticsAggregator analyticsAggregator;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WritesMessageCountsAndLatencyWindows() {
+        LocalDateTime sent = LocalDateTime.of(2024, 5, 1, 10, 15, 20);
+        analyticsAggregator.recordMessageEvents(List.of(
+                messageEvent(MessageEvent.Type.MESSAGE_SENT, 1L, sent),
+                messageEvent(MessageEvent.Type.MESSAGE_SENT, 2L, sent.plusSeconds(5)),
+                messageEvent(MessageEvent.Type.MESSAGE_READ, 1L, sent.plusNanos(1_500_000_000L))));
+        analyticsAggregator.recordPresenceEvents(List.of(
+                presenceEvent(PresenceEvent.Type.USER_ONLINE, sent),
+                presenceEvent(PresenceEvent.Type.USER_OFFLINE, sent.plusMinutes(3))));
+
+        analyticsAggregator.flush();
+
+        ArgumentCaptor<List<Object[]>> counts = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("analytics_conversation_minute"), counts.capture());
+        assertEquals(1, counts.getValue().size());
+        assertEquals(2L, counts.getValue().get(0)[2]);
+
+        ArgumentCaptor<List<Object[]>> latencies = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("analytics_latency_minute"), latencies.capture());
+        assertEquals(2, latencies.getValue().size());
+
+        // Windows are handed over once
+        analyticsAggregator.flush();
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    private MessageEvent messageEvent(MessageEvent.Type type, Long messageId, LocalDateTime timestamp) {
+        MessageEvent event = new MessageEvent();
+        event.setEventType(type);
+        event.setMessageId(messageId);
+        event.setConversationId(9L);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+
+    private PresenceEvent presenceEvent(PresenceEvent.Type type, LocalDateTime timestamp) {
+        PresenceEvent event = new PresenceEvent();
+        event.setEventType(type);
+        event.setUserId(4L);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+}
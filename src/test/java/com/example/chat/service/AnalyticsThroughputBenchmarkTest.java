@@ -0,0 +1,181 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.events.MessageEvent;
+import com.example.chat.model.Message;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Analytics consumer throughput against the 100k events/sec target, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+// The listeners run with the poll settings of their @KafkaListener annotations, the aggregator flushes to Postgres
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class AnalyticsThroughputBenchmarkTest {
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.analytics.messages", 400_000);
+    private static final int CONVERSATIONS = 1000;
+    private static final String TOPIC = "chat.message.events";
+
+    @Container
+    private static final KafkaContainer kafka = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.5.0"));
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static final AtomicLong consumed = new AtomicLong();
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure().dataSource(dataSource)
+                .placeholders(Map.of("minio-endpoint", "http://localhost:9000", "minio-bucket", "chat-files"))
+                .load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        try (AdminClient admin = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBootstrapServers()))) {
+            admin.createTopics(List.of(new NewTopic(TOPIC, 3, (short) 1), new NewTopic("chat.user.events", 3, (short) 1)))
+                    .all().get(30, TimeUnit.SECONDS);
+        }
+
+        // Every message is sent, delivered and read, the backlog is produced before the listeners start
+        Map<String, Object> config = Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBootstrapServers(),
+                ProducerConfig.BATCH_SIZE_CONFIG, 65536,
+                ProducerConfig.LINGER_MS_CONFIG, 20,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        try (KafkaProducer<String, MessageEvent> producer = new KafkaProducer<>(config, new StringSerializer(), new JsonSerializer<>())) {
+            for (long id = 1; id <= MESSAGES; id++) {
+                LocalDateTime sentAt = start.plusNanos(id * 1000);
+                producer.send(new ProducerRecord<>(TOPIC, String.valueOf(id), event(MessageEvent.Type.MESSAGE_SENT, id, sentAt)));
+                producer.send(new ProducerRecord<>(TOPIC, String.valueOf(id), event(MessageEvent.Type.MESSAGE_DELIVERED, id, sentAt.plusNanos(40_000_000))));
+                producer.send(new ProducerRecord<>(TOPIC, String.valueOf(id), event(MessageEvent.Type.MESSAGE_READ, id, sentAt.plusSeconds(5))));
+            }
+            producer.flush();
+        }
+    }
+
+    @Test
+    void eventConsumer_EventsPerSecond() throws Exception {
+        long total = MESSAGES * 3L;
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "app.kafka.events.enabled", "true",
+                "benchmark.bootstrap-servers", kafka.getBootstrapServers())));
+        context.register(ListenerConfig.class, EventConsumer.class);
+
+        long started = System.nanoTime();
+        long flushes = 0;
+        context.refresh();
+        try {
+            AnalyticsAggregator aggregator = context.getBean(AnalyticsAggregator.class);
+            long deadline = started + TimeUnit.MINUTES.toNanos(5);
+            while (consumed.get() < total && System.nanoTime() < deadline) {
+                Thread.sleep(1000);
+                aggregator.flush();
+                flushes++;
+            }
+            long elapsed = System.nanoTime() - started;
+            aggregator.flush();
+
+            assertEquals(total, consumed.get());
+            System.out.printf("analytics events=%d elapsed=%.2fs events/sec=%.0f flushes=%d%n",
+                    total, elapsed / 1e9, total / (elapsed / 1e9), flushes);
+        } finally {
+            context.close();
+        }
+
+        Long counted = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(messages), 0) FROM analytics_conversation_minute", Long.class);
+        assertEquals((long) MESSAGES, counted);
+        Long samples = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(samples), 0) FROM analytics_latency_minute", Long.class);
+        assertTrue(samples > 0, "no latency samples flushed");
+    }
+
+    private static MessageEvent event(MessageEvent.Type type, long id, LocalDateTime timestamp) {
+        MessageEvent event = new MessageEvent(type, id, 1 + id % CONVERSATIONS, 1 + id % 100, "user" + id % 100,
+                null, Message.Type.TEXT, Message.Status.SENT);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+
+    static class CountingAnalyticsAggregator extends AnalyticsAggregator {
+
+        @Override
+        public void recordMessageEvents(List<MessageEvent> events) {
+            super.recordMessageEvents(events);
+            consumed.addAndGet(events.size());
+        }
+    }
+
+    // The listener factory mirrors the spring.kafka consumer and listener settings of application.yml
+    @Configuration
+    @EnableKafka
+    static class ListenerConfig {
+
+        @Bean
+        public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
+                Environment environment) {
+            Map<String, Object> config = Map.of(
+                    ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, environment.getRequiredProperty("benchmark.bootstrap-servers"),
+                    ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                    ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class,
+                    ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                    ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false,
+                    JsonDeserializer.TRUSTED_PACKAGES, "com.example.chat.dto,com.example.chat.dto.events");
+            ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+            factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(config));
+            factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+            return factory;
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate() {
+            return jdbcTemplate;
+        }
+
+        @Bean
+        public AnalyticsAggregator analyticsAggregator() {
+            return new CountingAnalyticsAggregator();
+        }
+    }
+}
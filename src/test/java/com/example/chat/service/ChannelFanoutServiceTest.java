@@ -0,0 +1,102 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.MessageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChannelFanoutServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private RedisMessageListenerContainer redisContainer;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private PresenceService presenceService;
+
+    @Mock
+    private PresenceRegistry presenceRegistry;
+
+    @Mock
+    private ThreadPoolTaskExecutor fanoutExecutor;
+
+    @InjectMocks
+    private ChannelFanoutService channelFanoutService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(channelFanoutService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(channelFanoutService, "channel", "channel.fanout");
+        ReflectionTestUtils.setField(channelFanoutService, "partitionSize", 2);
+        channelFanoutService.init();
+
+        // Partitions run on the calling thread
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(fanoutExecutor).execute(any(Runnable.class));
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(presenceRegistry.getNodeId()).thenReturn("node-1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fanOut_DeliversToLocalSubscribersPartitionByPartition() {
+        TreeMap<Long, String> localUsers = new TreeMap<>(Map.of(1L, "alice", 2L, "bob", 3L, "carol"));
+        when(presenceService.getLocalUsers()).thenReturn(localUsers);
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class)))
+                .thenReturn(List.of(1L), List.of(3L));
+
+        MessageDto post = new MessageDto();
+        post.setId(10L);
+        post.setCreatedAt(LocalDateTime.now());
+        channelFanoutService.fanOut(5L, post);
+
+        verify(jdbcTemplate, times(2)).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+        verify(messagingTemplate).convertAndSendToUser("alice", "/queue/channels", post);
+        verify(messagingTemplate).convertAndSendToUser("carol", "/queue/channels", post);
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("bob"), anyString(), any());
+        verify(hashOperations).put(eq("channel_progress:5"), eq("node-1"), anyString());
+
+        when(hashOperations.entries("channel_progress:5")).thenReturn(Map.of());
+        Map<String, Object> local = (Map<String, Object>) channelFanoutService.getProgress(5L).get("local");
+        assertEquals(10L, local.get("lastDeliveredMessageId"));
+        assertEquals(0, local.get("messagesInFlight"));
+    }
+}
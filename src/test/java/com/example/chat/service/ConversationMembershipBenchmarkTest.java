@@ -0,0 +1,75 @@
+package com.example.chat.service;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Group creation time by member count, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class ConversationMembershipBenchmarkTest {
+
+    private static final int[] MEMBER_COUNTS = {10, 100, 1000, 5000, 10000};
+    private static final int ROUNDS = 5;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static ConversationMembershipService membershipService;
+    private static long firstUserId;
+
+    @BeforeAll
+    static void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure().dataSource(dataSource)
+                .placeholders(Map.of("minio-endpoint", "http://localhost:9000", "minio-bucket", "chat-files"))
+                .load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO users (username, email, password) " +
+                "SELECT 'user' || i, 'user' || i || '@example.com', 'x' FROM generate_series(1, 10001) AS i");
+        firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+
+        membershipService = new ConversationMembershipService();
+        ReflectionTestUtils.setField(membershipService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(membershipService, "cacheManager", new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(membershipService, "maxBulkMembers", 10000);
+    }
+
+    @Test
+    void createGroup_ScalesWithMemberCount() {
+        for (int members : MEMBER_COUNTS) {
+            List<Long> memberIds = LongStream.range(firstUserId + 1, firstUserId + 1 + members).boxed().toList();
+
+            // First round warms up the JIT and the Postgres plan cache
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round <= ROUNDS; round++) {
+                long start = System.nanoTime();
+                ConversationMembershipService.GroupCreated group = membershipService.createGroup("bench-" + members, firstUserId, memberIds);
+                long elapsed = System.nanoTime() - start;
+                if (round > 0) {
+                    best = Math.min(best, elapsed);
+                }
+                assertEquals(members + 1, group.memberCount());
+            }
+            System.out.printf("createGroup members=%d best=%.2fms per member=%.1fus%n",
+                    members, best / 1e6, best / 1e3 / members);
+        }
+    }
+}
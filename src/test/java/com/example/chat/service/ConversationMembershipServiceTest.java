@@ -0,0 +1,44 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationMembershipServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ConversationMembershipService membershipService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createGroup_RequiringAllUsers_FailsBeforeInserting() {
+        ReflectionTestUtils.setField(membershipService, "maxBulkMembers", 100);
+        // Only user 2 of 2 and 3 exists
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of(2L));
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> membershipService.createGroup("team", 1L, List.of(2L, 3L), true));
+
+        assertEquals("User not found", error.getMessage());
+        // The user lookup is the only statement, no conversation or member rows were written
+        verify(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.chat.service;
+
+import com.example.chat.cache.RecentMessageBuffer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+// End-to-end latency and throughput of each backbone, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class DeliveryBackboneBenchmarkTest {
+
+    private static final int MESSAGES = 20000;
+    private static final int CONVERSATIONS = 200;
+    private static final int WARMUP = 1000;
+
+    @Container
+    private static final KafkaContainer kafka = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.5.0"));
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    // Each run installs its own sink, the subscriber hands every delivered payload to it
+    private static final AtomicReference<java.util.function.Consumer<Map<String, Object>>> sink = new AtomicReference<>();
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisMessageListenerContainer redisContainer;
+    private static RedisDeliveryBackbone redisBackbone;
+    private static KafkaDeliveryBackbone kafkaBackbone;
+
+    @BeforeAll
+    static void setUp() {
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        doAnswer(invocation -> {
+            sink.get().accept(invocation.getArgument(1));
+            return null;
+        }).when(messagingTemplate).convertAndSend(anyString(), any(Object.class));
+
+        RedisMessageSubscriber subscriber = new RedisMessageSubscriber();
+        ReflectionTestUtils.setField(subscriber, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(subscriber, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(subscriber, "recentMessageBuffer", mock(RecentMessageBuffer.class));
+        ReflectionTestUtils.setField(subscriber, "meterRegistry", new SimpleMeterRegistry());
+        subscriber.init();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redis.getHost(), redis.getFirstMappedPort()));
+        connectionFactory.afterPropertiesSet();
+        redisContainer = new RedisMessageListenerContainer();
+        redisContainer.setConnectionFactory(connectionFactory);
+        redisContainer.addMessageListener(subscriber, new ChannelTopic("chat.messages"));
+        redisContainer.afterPropertiesSet();
+        redisContainer.start();
+
+        redisBackbone = new RedisDeliveryBackbone();
+        ReflectionTestUtils.setField(redisBackbone, "stringRedisTemplate", new StringRedisTemplate(connectionFactory));
+        ReflectionTestUtils.setField(redisBackbone, "objectMapper", objectMapper);
+
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.setBootstrapServers(List.of(kafka.getBootstrapServers()));
+
+        kafkaBackbone = new KafkaDeliveryBackbone();
+        ReflectionTestUtils.setField(kafkaBackbone, "kafkaProperties", kafkaProperties);
+        ReflectionTestUtils.setField(kafkaBackbone, "kafkaAdmin",
+                new KafkaAdmin(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBootstrapServers())));
+        ReflectionTestUtils.setField(kafkaBackbone, "nodeId", "benchmark");
+        ReflectionTestUtils.setField(kafkaBackbone, "redisMessageSubscriber", subscriber);
+        ReflectionTestUtils.setField(kafkaBackbone, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(kafkaBackbone, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(kafkaBackbone, "topic", "chat.delivery");
+        ReflectionTestUtils.setField(kafkaBackbone, "partitions", 12);
+        ReflectionTestUtils.setField(kafkaBackbone, "consumers", 1);
+        ReflectionTestUtils.setField(kafkaBackbone, "lingerMs", 5);
+        ReflectionTestUtils.setField(kafkaBackbone, "batchSize", 65536);
+        ReflectionTestUtils.setField(kafkaBackbone, "replayWindow", 60000L);
+        kafkaBackbone.init();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        kafkaBackbone.shutdown();
+        redisContainer.stop();
+        redisContainer.destroy();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void redisBackbone() throws Exception {
+        run("redis", redisBackbone);
+    }
+
+    @Test
+    void kafkaBackbone() throws Exception {
+        run("kafka", kafkaBackbone);
+    }
+
+    private void run(String name, DeliveryBackbone backbone) throws Exception {
+        // The warm-up also waits for the subscription, or the partition assignment, to be in place
+        assertTrue(send(backbone, WARMUP, new Histogram(3), 120), name + " warm-up was not delivered");
+
+        Histogram latency = new Histogram(TimeUnit.SECONDS.toMicros(30), 3);
+        long start = System.nanoTime();
+        assertTrue(send(backbone, MESSAGES, latency, 60), name + " run was not fully delivered");
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%s backbone messages=%d throughput=%.0f msg/s p50=%.2fms p99=%.2fms max=%.2fms%n",
+                name, MESSAGES, MESSAGES / seconds,
+                latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3, latency.getMaxValue() / 1e3);
+    }
+
+    private boolean send(DeliveryBackbone backbone, int messages, Histogram latency, int timeoutSeconds) throws Exception {
+        CountDownLatch received = new CountDownLatch(messages);
+        String run = Long.toString(System.nanoTime());
+        sink.set(payload -> {
+            Map<?, ?> messageData = (Map<?, ?>) payload.get("messageData");
+            if (run.equals(messageData.get("run"))) {
+                long sentAt = ((Number) messageData.get("sentAt")).longValue();
+                synchronized (latency) {
+                    latency.recordValue(Math.max(0, (System.nanoTime() - sentAt) / 1000));
+                }
+                received.countDown();
+            }
+        });
+
+        for (int i = 0; i < messages; i++) {
+            backbone.publish((long) (i % CONVERSATIONS), Map.of("run", run, "sentAt", System.nanoTime()));
+        }
+        return received.await(timeoutSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.StoredFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DirectUploadServiceTest {
+
+    private static final String SHA256 = "a".repeat(64);
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private DirectUploadService directUploadService;
+
+    @Test
+    void complete_TrustsStorageChecksumWithoutReadingObjectBack() throws Exception {
+        claimIntent();
+        when(fileService.statObject("uploads/1/doc.pdf")).thenReturn(new ObjectStorage.StoredObject(1024, "application/pdf", SHA256, "\"e\"", Instant.now()));
+        StoredFile stored = new StoredFile(9L, "uploads/1/doc.pdf", FileService.FILE_PATH + 9, SHA256, 1024, "application/pdf");
+        when(fileService.registerObject("doc.pdf", 1024, "application/pdf", "uploads/1/doc.pdf", SHA256, 1L)).thenReturn(stored);
+
+        assertEquals(stored, directUploadService.complete(1L, "intent-1"));
+
+        verify(fileService, never()).hashObject(anyString());
+        verify(jdbcTemplate).update(anyString(), eq("COMPLETED"), eq(9L), eq("intent-1"));
+    }
+
+    @Test
+    void complete_RemovesObjectThatDoesNotMatchIntent() throws Exception {
+        claimIntent();
+        when(fileService.statObject("uploads/1/doc.pdf")).thenReturn(new ObjectStorage.StoredObject(4096, "application/pdf", SHA256, "\"e\"", Instant.now()));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> directUploadService.complete(1L, "intent-1"));
+
+        assertEquals("Uploaded file does not match the declared size", error.getMessage());
+        verify(fileService).removeObject("uploads/1/doc.pdf");
+        verify(fileService, never()).registerObject(anyString(), anyLong(), anyString(), anyString(), any(), any());
+        verify(jdbcTemplate).update(anyString(), eq("FAILED"), eq("intent-1"));
+    }
+
+    @Test
+    void removeExpiredIntents_KeepsObjectOfStalledCompletionThatWasRegistered() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM upload_intents"), any(Object[].class))).thenReturn(List.of(
+                Map.of("status", "COMPLETING", "object_name", "uploads/1/registered.pdf"),
+                Map.of("status", "PENDING", "object_name", "uploads/1/abandoned.pdf"),
+                Map.of("status", "COMPLETED", "object_name", "uploads/1/done.pdf")));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("uploads/1/registered.pdf"), eq("uploads/1/registered.pdf")))
+                .thenReturn(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("uploads/1/abandoned.pdf"), eq("uploads/1/abandoned.pdf")))
+                .thenReturn(false);
+
+        directUploadService.removeExpiredIntents();
+
+        verify(fileService).removeObject("uploads/1/abandoned.pdf");
+        verify(fileService, never()).removeObject("uploads/1/registered.pdf");
+        verify(fileService, never()).removeObject("uploads/1/done.pdf");
+    }
+
+    private void claimIntent() {
+        when(jdbcTemplate.queryForList(anyString(), eq("COMPLETING"), eq("intent-1"), eq(1L), eq("PENDING")))
+                .thenReturn(List.of(Map.of(
+                        "object_name", "uploads/1/doc.pdf",
+                        "original_filename", "doc.pdf",
+                        "content_type", "application/pdf",
+                        "declared_size", 1024L,
+                        "sha256", SHA256)));
+    }
+}
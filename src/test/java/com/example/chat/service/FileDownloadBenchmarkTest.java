@@ -0,0 +1,141 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Download throughput of each backend into a real socket, full objects and random ranges as a seeking
+// player requests them, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class FileDownloadBenchmarkTest {
+
+    private static final int SIZE = 64 * 1024 * 1024;
+    private static final int DOWNLOADS = 20;
+    private static final int RANGES = 500;
+    private static final int RANGE_SIZE = 1024 * 1024;
+    private static final String OBJECT = "bench/video.bin";
+
+    @Container
+    private static final GenericContainer<?> minio = new GenericContainer<>("minio/minio:RELEASE.2023-12-02T10-51-33Z")
+            .withCommand("server", "/data")
+            .withEnv("MINIO_ROOT_USER", "minioadmin")
+            .withEnv("MINIO_ROOT_PASSWORD", "minioadmin")
+            .withExposedPorts(9000)
+            .waitingFor(Wait.forHttp("/minio/health/live").forPort(9000));
+
+    @TempDir
+    static Path root;
+
+    private static LocalObjectStorage localStorage;
+    private static MinioObjectStorage minioStorage;
+    private static ServerSocketChannel server;
+    private static SocketChannel client;
+    private static Thread drain;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        byte[] content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+
+        localStorage = new LocalObjectStorage();
+        ReflectionTestUtils.setField(localStorage, "rootDirectory", root.toString());
+        localStorage.init();
+        localStorage.put(OBJECT, new ByteArrayInputStream(content), SIZE, "application/octet-stream");
+
+        minioStorage = new MinioObjectStorage();
+        ReflectionTestUtils.setField(minioStorage, "minioEndpoint", "http://" + minio.getHost() + ":" + minio.getMappedPort(9000));
+        ReflectionTestUtils.setField(minioStorage, "accessKey", "minioadmin");
+        ReflectionTestUtils.setField(minioStorage, "secretKey", "minioadmin");
+        ReflectionTestUtils.setField(minioStorage, "bucketName", "chat-files");
+        ReflectionTestUtils.setField(minioStorage, "maxIdleConnections", 32);
+        ReflectionTestUtils.setField(minioStorage, "connectTimeout", 5000L);
+        ReflectionTestUtils.setField(minioStorage, "readTimeout", 60000L);
+        minioStorage.init();
+        minioStorage.put(OBJECT, new ByteArrayInputStream(content), SIZE, "application/octet-stream");
+
+        // The far end of the socket discards everything, as a client with a fast link would
+        server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        drain = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            try {
+                while (accepted.read(buffer.clear()) >= 0) {
+                    // discard
+                }
+            } catch (Exception e) {
+                // closed at the end of the run
+            }
+        });
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void localStorage_ZeroCopyAgainstStreamCopy() throws Exception {
+        run("local stream copy", (offset, length) -> {
+            try (InputStream inputStream = localStorage.get(OBJECT, offset, length)) {
+                inputStream.transferTo(Channels.newOutputStream(client));
+            }
+        });
+        run("local transferTo", (offset, length) -> localStorage.transferTo(OBJECT, offset, length, client));
+    }
+
+    @Test
+    void minioStorage() throws Exception {
+        run("minio", (offset, length) -> minioStorage.transferTo(OBJECT, offset, length, client));
+    }
+
+    private void run(String name, Download download) throws Exception {
+        // Warm-up
+        for (int i = 0; i < 3; i++) {
+            download.send(0, SIZE);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            download.send(0, SIZE);
+        }
+        long full = System.nanoTime() - start;
+
+        Random random = new Random(7);
+        start = System.nanoTime();
+        for (int i = 0; i < RANGES; i++) {
+            download.send(random.nextInt(SIZE - RANGE_SIZE), RANGE_SIZE);
+        }
+        long ranged = System.nanoTime() - start;
+
+        System.out.printf("%s full=%.1f MB/s (%.1fms per %dMB) ranges=%.2fms per %dKB range%n",
+                name,
+                (double) SIZE * DOWNLOADS / (full / 1e9) / (1024 * 1024), full / 1e6 / DOWNLOADS, SIZE / (1024 * 1024),
+                ranged / 1e6 / RANGES, RANGE_SIZE / 1024);
+    }
+
+    private interface Download {
+        void send(long offset, long length) throws Exception;
+    }
+}
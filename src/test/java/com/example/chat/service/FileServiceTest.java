@@ -0,0 +1,123 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.StoredFile;
+import com.example.chat.model.FileMetadata;
+import com.example.chat.repository.FileMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileServiceTest {
+
+    @Mock
+    private ObjectStorage storage;
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(fileService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fileService, "urlExpirySeconds", 3600L);
+        ReflectionTestUtils.setField(fileService, "presignCacheSize", 100L);
+        fileService.init();
+    }
+
+    @Test
+    void uploadFile_HashesWhileStreamingAndDeduplicatesContent() throws Exception {
+        byte[] content = "hello world".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        // Storage drains the stream, as the real backends do
+        doAnswer(invocation -> invocation.getArgument(1, InputStream.class).readAllBytes())
+                .when(storage).put(anyString(), any(InputStream.class), anyLong(), anyString());
+        // The first upload creates the blob, the second one finds it
+        AtomicReference<String> blobPath = new AtomicReference<>();
+        when(jdbcTemplate.queryForList(anyString(), anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+            blobPath.compareAndSet(null, invocation.getArgument(2));
+            return List.of(Map.of("storage_path", blobPath.get(), "file_size", (long) content.length));
+        });
+        AtomicLong ids = new AtomicLong();
+        when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation -> {
+            FileMetadata metadata = invocation.getArgument(0);
+            metadata.setId(ids.incrementAndGet());
+            return metadata;
+        });
+
+        StoredFile first = fileService.uploadFile(new MockMultipartFile("file", "a.txt", "text/plain", content), 1L);
+        StoredFile second = fileService.uploadFile(new MockMultipartFile("file", "b.txt", "text/plain", content), 2L);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(expected, first.getSha256());
+        assertEquals(content.length, first.getSize());
+        assertEquals("/api/files/1", first.getUrl());
+        assertEquals(first.getObjectName(), second.getObjectName());
+        verify(storage, times(2)).put(anyString(), any(InputStream.class), anyLong(), anyString());
+        // Only the duplicate copy is removed
+        verify(storage, times(1)).remove(anyString());
+        verify(storage, never()).remove(first.getObjectName());
+    }
+
+    @Test
+    void uploadByHash_OnlyReferencesContentReadableByUser() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        String sha256 = "a".repeat(64);
+        // Content exists but was neither uploaded by user 2 nor shared with it
+        when(jdbcTemplate.queryForList(contains("uploaded_by = ?"), eq(sha256), eq(2L), eq(2L))).thenReturn(List.of());
+
+        assertNull(fileService.uploadByHash(sha256, "a.txt", "text/plain", 2L));
+        verify(fileMetadataRepository, never()).save(any(FileMetadata.class));
+    }
+
+    @Test
+    void getCachedFileUrl_PresignsOncePerObjectAndBucket() throws Exception {
+        when(storage.presignGet("uploads/1/a.png", 7200)).thenReturn("http://localhost:9000/chat-files/uploads/1/a.png?X-Amz-Signature=1");
+
+        FileService.PresignedUrl first = fileService.getCachedFileUrl("uploads/1/a.png");
+        FileService.PresignedUrl second = fileService.getCachedFileUrl("uploads/1/a.png");
+
+        assertEquals(first.url(), second.url());
+        assertTrue(first.maxAgeSeconds() > 0 && first.maxAgeSeconds() <= 3600);
+        verify(storage, times(1)).presignGet("uploads/1/a.png", 7200);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.chat.service;
+
+import com.example.chat.model.FileMetadata;
+import com.example.chat.repository.FileMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.BucketExistsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Upload latency and throughput against MinIO, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class FileUploadBenchmarkTest {
+
+    private static final int[] SIZES = {4 * 1024, 256 * 1024, 4 * 1024 * 1024};
+    private static final int UPLOADS = 50;
+
+    @Container
+    private static final GenericContainer<?> minio = new GenericContainer<>("minio/minio:RELEASE.2023-12-02T10-51-33Z")
+            .withCommand("server", "/data")
+            .withEnv("MINIO_ROOT_USER", "minioadmin")
+            .withEnv("MINIO_ROOT_PASSWORD", "minioadmin")
+            .withExposedPorts(9000)
+            .waitingFor(Wait.forHttp("/minio/health/live").forPort(9000));
+
+    private static String endpoint;
+    private static FileService fileService;
+
+    @BeforeAll
+    static void setUp() {
+        endpoint = "http://" + minio.getHost() + ":" + minio.getMappedPort(9000);
+
+        MinioObjectStorage storage = new MinioObjectStorage();
+        ReflectionTestUtils.setField(storage, "minioEndpoint", endpoint);
+        ReflectionTestUtils.setField(storage, "accessKey", "minioadmin");
+        ReflectionTestUtils.setField(storage, "secretKey", "minioadmin");
+        ReflectionTestUtils.setField(storage, "bucketName", "chat-files");
+        ReflectionTestUtils.setField(storage, "maxIdleConnections", 32);
+        ReflectionTestUtils.setField(storage, "connectTimeout", 5000L);
+        ReflectionTestUtils.setField(storage, "readTimeout", 60000L);
+        storage.init();
+        storage.onApplicationReady();
+
+        fileService = new FileService();
+        ReflectionTestUtils.setField(fileService, "storage", storage);
+        ReflectionTestUtils.setField(fileService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fileService, "urlExpirySeconds", 3600L);
+        ReflectionTestUtils.setField(fileService, "presignCacheSize", 100L);
+        FileMetadataRepository fileMetadataRepository = mock(FileMetadataRepository.class);
+        when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ReflectionTestUtils.setField(fileService, "fileMetadataRepository", fileMetadataRepository);
+        ReflectionTestUtils.setField(fileService, "thumbnailService", mock(ThumbnailService.class));
+        // Every upload is new content, the benchmark measures the storage path only
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), anyString(), anyString(), anyLong())).thenAnswer(invocation ->
+                List.of(Map.of("storage_path", invocation.getArgument(2), "file_size", invocation.getArgument(3))));
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(fileService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(fileService, "transactionManager", transactionManager);
+        fileService.init();
+    }
+
+    @Test
+    void upload_SharedClientAgainstPerCallClient() throws Exception {
+        Random random = new Random(42);
+        for (int size : SIZES) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+
+            // The first iterations warm up the JIT and the connection pool
+            for (int i = 0; i < 5; i++) {
+                perCallClientUpload(content, i);
+                fileService.uploadFile(new MockMultipartFile("file", "warm.pdf", "application/pdf", content), 1L);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < UPLOADS; i++) {
+                perCallClientUpload(content, i);
+            }
+            long perCall = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < UPLOADS; i++) {
+                fileService.uploadFile(new MockMultipartFile("file", "bench.pdf", "application/pdf", content), 1L);
+            }
+            long shared = System.nanoTime() - start;
+
+            System.out.printf("upload size=%dKB per-call client=%.2fms/upload (%.1f MB/s) shared client=%.2fms/upload (%.1f MB/s)%n",
+                    size / 1024,
+                    perCall / 1e6 / UPLOADS, (double) size * UPLOADS / (perCall / 1e9) / (1024 * 1024),
+                    shared / 1e6 / UPLOADS, (double) size * UPLOADS / (shared / 1e9) / (1024 * 1024));
+        }
+    }
+
+    // The previous pipeline: a client per call, a bucket check per upload and a separate hashing pass
+    private void perCallClientUpload(byte[] content, int i) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "legacy.pdf", "application/pdf", content);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream inputStream = file.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        MinioClient client = MinioClient.builder().endpoint(endpoint).credentials("minioadmin", "minioadmin").build();
+        if (!client.bucketExists(BucketExistsArgs.builder().bucket("chat-files").build())) {
+            client.makeBucket(MakeBucketArgs.builder().bucket("chat-files").build());
+        }
+        try (InputStream inputStream = file.getInputStream()) {
+            client.putObject(PutObjectArgs.builder()
+                    .bucket("chat-files")
+                    .object("legacy/" + content.length + "-" + i)
+                    .stream(inputStream, file.getSize(), -1)
+                    .contentType(file.getContentType())
+                    .build());
+        }
+    }
+}
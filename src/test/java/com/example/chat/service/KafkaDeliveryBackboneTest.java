@@ -0,0 +1,78 @@
+package com.example.chat.service;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KafkaDeliveryBackboneTest {
+
+    private static final TopicPartition FRESH = new TopicPartition("chat.delivery", 0);
+    private static final TopicPartition STALE = new TopicPartition("chat.delivery", 1);
+    private static final TopicPartition NEW_NODE = new TopicPartition("chat.delivery", 2);
+    private static final TopicPartition IDLE = new TopicPartition("chat.delivery", 3);
+
+    @Mock
+    private Consumer<String, String> consumer;
+
+    @InjectMocks
+    private KafkaDeliveryBackbone kafkaDeliveryBackbone;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(kafkaDeliveryBackbone, "replayWindow", 60000L);
+    }
+
+    @Test
+    void onPartitionsAssigned_ReplaysAtMostTheWindow() {
+        Map<TopicPartition, OffsetAndTimestamp> windowStart = new HashMap<>();
+        windowStart.put(FRESH, new OffsetAndTimestamp(100, 0));
+        windowStart.put(STALE, new OffsetAndTimestamp(500, 0));
+        windowStart.put(NEW_NODE, new OffsetAndTimestamp(40, 0));
+        windowStart.put(IDLE, null);
+        when(consumer.offsetsForTimes(any())).thenReturn(windowStart);
+
+        Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+        committed.put(FRESH, new OffsetAndMetadata(120));
+        committed.put(STALE, new OffsetAndMetadata(20));
+        committed.put(IDLE, new OffsetAndMetadata(7));
+        when(consumer.committed(anySet())).thenReturn(committed);
+
+        kafkaDeliveryBackbone.onPartitionsAssigned(consumer, List.of(FRESH, STALE, NEW_NODE, IDLE));
+
+        // A committed offset inside the window is resumed, anything older starts at the window
+        verify(consumer, never()).seek(eq(FRESH), anyLong());
+        verify(consumer).seek(STALE, 500L);
+        verify(consumer).seek(NEW_NODE, 40L);
+        verify(consumer).seekToEnd(List.of(IDLE));
+    }
+
+    @Test
+    void init_WithoutStableNodeId_FailsFast() {
+        // A random id per start would leave a new consumer group and its offsets behind on every restart
+        ReflectionTestUtils.setField(kafkaDeliveryBackbone, "nodeId", "");
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> kafkaDeliveryBackbone.init());
+        assertTrue(e.getMessage().contains("app.presence.node-id"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LastSeenServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private LastSeenService lastSeenService;
+
+    @Test
+    void recordLastSeen_KeepsLatestTimestamp() {
+        LocalDateTime earlier = LocalDateTime.now().minusMinutes(5);
+        LocalDateTime later = LocalDateTime.now();
+
+        lastSeenService.recordLastSeen(1L, later);
+        lastSeenService.recordLastSeen(1L, earlier);
+
+        assertEquals(later, lastSeenService.getPendingLastSeen(1L));
+    }
+
+    @Test
+    void flush_WritesPendingUsersInBatches() {
+        ReflectionTestUtils.setField(lastSeenService, "batchSize", 2);
+        for (long userId = 1; userId <= 5; userId++) {
+            lastSeenService.recordLastSeen(userId, LocalDateTime.now());
+        }
+
+        lastSeenService.flush();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, times(3)).update(sql.capture(), any(Object[].class));
+        assertTrue(sql.getValue().startsWith("UPDATE users u SET last_seen = v.last_seen FROM (VALUES "));
+        assertNull(lastSeenService.getPendingLastSeen(1L));
+    }
+
+    @Test
+    void flush_Failure_KeepsUsersPending() {
+        lastSeenService.recordLastSeen(1L, LocalDateTime.now());
+        ReflectionTestUtils.setField(lastSeenService, "batchSize", 500);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenThrow(new RuntimeException("db down"));
+
+        lastSeenService.flush();
+
+        assertNotNull(lastSeenService.getPendingLastSeen(1L));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalObjectStorageTest {
+
+    @TempDir
+    Path root;
+
+    private LocalObjectStorage storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new LocalObjectStorage();
+        ReflectionTestUtils.setField(storage, "rootDirectory", root.toString());
+        storage.init();
+    }
+
+    @Test
+    void transferTo_SendsRequestedRangeOnly() throws Exception {
+        byte[] content = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        storage.put("uploads/1/a.txt", new ByteArrayInputStream(content), content.length, "text/plain");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        storage.transferTo("uploads/1/a.txt", 4, 6, Channels.newChannel(output));
+
+        assertEquals("456789", output.toString(StandardCharsets.US_ASCII));
+        try (InputStream inputStream = storage.get("uploads/1/a.txt", 10, -1)) {
+            assertEquals("abcdef", new String(inputStream.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+        assertEquals(content.length, storage.stat("uploads/1/a.txt").size());
+        assertNull(storage.stat("uploads/1/missing.txt"));
+    }
+
+    @Test
+    void completeMultipartUpload_ConcatenatesPartsInOrder() throws Exception {
+        String uploadId = storage.createMultipartUpload("uploads/1/big.pdf", "application/pdf");
+        // Parts may arrive in any order
+        storage.uploadPart("uploads/1/big.pdf", uploadId, 2, new ByteArrayInputStream(new byte[]{3, 4}), 2);
+        storage.uploadPart("uploads/1/big.pdf", uploadId, 1, new ByteArrayInputStream(new byte[]{1, 2}), 2);
+
+        storage.completeMultipartUpload("uploads/1/big.pdf", uploadId, List.of("\"1\"", "\"2\""));
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, Files.readAllBytes(root.resolve("uploads/1/big.pdf")));
+        assertFalse(Files.exists(root.resolve(".multipart").resolve(uploadId)));
+    }
+
+    @Test
+    void put_RejectsNamesOutsideRoot() {
+        assertThrows(IllegalArgumentException.class, () ->
+                storage.put("../escape.txt", new ByteArrayInputStream(new byte[1]), 1, "text/plain"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.MessageDto;
+import com.example.chat.model.MessageArchiveSegment;
+import com.example.chat.repository.MessageArchiveSegmentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageArchiveServiceTest {
+
+    @Mock
+    private MessageArchiveSegmentRepository segmentRepository;
+
+    @InjectMocks
+    private MessageArchiveService messageArchiveService;
+
+    @TempDir
+    Path localDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(messageArchiveService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(messageArchiveService, "localDir", localDir.toString());
+        ReflectionTestUtils.setField(messageArchiveService, "segmentCacheSize", 8);
+        messageArchiveService.init();
+    }
+
+    @Test
+    void readThrough_SegmentAcrossClearWatermark_CountsOnlyVisibleMessages() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+        writeSegment("archive/1/segment.ndjson.gz", start, 1L, 2L, 3L, 4L);
+        when(segmentRepository.findByConversationIdOrderByRangeEndDesc(1L)).thenReturn(List.of(
+                new MessageArchiveSegment(1L, start, start.plusMinutes(3), 1L, 4L, 4, "local", "archive/1/segment.ndjson.gz")));
+        Page<MessageDto> hot = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
+
+        Page<MessageDto> first = messageArchiveService.readThrough(1L, 2L, null, PageRequest.of(0, 1), hot);
+        Page<MessageDto> second = messageArchiveService.readThrough(1L, 2L, null, PageRequest.of(1, 1), hot);
+        Page<MessageDto> third = messageArchiveService.readThrough(1L, 2L, null, PageRequest.of(2, 1), hot);
+
+        assertEquals(2, first.getTotalElements());
+        assertEquals(2, first.getTotalPages());
+        assertEquals(List.of(4L), first.getContent().stream().map(MessageDto::getId).toList());
+        assertEquals(List.of(3L), second.getContent().stream().map(MessageDto::getId).toList());
+        assertEquals(List.of(), third.getContent());
+    }
+
+    private void writeSegment(String key, LocalDateTime start, Long... ids) throws Exception {
+        Path path = localDir.resolve(key);
+        Files.createDirectories(path.getParent());
+        try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(path))) {
+            for (int i = 0; i < ids.length; i++) {
+                MessageDto message = new MessageDto();
+                message.setId(ids[i]);
+                message.setContent("message " + ids[i]);
+                message.setCreatedAt(start.plusMinutes(i));
+                gzip.write(objectMapper.writeValueAsBytes(message));
+                gzip.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.chat.service;
+
+import com.example.chat.cache.RecentMessageBuffer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+// Import throughput against the 100k rows/sec target, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class MessageImportBenchmarkTest {
+
+    private static final int ROWS = 1_000_000;
+    private static final int CONVERSATIONS = 1000;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @TempDir
+    static Path tempDir;
+
+    private static JdbcTemplate jdbcTemplate;
+    private static MessagePartitionService partitionService;
+    private static MessageImportService importService;
+    private static long firstUserId;
+    private static long firstConversationId;
+
+    @BeforeAll
+    static void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure().dataSource(dataSource)
+                .placeholders(Map.of("minio-endpoint", "http://localhost:9000", "minio-bucket", "chat-files"))
+                .load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO users (username, email, password) " +
+                "SELECT 'user' || i, 'user' || i || '@example.com', 'x' FROM generate_series(1, 100) AS i");
+        firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+        jdbcTemplate.update("INSERT INTO conversations (type, name) SELECT 'GROUP', 'import' || i FROM generate_series(1, ?) AS i",
+                CONVERSATIONS);
+        firstConversationId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM conversations", Long.class);
+
+        partitionService = new MessagePartitionService();
+        ReflectionTestUtils.setField(partitionService, "jdbcTemplate", jdbcTemplate);
+
+        importService = new MessageImportService();
+        ReflectionTestUtils.setField(importService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(importService, "dataSource", dataSource);
+        ReflectionTestUtils.setField(importService, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(importService, "messagePartitionService", partitionService);
+        ReflectionTestUtils.setField(importService, "recentMessageBuffer", mock(RecentMessageBuffer.class));
+        ReflectionTestUtils.setField(importService, "batchSize", 50000);
+    }
+
+    @Test
+    void importMessages_RowsPerSecond() throws Exception {
+        Path file = tempDir.resolve("messages.ndjson");
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.write(String.format("{\"conversationId\":%d,\"senderId\":%d,\"content\":\"imported message %d, with a comma\"," +
+                                "\"status\":\"READ\",\"createdAt\":\"%s\"}%n",
+                        firstConversationId + i % CONVERSATIONS, firstUserId + i % 100, i, start.plusSeconds(i * 30L)));
+            }
+        }
+
+        long started = System.nanoTime();
+        Map<String, Object> result;
+        try (InputStream input = Files.newInputStream(file)) {
+            result = importService.importMessages(input, null, "benchmark");
+        }
+        long elapsed = System.nanoTime() - started;
+
+        assertEquals((long) ROWS, ((Number) result.get("rows_imported")).longValue());
+        System.out.printf("importMessages rows=%d elapsed=%.2fs rows/sec=%.0f%n",
+                ROWS, elapsed / 1e9, ROWS / (elapsed / 1e9));
+    }
+
+    @Test
+    void importMessages_HistoryBeforeClearStaysHidden() throws Exception {
+        long conversationId = jdbcTemplate.queryForObject(
+                "INSERT INTO conversations (type, name, cleared_before_id, cleared_at) VALUES ('GROUP', 'cleared', 0, ?) RETURNING id",
+                Long.class, LocalDateTime.of(2024, 6, 1, 0, 0));
+        String lines = String.format(
+                "{\"conversationId\":%d,\"senderId\":%d,\"content\":\"before\",\"createdAt\":\"2024-05-31T12:00:00\"}%n" +
+                "{\"conversationId\":%d,\"senderId\":%d,\"content\":\"after\",\"createdAt\":\"2024-06-02T12:00:00\"}%n",
+                conversationId, firstUserId, conversationId, firstUserId);
+
+        Map<String, Object> result = importService.importMessages(
+                new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)), null, "cleared");
+
+        assertEquals(1L, ((Number) result.get("rows_imported")).longValue());
+        assertEquals(List.of("after"), jdbcTemplate.queryForList(
+                "SELECT content FROM messages WHERE conversation_id = ?", String.class, conversationId));
+
+        // An id based read anchored on a live message still finds the older imported row
+        partitionService.createPartition(YearMonth.of(2024, 7));
+        long anchor = jdbcTemplate.queryForObject(
+                "INSERT INTO messages (conversation_id, sender_id, content, created_at) VALUES (?, ?, 'live', '2024-07-01') RETURNING id",
+                Long.class, conversationId, firstUserId);
+        result = importService.importMessages(new ByteArrayInputStream(String.format(
+                "{\"conversationId\":%d,\"senderId\":%d,\"content\":\"late\",\"createdAt\":\"2024-06-03T12:00:00\"}%n",
+                conversationId, firstUserId).getBytes(StandardCharsets.UTF_8)), null, "late");
+        assertEquals(1L, ((Number) result.get("rows_imported")).longValue());
+        assertEquals(List.of("late"), jdbcTemplate.queryForList(
+                "SELECT m.content FROM messages m WHERE m.conversation_id = ? AND m.id > ? " +
+                "AND m.created_at >= LEAST(COALESCE((SELECT a.created_at - INTERVAL '1 minute' FROM messages a WHERE a.id = ?), '-infinity'), " +
+                "(SELECT MIN(i.min_created_at) FROM message_imports i WHERE i.last_message_id > ?))",
+                String.class, conversationId, anchor, anchor, anchor));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.MessageSearchResult;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Search latency over a large message table, run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+// The row count defaults to 50M, -Dbenchmark.search.rows= runs a smaller table
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class MessageSearchBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.search.rows", 50_000_000);
+    private static final int CHUNK = 1_000_000;
+    private static final int CONVERSATIONS = 1000;
+    private static final int MEMBER_OF = 100;
+    private static final int ROUNDS = 20;
+
+    private static final String[] WORDS = {
+            "meeting", "tomorrow", "project", "deadline", "release", "review", "design", "budget", "coffee", "lunch",
+            "weekend", "ticket", "deploy", "server", "database", "client", "invoice", "report", "schedule", "travel",
+            "flight", "hotel", "dinner", "birthday", "holiday", "update", "question", "answer", "problem", "solution",
+            "feature", "bug", "fix", "test", "build", "branch", "merge", "document", "slides", "call",
+            "office", "remote", "team", "manager", "contract", "payment", "order", "delivery", "support", "feedback"
+    };
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static MessageSearchService searchService;
+    private static long userId;
+    private static long conversationId;
+
+    @BeforeAll
+    static void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure().dataSource(dataSource)
+                .placeholders(Map.of("minio-endpoint", "http://localhost:9000", "minio-bucket", "chat-files"))
+                .load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        MessagePartitionService partitionService = new MessagePartitionService();
+        ReflectionTestUtils.setField(partitionService, "jdbcTemplate", jdbcTemplate);
+        for (int month = 1; month <= 12; month++) {
+            partitionService.createPartition(YearMonth.of(2024, month));
+        }
+
+        jdbcTemplate.update("INSERT INTO users (username, email, password) " +
+                "SELECT 'user' || i, 'user' || i || '@example.com', 'x' FROM generate_series(1, 100) AS i");
+        userId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+        jdbcTemplate.update("INSERT INTO conversations (type, name) SELECT 'GROUP', 'search' || i FROM generate_series(1, ?) AS i",
+                CONVERSATIONS);
+        conversationId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM conversations", Long.class);
+        jdbcTemplate.update("INSERT INTO conversation_members (conversation_id, user_id, role) " +
+                "SELECT ? + i, ?, 'MEMBER' FROM generate_series(0, ?) AS i", conversationId, userId, MEMBER_OF - 1);
+
+        // Eight words per message picked by multiplicative hashing, one in 10000 also carries a rare word
+        String words = "ARRAY[" + String.join(",", Arrays.stream(WORDS).map(word -> "'" + word + "'").toList()) + "]";
+        StringBuilder content = new StringBuilder();
+        for (int k = 0; k < 8; k++) {
+            content.append(k == 0 ? "" : " || ' ' || ")
+                    .append("w[1 + ((i::bigint * ").append(7919 + k * 104729).append(") % ").append(WORDS.length).append(")]");
+        }
+        long started = System.nanoTime();
+        for (int offset = 0; offset < ROWS; offset += CHUNK) {
+            jdbcTemplate.update("INSERT INTO messages (conversation_id, sender_id, content, created_at) " +
+                    "SELECT ? + i % ?, ? + i % 100, " + content + " || CASE WHEN i % 10000 = 0 THEN ' zephyr' ELSE '' END, " +
+                    "TIMESTAMP '2024-01-01' + (i % 31536000) * INTERVAL '1 second' " +
+                    "FROM generate_series(?, ?) AS i, (SELECT " + words + " AS w) v",
+                    conversationId, CONVERSATIONS, userId, offset, Math.min(offset + CHUNK, ROWS) - 1);
+        }
+        jdbcTemplate.execute("ANALYZE messages");
+        System.out.printf("search benchmark loaded rows=%d in %.1fs%n", ROWS, (System.nanoTime() - started) / 1e9);
+
+        searchService = new MessageSearchService();
+        ReflectionTestUtils.setField(searchService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(searchService, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(searchService, "maxPageSize", 50);
+    }
+
+    @Test
+    void search_LatencyByQueryShape() {
+        time("common word", () -> searchService.search(userId, "deadline", null, null, 20));
+        time("two words", () -> searchService.search(userId, "project review", null, null, 20));
+        time("phrase", () -> searchService.search(userId, "\"coffee meeting\"", null, null, 20));
+        time("rare word", () -> searchService.search(userId, "zephyr", null, null, 20));
+        time("one conversation", () -> searchService.search(userId, "deadline", conversationId, null, 20));
+
+        Map<String, Object> first = searchService.search(userId, "deadline", null, null, 20);
+        String cursor = (String) first.get("nextCursor");
+        time("second page", () -> searchService.search(userId, "deadline", null, cursor, 20));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_SnippetEscapesContent() {
+        jdbcTemplate.update("INSERT INTO messages (conversation_id, sender_id, content, created_at) VALUES (?, ?, ?, '2024-06-01')",
+                conversationId, userId, "<img src=x onerror=alert(1)> quokka & \"friends\"");
+
+        List<MessageSearchResult> results = (List<MessageSearchResult>) searchService.search(userId, "quokka", null, null, 20).get("results");
+
+        assertEquals(1, results.size());
+        String snippet = results.get(0).getSnippet();
+        assertFalse(snippet.contains("<img"), snippet);
+        assertTrue(snippet.contains("&lt;img"), snippet);
+        assertTrue(snippet.contains("<mark>quokka</mark>"), snippet);
+    }
+
+    private void time(String shape, Runnable search) {
+        // First round warms up the JIT and the Postgres plan and buffer caches
+        long[] elapsed = new long[ROUNDS];
+        search.run();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            search.run();
+            elapsed[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(elapsed);
+        System.out.printf("search %s rows=%d p50=%.2fms p95=%.2fms%n",
+                shape, ROWS, elapsed[ROUNDS / 2] / 1e6, elapsed[ROUNDS * 95 / 100] / 1e6);
+    }
+}
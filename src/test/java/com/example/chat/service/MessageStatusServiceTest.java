@@ -0,0 +1,116 @@
+package com.example.chat.service;
+
+import com.example.chat.cache.RecentMessageBuffer;
+import com.example.chat.dto.MessageStatusDto;
+import com.example.chat.model.Conversation;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageStatusServiceTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private DeliveryBackbone deliveryBackbone;
+
+    @Mock
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @InjectMocks
+    private MessageStatusService messageStatusService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Timer deliveryTimer;
+
+    @BeforeEach
+    void setUp() {
+        deliveryTimer = meterRegistry.timer("chat.message.delivery.time");
+        ReflectionTestUtils.setField(messageStatusService, "messagesDeliveredCounter", meterRegistry.counter("chat.messages.delivered"));
+        ReflectionTestUtils.setField(messageStatusService, "messagesReadCounter", meterRegistry.counter("chat.messages.read"));
+        ReflectionTestUtils.setField(messageStatusService, "messageDeliveryTimer", deliveryTimer);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void markAsDelivered_TimesFromTheEchoedSendTimestamp() {
+        // Created long ago, e.g. imported, the timer must not use it
+        when(messageRepository.findById(1L)).thenReturn(Optional.of(message(1L, LocalDateTime.now().minusDays(30))));
+        when(messageRepository.findById(2L)).thenReturn(Optional.of(message(2L, LocalDateTime.now().minusDays(30))));
+
+        messageStatusService.markAsDelivered(1L, 2L, "bob", System.currentTimeMillis() - 250);
+        messageStatusService.markAsDelivered(2L, 2L, "bob", null);
+
+        assertEquals(2.0, meterRegistry.counter("chat.messages.delivered").count());
+        assertEquals(1, deliveryTimer.count());
+        double millis = deliveryTimer.totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(millis >= 250 && millis < 60_000, "recorded " + millis + "ms");
+    }
+
+    @Test
+    void markAsDelivered_PublishesToOtherNodesOnlyAfterCommit() {
+        when(messageRepository.findById(1L)).thenReturn(Optional.of(message(1L, LocalDateTime.now())));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            messageStatusService.markAsDelivered(1L, 2L, "bob", null);
+            verify(deliveryBackbone, never()).publish(anyLong(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(deliveryBackbone).publish(eq(10L), any(MessageStatusDto.class));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Message message(Long id, LocalDateTime createdAt) {
+        User sender = new User("alice", "alice@example.com", "x");
+        sender.setId(1L);
+        Conversation conversation = new Conversation(Conversation.Type.DIRECT, null);
+        conversation.setId(10L);
+
+        Message message = new Message();
+        message.setId(id);
+        message.setSender(sender);
+        message.setConversation(conversation);
+        message.setStatus(Message.Status.SENT);
+        message.setCreatedAt(createdAt);
+        return message;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chat.service;
+
+import io.minio.BucketExistsArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MinioObjectStorageTest {
+
+    @Mock
+    private MinioClient minioClient;
+
+    @Test
+    void put_ChecksBucketOnlyOnce() throws Exception {
+        MinioObjectStorage storage = new MinioObjectStorage();
+        ReflectionTestUtils.setField(storage, "bucketName", "chat-files");
+        ReflectionTestUtils.setField(storage, "minioClient", minioClient);
+        when(minioClient.bucketExists(any(BucketExistsArgs.class))).thenReturn(true);
+
+        storage.put("uploads/1/a.txt", new ByteArrayInputStream(new byte[3]), 3, "text/plain");
+        storage.put("uploads/1/b.txt", new ByteArrayInputStream(new byte[3]), 3, "text/plain");
+
+        verify(minioClient, times(1)).bucketExists(any(BucketExistsArgs.class));
+        verify(minioClient, times(2)).putObject(any(PutObjectArgs.class));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.events.MessageEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @InjectMocks
+    private OutboxRelay outboxRelay;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(outboxRelay, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(outboxRelay, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(outboxRelay, "batchSize", 10);
+        ReflectionTestUtils.setField(outboxRelay, "sendTimeout", 1000L);
+        outboxRelay.init();
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), anyLong())).thenReturn(true);
+
+        MessageEvent event = new MessageEvent();
+        event.setMessageId(7L);
+        event.setEventType(MessageEvent.Type.MESSAGE_SENT);
+        when(jdbcTemplate.queryForList(anyString(), eq(10))).thenReturn(List.of(Map.of(
+                "id", 42L,
+                "topic", "chat.message.events",
+                "event_key", "7",
+                "event_type", "MessageEvent",
+                "payload", objectMapper.writeValueAsString(event))));
+    }
+
+    @Test
+    void relay_AcknowledgedBatch_IsRemovedFromOutbox() {
+        when(kafkaTemplate.send(eq("chat.message.events"), eq("7"), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        outboxRelay.relay();
+
+        verify(kafkaTemplate).flush();
+        verify(jdbcTemplate).update(eq("DELETE FROM event_outbox WHERE id = ANY(?)"), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    void relay_FailedSend_KeepsEventsForNextPass() {
+        when(kafkaTemplate.send(eq("chat.message.events"), eq("7"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+
+        outboxRelay.relay();
+
+        verify(jdbcTemplate, never()).update(eq("DELETE FROM event_outbox WHERE id = ANY(?)"), any(PreparedStatementSetter.class));
+        verify(transactionManager).rollback(any());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.chat.service;
+
+import com.example.chat.model.User;
+import com.example.chat.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private PresenceRegistry presenceRegistry;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LastSeenService lastSeenService;
+
+    @Mock
+    private MessageService messageService;
+
+    @InjectMocks
+    private PresenceService presenceService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User("testuser", "test@example.com", "encodedPassword");
+        user.setId(1L);
+    }
+
+    @Test
+    void sessionConnected_FirstSession_SetsUserOnline() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(presenceRegistry.addSession(1L)).thenReturn(true);
+
+        presenceService.sessionConnected("s1", 1L, "testuser");
+
+        verify(valueOperations).set(eq("user_last_seen:1"), anyString());
+        verify(messageService).deliverOfflineMessages(1L);
+    }
+
+    @Test
+    void sessionConnected_AdditionalSession_DoesNotRepeatOnlineTransition() {
+        when(presenceRegistry.addSession(1L)).thenReturn(false);
+
+        presenceService.sessionConnected("s2", 1L, "testuser");
+
+        verify(messageService, never()).deliverOfflineMessages(any());
+    }
+
+    @Test
+    void sessionDisconnected_OtherSessionsOpen_KeepsUserOnline() {
+        when(presenceRegistry.addSession(1L)).thenReturn(false);
+        when(presenceRegistry.removeSession(1L)).thenReturn(false);
+
+        presenceService.sessionConnected("s1", 1L, "testuser");
+        presenceService.sessionDisconnected("s1", "testuser");
+
+        verify(lastSeenService, never()).recordLastSeen(any(), any());
+    }
+
+    @Test
+    void sessionDisconnected_LastSession_SetsUserOfflineOnce() {
+        when(presenceRegistry.addSession(1L)).thenReturn(false);
+        when(presenceRegistry.removeSession(1L)).thenReturn(true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        presenceService.sessionConnected("s1", 1L, "testuser");
+        presenceService.sessionDisconnected("s1", "testuser");
+        presenceService.sessionDisconnected("s1", "testuser");
+
+        verify(presenceRegistry, times(1)).removeSession(1L);
+        verify(lastSeenService, times(1)).recordLastSeen(eq(1L), any());
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void heartbeatNode_ExpiredNode_ReapsItsSessions() {
+        when(presenceRegistry.findExpiredNodes(anyLong())).thenReturn(List.of("dead-node"));
+        when(presenceRegistry.reapExpiredNode(eq("dead-node"), anyLong())).thenReturn(List.of(1L));
+        when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        presenceService.heartbeatNode();
+
+        verify(presenceRegistry).heartbeat();
+        verify(lastSeenService).recordLastSeen(eq(1L), any());
+    }
+
+    @Test
+    void heartbeatNode_ReapFails_ReapsRemainingNodes() {
+        when(presenceRegistry.findExpiredNodes(anyLong())).thenReturn(List.of("dead-node", "other-node"));
+        when(presenceRegistry.reapExpiredNode(eq("dead-node"), anyLong())).thenThrow(new RuntimeException("Connection reset"));
+        when(presenceRegistry.reapExpiredNode(eq("other-node"), anyLong())).thenReturn(List.of());
+
+        presenceService.heartbeatNode();
+
+        verify(presenceRegistry).reapExpiredNode(eq("other-node"), anyLong());
+    }
+
+    @Test
+    void heartbeatNode_AfterBeingReaped_RestoresLocalSessions() {
+        when(presenceRegistry.addSession(1L)).thenReturn(false);
+        presenceService.sessionConnected("s1", 1L, "testuser");
+        presenceService.sessionConnected("s2", 1L, "testuser");
+
+        when(presenceRegistry.heartbeat()).thenReturn(true);
+        when(presenceRegistry.restoreSessions(Map.of(1L, 2))).thenReturn(List.of(1L));
+        when(presenceRegistry.findExpiredNodes(anyLong())).thenReturn(List.of());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        presenceService.heartbeatNode();
+
+        verify(presenceRegistry).restoreSessions(Map.of(1L, 2));
+        verify(messageService).deliverOfflineMessages(1L);
+    }
+
+    @Test
+    void heartbeatNode_NotReaped_DoesNotRestoreSessions() {
+        when(presenceRegistry.addSession(1L)).thenReturn(false);
+        presenceService.sessionConnected("s1", 1L, "testuser");
+
+        when(presenceRegistry.heartbeat()).thenReturn(false);
+        when(presenceRegistry.findExpiredNodes(anyLong())).thenReturn(List.of());
+
+        presenceService.heartbeatNode();
+
+        verify(presenceRegistry, never()).restoreSessions(any());
+    }
+
+    @Test
+    void areOnline_RedisUnavailable_ReportsEveryoneOffline() {
+        when(presenceRegistry.areOnline(any())).thenThrow(new RuntimeException("Connection refused"));
+
+        boolean[] online = presenceService.areOnline(new long[] { 1L, 2L, 3L });
+
+        assertArrayEquals(new boolean[] { false, false, false }, online);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.StoredFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+
+    private static final long CHUNK = 5 * 1024 * 1024;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ResumableUploadService resumableUploadService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(resumableUploadService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(resumableUploadService, "chunkSize", CHUNK);
+        ReflectionTestUtils.setField(resumableUploadService, "maxSize", 5L * 1024 * 1024 * 1024);
+        resumableUploadService.init();
+    }
+
+    @Test
+    void uploadChunk_RejectsMisalignedChunkBeforeTouchingStorage() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq("upload-1"), eq(1L))).thenReturn(List.of(session("UPLOADING")));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> resumableUploadService
+                .uploadChunk(1L, "upload-1", 2, CHUNK - 1, CHUNK, new ByteArrayInputStream(new byte[0])));
+
+        assertEquals("Chunk 2 starts at offset " + CHUNK, error.getMessage());
+        verify(fileService, never()).uploadPart(anyString(), anyString(), anyInt(), any(), anyLong());
+    }
+
+    @Test
+    void complete_AssemblesPartsInOrderAndRegistersObject() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq("COMPLETING"), eq("upload-1"), eq(1L), eq("UPLOADING")))
+                .thenReturn(List.of(session("COMPLETING")));
+        when(jdbcTemplate.queryForList(anyString(), eq("upload-1")))
+                .thenReturn(List.of(Map.of("etag", "\"a\""), Map.of("etag", "\"b\""), Map.of("etag", "\"c\"")));
+        StoredFile stored = new StoredFile(7L, "uploads/1/big.pdf", FileService.FILE_PATH + 7, "ab", 2 * CHUNK + 10, "application/pdf");
+        when(fileService.registerObject("big.pdf", 2 * CHUNK + 10, "application/pdf", "uploads/1/big.pdf", null, 1L)).thenReturn(stored);
+
+        assertEquals(stored, resumableUploadService.complete(1L, "upload-1"));
+
+        verify(fileService).completeMultipartUpload("uploads/1/big.pdf", "storage-1", List.of("\"a\"", "\"b\"", "\"c\""));
+        verify(jdbcTemplate).update(anyString(), eq("COMPLETED"), eq(7L), eq("upload-1"));
+    }
+
+    @Test
+    void complete_WithMissingChunksReopensSession() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq("COMPLETING"), eq("upload-1"), eq(1L), eq("UPLOADING")))
+                .thenReturn(List.of(session("COMPLETING")));
+        when(jdbcTemplate.queryForList(anyString(), eq("upload-1"))).thenReturn(List.of(Map.of("etag", "\"a\"")));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> resumableUploadService.complete(1L, "upload-1"));
+
+        assertEquals("Upload is missing 2 chunks", error.getMessage());
+        verify(fileService, never()).completeMultipartUpload(anyString(), anyString(), any());
+        verify(jdbcTemplate).update(anyString(), eq("UPLOADING"), eq("upload-1"));
+    }
+
+    private Map<String, Object> session(String status) {
+        Map<String, Object> session = new HashMap<>();
+        session.put("status", status);
+        session.put("object_name", "uploads/1/big.pdf");
+        session.put("storage_upload_id", "storage-1");
+        session.put("original_filename", "big.pdf");
+        session.put("content_type", "application/pdf");
+        session.put("total_size", 2 * CHUNK + 10);
+        session.put("chunk_size", CHUNK);
+        return session;
+    }
+}
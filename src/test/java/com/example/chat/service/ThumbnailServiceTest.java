@@ -0,0 +1,72 @@
+package com.example.chat.service;
+
+import com.example.chat.model.FileMetadata;
+import com.example.chat.repository.FileMetadataRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ThumbnailServiceTest {
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    @InjectMocks
+    private ThumbnailService thumbnailService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(thumbnailService, "thumbnailSize", 320);
+        ReflectionTestUtils.setField(thumbnailService, "thumbnailQuality", 0.8f);
+        ReflectionTestUtils.setField(thumbnailService, "placeholderSize", 24);
+        ReflectionTestUtils.setField(thumbnailService, "placeholderQuality", 0.3f);
+        ReflectionTestUtils.setField(thumbnailService, "maxPixels", 50_000_000L);
+        ReflectionTestUtils.setField(thumbnailService, "maxBytes", 50L * 1024 * 1024);
+        ReflectionTestUtils.setField(thumbnailService, "processing",
+                Timer.builder("files.thumbnails.processing").register(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void generate_StoresScaledPreviewsNextToTheOriginal() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_ARGB), "png", png);
+
+        FileMetadata file = new FileMetadata("photo.png", png.size(), "image/png", null, "uploads/1/photo.png", 1L);
+        file.setId(9L);
+        when(fileMetadataRepository.findById(9L)).thenReturn(Optional.of(file));
+        when(fileService.readObject("uploads/1/photo.png")).thenReturn(png.toByteArray());
+
+        thumbnailService.generate(9L);
+
+        ArgumentCaptor<byte[]> thumbnail = ArgumentCaptor.forClass(byte[].class);
+        verify(fileService).storeObject(eq("uploads/1/photo.png.thumb.jpg"), thumbnail.capture(), eq("image/jpeg"));
+        verify(fileService).storeObject(eq("uploads/1/photo.png.placeholder.jpg"), any(byte[].class), eq("image/jpeg"));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(thumbnail.getValue()));
+        assertEquals(320, decoded.getWidth());
+        assertEquals(240, decoded.getHeight());
+        verify(fileMetadataRepository).updatePreview(9L, FileMetadata.PreviewStatus.READY, "uploads/1/photo.png.thumb.jpg",
+                "uploads/1/photo.png.placeholder.jpg", 1600, 1200);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chat.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebSocketSessionRegistryTest {
+
+    private final WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+
+    @Test
+    void events_CountSessionsAndSubscriptionsByDestinationPrefix() {
+        registry.sessionOpened("s1", 1L);
+        registry.sessionOpened("s2", 1L);
+        registry.sessionOpened("s3", 2L);
+        registry.subscribed("s1", "sub-0", "/topic/conversations/7");
+        registry.subscribed("s1", "sub-1", "/user/queue/message-status");
+        registry.subscribed("s2", "sub-0", "/topic/conversations/8");
+        registry.unsubscribed("s1", "sub-1");
+        // Disconnect events may repeat, and a subscription may arrive after its session closed
+        registry.sessionClosed("s3");
+        registry.sessionClosed("s3");
+        registry.subscribed("s3", "sub-0", "/topic/presence");
+
+        Map<String, Object> snapshot = registry.snapshot(10);
+
+        assertEquals(2, registry.getSessionCount());
+        assertEquals(2, registry.getSubscriptionCount());
+        assertEquals(Map.of("/topic/conversations", 2), snapshot.get("subscriptionsByDestination"));
+        assertEquals(List.of(Map.of("userId", 1L, "sessions", 2)), snapshot.get("topUsersBySessions"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void outboundFrames_TrackBytesAndQueueDepthPerSession() {
+        registry.sessionOpened("s1", 1L);
+        registry.sessionOpened("s2", 2L);
+
+        for (int i = 0; i < 3; i++) {
+            registry.preSend(message("s1"), null);
+        }
+        registry.frameSent("s1", new TextMessage("MESSAGE\ndestination:/topic/a\n\nhello\0".getBytes(StandardCharsets.UTF_8)), 0);
+        registry.preSend(message("s2"), null);
+        registry.frameSent("s2", new TextMessage(("MESSAGE\n\n" + "x".repeat(1000) + "\0").getBytes(StandardCharsets.UTF_8)), 0);
+
+        Map<String, Object> snapshot = registry.snapshot(1);
+
+        List<Map<String, Object>> heaviest = (List<Map<String, Object>>) snapshot.get("heaviestByOutboundBytes");
+        assertEquals(1, heaviest.size());
+        assertEquals("s2", heaviest.get(0).get("sessionId"));
+        List<Map<String, Object>> deepest = (List<Map<String, Object>>) snapshot.get("deepestQueues");
+        assertEquals("s1", deepest.get(0).get("sessionId"));
+        assertEquals(2, deepest.get(0).get("queueDepth"));
+        assertEquals(3, deepest.get(0).get("peakQueueDepth"));
+
+        // A recycled slot starts from zero
+        registry.sessionClosed("s1");
+        registry.sessionOpened("s4", 4L);
+        List<Map<String, Object>> remaining = (List<Map<String, Object>>) registry.snapshot(10).get("deepestQueues");
+        assertEquals(1, remaining.size());
+        assertEquals("s2", remaining.get(0).get("sessionId"));
+    }
+
+    private Message<byte[]> message(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}